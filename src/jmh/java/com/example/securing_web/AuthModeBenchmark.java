@@ -0,0 +1,118 @@
+package com.example.securing_web;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.Cookie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Стоимость аутентификации запроса и память на USERS вошедших пользователей:
+// session - поиск сессии по JSESSIONID и чтение SecurityContext из неё (как HttpSessionSecurityContextRepository);
+// token - проверка HMAC cookie в TokenAuthenticationFilter. Объём кучи печатается при подготовке.
+// MockHttpSession легче StandardSession из Tomcat, так что для сессий это оценка снизу
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class AuthModeBenchmark {
+
+    private static final int USERS = 100_000;
+    private static final FilterChain NOOP_CHAIN = (request, response) -> { };
+
+    private final Map<String, MockHttpSession> sessions = new ConcurrentHashMap<>();
+    private final HttpSessionSecurityContextRepository sessionRepository = new HttpSessionSecurityContextRepository();
+    private MockHttpServletRequest[] sessionRequests;
+
+    private TokenAuthenticationFilter tokenFilter;
+    private MockHttpServletRequest[] tokenRequests;
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        // без контекста Spring логирование не настроено, и logback по умолчанию пишет DEBUG
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+        long before = usedHeap();
+        for (int i = 0; i < USERS; i++) {
+            ForumUserPrincipal user = new ForumUserPrincipal((long) i, "user" + i, null, null, List.of());
+            SecurityContext context = new SecurityContextImpl(
+                    UsernamePasswordAuthenticationToken.authenticated(user, null, user.getAuthorities()));
+            MockHttpSession session = new MockHttpSession();
+            session.setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY, context);
+            sessions.put(session.getId(), session);
+        }
+        long sessionHeap = usedHeap() - before;
+
+        SignedTokenService tokenService = new SignedTokenService(
+                "k1:MDEyMzQ1Njc4OWFiY2RlZjAxMjM0NTY3ODlhYmNkZWY=", Duration.ofHours(12));
+        TokenRevocationList revocationList = new TokenRevocationList(USERS);
+        before = usedHeap();
+        tokenFilter = new TokenAuthenticationFilter(tokenService, revocationList, "FORUM_TOKEN");
+        long tokenHeap = usedHeap() - before;
+
+        sessionRequests = new MockHttpServletRequest[USERS];
+        tokenRequests = new MockHttpServletRequest[USERS];
+        String[] sessionIds = sessions.keySet().toArray(String[]::new);
+        for (int i = 0; i < USERS; i++) {
+            sessionRequests[i] = new MockHttpServletRequest("GET", "/posts");
+            sessionRequests[i].setCookies(new Cookie("JSESSIONID", sessionIds[i]));
+            tokenRequests[i] = new MockHttpServletRequest("GET", "/posts");
+            tokenRequests[i].setCookies(new Cookie("FORUM_TOKEN",
+                    tokenService.issue(new ForumUserPrincipal((long) i, "user" + i, null, null, List.of()))));
+        }
+        System.out.printf("Heap for %d users: session %.1f MB, token %.1f MB%n",
+                USERS, sessionHeap / 1048576.0, tokenHeap / 1048576.0);
+    }
+
+    @Benchmark
+    public Object session() {
+        MockHttpServletRequest request = sessionRequests[next++ % USERS];
+        MockHttpSession session = sessions.get(request.getCookies()[0].getValue());
+        request.setSession(session);
+        return sessionRepository.loadDeferredContext(request).get().getAuthentication();
+    }
+
+    @Benchmark
+    public Object token() throws Exception {
+        MockHttpServletRequest request = tokenRequests[next++ % USERS];
+        tokenFilter.doFilter(request, response, NOOP_CHAIN);
+        Object authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
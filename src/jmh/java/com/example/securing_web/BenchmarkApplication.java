@@ -0,0 +1,103 @@
+package com.example.securing_web;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Запуск приложения для бенчмарков на встроенной H2, чтобы прогон работал без PostgreSQL и сети.
+// Параметры передаются как аргументы командной строки: они перекрывают application.properties.
+final class BenchmarkApplication {
+
+    private static final int BATCH = 1000;
+
+    private static final String[] WORDS = buildVocabulary();
+
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start(String database, String... extraArgs) {
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:" + database + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.show-sql=false",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--logging.level.root=warn"));
+        args.addAll(List.of(extraArgs));
+        return new SpringApplicationBuilder(SecuringWebApplication.class)
+                .logStartupInfo(false)
+                .run(args.toArray(new String[0]));
+    }
+
+    // Посты с текстом из словаря (заголовок ~6 слов, текст ~80 слов) и комментариями к ним
+    static void seedPosts(JdbcTemplate jdbcTemplate, int posts, int commentsPerPost) {
+        Random random = new Random(42);
+        List<Object[]> postRows = new ArrayList<>();
+        for (int i = 0; i < posts; i++) {
+            postRows.add(new Object[]{text(random, 6), text(random, 80), "author" + (i % 500)});
+            if (postRows.size() == BATCH || i == posts - 1) {
+                jdbcTemplate.batchUpdate(
+                        "INSERT INTO post (title, content, author, likes, dislikes) VALUES (?, ?, ?, 0, 0)", postRows);
+                postRows.clear();
+            }
+        }
+
+        if (commentsPerPost == 0) {
+            return;
+        }
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM post", Long.class);
+        List<Object[]> commentRows = new ArrayList<>();
+        for (Long postId : ids) {
+            for (int j = 0; j < commentsPerPost; j++) {
+                commentRows.add(new Object[]{postId, "commenter" + j, text(random, 20)});
+                if (commentRows.size() == BATCH) {
+                    insertComments(jdbcTemplate, commentRows);
+                }
+            }
+        }
+        if (!commentRows.isEmpty()) {
+            insertComments(jdbcTemplate, commentRows);
+        }
+    }
+
+    static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private static void insertComments(JdbcTemplate jdbcTemplate, List<Object[]> rows) {
+        jdbcTemplate.batchUpdate("INSERT INTO comment (id, post_id, author, content) VALUES (nextval('comment_seq'), ?, ?, ?)", rows);
+        rows.clear();
+    }
+
+    private static String text(Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(word(random));
+        }
+        return text.toString();
+    }
+
+    // Искусственный словарь из 5000 слов: распределение частот близко к естественному тексту
+    private static String[] buildVocabulary() {
+        Random random = new Random(7);
+        String[] words = new String[5000];
+        for (int i = 0; i < words.length; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 3 + random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            words[i] = word.toString();
+        }
+        return words;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.securing_web;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+// Пропускная способность записи комментариев из 8 потоков: ожидание коммита (SYNC) против очереди (ASYNC)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class CommentIngestionBenchmark {
+
+    private ConfigurableApplicationContext context;
+    private CommentService commentService;
+    private long postId;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start("comment-ingestion");
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        BenchmarkApplication.seedPosts(jdbcTemplate, 100, 0);
+        postId = jdbcTemplate.queryForObject("SELECT max(id) FROM post", Long.class);
+        commentService = context.getBean(CommentService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object addCommentSync() {
+        return commentService.addComment(postId, "bench", "Комментарий", CommentIngestionPipeline.Durability.SYNC);
+    }
+
+    @Benchmark
+    public Object addCommentAsync() {
+        return commentService.addComment(postId, "bench", "Комментарий", CommentIngestionPipeline.Durability.ASYNC);
+    }
+}
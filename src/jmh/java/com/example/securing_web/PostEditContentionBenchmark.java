@@ -0,0 +1,91 @@
+package com.example.securing_web;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Правки постов из 64 потоков с оптимистичной блокировкой и повтором при конфликте:
+// posts=1 - все правят один горячий пост, posts=64 - у каждого потока свой (конфликтов нет).
+// После прогона печатается доля конфликтов на попытку и число правок, не прошедших за max-attempts
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(64)
+public class PostEditContentionBenchmark {
+
+    @Param({"1", "64"})
+    public int posts;
+
+    @Param({"5"})
+    public int maxAttempts;
+
+    private ConfigurableApplicationContext context;
+    private PostService postService;
+    private ConflictRetryExecutor conflictRetry;
+    private final List<Long> postIds = new ArrayList<>();
+    private final AtomicInteger threads = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class Editor {
+
+        private Long postId;
+        private long edits;
+
+        @Setup
+        public void setUp(PostEditContentionBenchmark benchmark) {
+            int thread = benchmark.threads.getAndIncrement();
+            postId = benchmark.postIds.get(thread % benchmark.postIds.size());
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start("post-edit-contention", "--forum.retry.max-attempts=" + maxAttempts);
+        postService = context.getBean(PostService.class);
+        conflictRetry = context.getBean(ConflictRetryExecutor.class);
+        for (int i = 0; i < posts; i++) {
+            postIds.add(postService.createPost(new Post("Пост " + i, "Текст", null), "editor").getId());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        ConflictRetryExecutor.OperationStats stats = conflictRetry.stats(PostService.EDIT_OPERATION);
+        long attempts = stats.getCalls() + stats.getRetries();
+        System.out.printf("%n%d posts: %d edits, %d conflicts (%.1f%% of attempts), %d retries, %d exhausted%n",
+                posts, stats.getCalls(), stats.getConflicts(), 100.0 * stats.getConflicts() / Math.max(1, attempts),
+                stats.getRetries(), stats.getExhausted());
+        context.close();
+    }
+
+    @Benchmark
+    public Object edit(Editor editor) {
+        long edit = editor.edits++;
+        try {
+            return postService.editPost(editor.postId, "editor", "Правка " + edit, "Текст правки " + edit, null);
+        } catch (OptimisticLockingFailureException e) {
+            // попытки кончились: операция считается, но такие правки видны отдельно в exhausted
+            return e;
+        }
+    }
+}
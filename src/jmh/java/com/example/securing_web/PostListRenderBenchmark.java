@@ -0,0 +1,90 @@
+package com.example.securing_web;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.web.servlet.JakartaServletWebApplication;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Рендеринг страницы ленты (20 постов по 10 комментариев): все карточки заново против сборки из кэша
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PostListRenderBenchmark {
+
+    private ConfigurableApplicationContext context;
+    private SpringTemplateEngine templateEngine;
+    private JakartaServletWebApplication webApplication;
+    private PostFragmentRenderer fragmentRenderer;
+    private PostFragmentCache fragmentCache;
+
+    private List<Long> ids;
+    private List<PostCard> cards;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start("render");
+        BenchmarkApplication.seedPosts(context.getBean(JdbcTemplate.class), 100, 10);
+        // посты вставлены в обход PostService - сводки строит ремонт
+        context.getBean(PostSummaryService.class).repairAll();
+        templateEngine = context.getBean(SpringTemplateEngine.class);
+        webApplication = JakartaServletWebApplication.buildApplication(new MockServletContext());
+        fragmentRenderer = context.getBean(PostFragmentRenderer.class);
+        fragmentCache = context.getBean(PostFragmentCache.class);
+
+        PostService postService = context.getBean(PostService.class);
+        ids = postService.getFeedIds(null, 20).getIds();
+        cards = postService.loadCards(ids);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String renderPageUncached() {
+        List<String> fragments = new ArrayList<>();
+        for (PostCard card : cards) {
+            fragments.add(fragmentRenderer.render(card, new MockHttpServletRequest(), new MockHttpServletResponse()));
+        }
+        return renderPage(fragments);
+    }
+
+    @Benchmark
+    public String renderPageFromFragmentCache() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        return renderPage(fragmentRenderer.renderAll(ids, fragmentCache.versions(ids), request, response));
+    }
+
+    private String renderPage(List<String> fragments) {
+        WebContext webContext = new WebContext(
+                webApplication.buildExchange(new MockHttpServletRequest(), new MockHttpServletResponse()),
+                Locale.getDefault(), Map.of("fragments", fragments));
+        return templateEngine.process("postList", webContext);
+    }
+}
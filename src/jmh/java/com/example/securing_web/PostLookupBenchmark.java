@@ -0,0 +1,140 @@
+package com.example.securing_web;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Проверка существования поста перед комментарием и повторный голос при обращениях по закону Ципфа
+// (немногие посты получают большую часть трафика). Кроме ops/s JMH печатает dbQueries - число запросов к БД
+// за итерацию: cached - через PostLookupCache, direct - каждый раз в БД, как без кэша.
+// Кэш на 10% постов: при s = 1 на них приходится ~78% обращений, если TinyLFU держит именно популярные
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PostLookupBenchmark {
+
+    private static final int POSTS = 20_000;
+    private static final int SAMPLES = 1 << 20;
+
+    @Param({"cached", "direct"})
+    public String mode;
+
+    @Param({"1.0"})
+    public double zipfExponent;
+
+    private ConfigurableApplicationContext context;
+    private PostLookupCache postLookupCache;
+    private PostRepository postRepository;
+    private PostService postService;
+    private PostVoteRepository voteRepository;
+    private long[] postIds;
+    private int next;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Queries {
+
+        public long dbQueries;
+
+        private long before;
+
+        @Setup(Level.Invocation)
+        public void before() {
+            before = SqlStatementTracker.getStatements();
+        }
+
+        @TearDown(Level.Invocation)
+        public void after() {
+            dbQueries += SqlStatementTracker.getStatements() - before;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start("post-lookup", "--forum.post-cache.max-posts=" + POSTS / 10);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        BenchmarkApplication.seedPosts(jdbcTemplate, POSTS, 0);
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM post ORDER BY id", Long.class);
+        postLookupCache = context.getBean(PostLookupCache.class);
+        postRepository = context.getBean(PostRepository.class);
+        postService = context.getBean(PostService.class);
+        voteRepository = context.getBean(PostVoteRepository.class);
+        postIds = zipfSample(ids, zipfExponent);
+
+        // у каждого поста уже есть голос voter: дальше голоса только повторные
+        for (Long id : ids) {
+            postService.likePost(id, "voter");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public boolean postExists(Queries queries) {
+        long postId = nextPostId();
+        return "cached".equals(mode) ? postLookupCache.exists(postId) : postRepository.existsById(postId);
+    }
+
+    @Benchmark
+    public void duplicateVote(Queries queries) {
+        long postId = nextPostId();
+        if ("cached".equals(mode)) {
+            postService.likePost(postId, "voter");
+        } else {
+            // без кэша повтор доходит до INSERT ... ON CONFLICT
+            voteRepository.insertIfAbsent("voter", postId, VoteType.LIKE.name());
+        }
+    }
+
+    private long nextPostId() {
+        return postIds[next++ & (SAMPLES - 1)];
+    }
+
+    // Выборка заранее, чтобы генерация не входила в измерение; ранги перемешаны относительно id
+    private static long[] zipfSample(List<Long> ids, double exponent) {
+        Random random = new Random(42);
+        Long[] ranked = ids.toArray(new Long[0]);
+        for (int i = ranked.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Long swap = ranked[i];
+            ranked[i] = ranked[j];
+            ranked[j] = swap;
+        }
+        double[] cumulative = new double[ranked.length];
+        double total = 0;
+        for (int rank = 0; rank < ranked.length; rank++) {
+            total += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = total;
+        }
+        long[] sample = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+            sample[i] = ranked[Math.min(rank < 0 ? -rank - 1 : rank, ranked.length - 1)];
+        }
+        return sample;
+    }
+}
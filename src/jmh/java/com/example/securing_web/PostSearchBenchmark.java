@@ -0,0 +1,75 @@
+package com.example.securing_web;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Поиск: прежний LIKE '%q%' по двум колонкам против встроенного инвертированного индекса
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PostSearchBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int posts;
+
+    private ConfigurableApplicationContext context;
+    private PostRepository postRepository;
+    private InMemoryPostSearchService searchService;
+
+    private String[] queries;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start("search-" + posts, "--forum.search.engine=memory");
+        BenchmarkApplication.seedPosts(context.getBean(JdbcTemplate.class), posts, 0);
+        postRepository = context.getBean(PostRepository.class);
+        searchService = context.getBean(InMemoryPostSearchService.class);
+        searchService.rebuild();
+
+        Random random = new Random(1);
+        queries = new String[64];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = BenchmarkApplication.word(random);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Post> likeQuery() {
+        String query = nextQuery();
+        return postRepository.findByTitleContainingOrContentContaining(query, query);
+    }
+
+    @Benchmark
+    public List<Long> invertedIndex() {
+        return searchService.search(nextQuery(), 0, 20);
+    }
+
+    private String nextQuery() {
+        return queries[next++ & (queries.length - 1)];
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.securing_web;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Голосование и комментирование: каждый вызов - новый пользователь/комментарий, т.е. реальная запись
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PostServiceBenchmark {
+
+    private ConfigurableApplicationContext context;
+    private PostService postService;
+    private CommentService commentService;
+    private long postId;
+
+    private final AtomicLong voter = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start("post-service");
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        BenchmarkApplication.seedPosts(jdbcTemplate, 1_000, 5);
+        postId = jdbcTemplate.queryForObject("SELECT max(id) FROM post", Long.class);
+        postService = context.getBean(PostService.class);
+        commentService = context.getBean(CommentService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void likePost() {
+        postService.likePost(postId, "voter" + voter.incrementAndGet());
+    }
+
+    @Benchmark
+    public Object addComment() {
+        return commentService.addComment(postId, "bench", "Комментарий из бенчмарка");
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.securing_web;
+
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Накладные расходы RateLimitFilter на запрос (цель - меньше 5 мкс при 50k RPS): 8 потоков,
+// clients разных адресов. allowed - маршрут с правилом, токен есть (поиск ведра и списание),
+// rejected - токенов нет, ответ 429; unlimited - маршрут без правила (только сравнение с шаблонами).
+// Среднее время при числе потоков больше числа ядер растёт пропорционально - смотреть с -t по числу ядер
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class RateLimitFilterBenchmark {
+
+    private static final FilterChain NOOP_CHAIN = (request, response) -> { };
+
+    @Param({"10000", "1000000"})
+    public int clients;
+
+    private RateLimitFilter filter;
+
+    @Setup
+    public void setUp() {
+        RateLimiter rateLimiter = new RateLimiter(true, RateLimitRule.parseAll(
+                "POST /login ip 10/m, POST /register ip 5/m, POST /posts/*/like ip 1000000000/s, "
+                        + "POST /posts/*/dislike ip 1/h, POST /posts/*/comments ip 30/m, POST /api/comments ip 30/m"),
+                new StripedRateLimitStore(64, 100_000, System::nanoTime));
+        filter = new RateLimitFilter(rateLimiter);
+    }
+
+    @State(Scope.Thread)
+    public static class Requests {
+
+        private static final int SIZE = 4096;
+
+        final MockHttpServletRequest[] allowed = new MockHttpServletRequest[SIZE];
+        final MockHttpServletRequest[] rejected = new MockHttpServletRequest[SIZE];
+        final MockHttpServletRequest[] unlimited = new MockHttpServletRequest[SIZE];
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        int next;
+
+        @Setup
+        public void setUp(RateLimitFilterBenchmark benchmark) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < SIZE; i++) {
+                int client = random.nextInt(benchmark.clients);
+                String address = "10." + (client >>> 16 & 0xff) + "." + (client >>> 8 & 0xff) + "." + (client & 0xff);
+                allowed[i] = new MockHttpServletRequest("POST", "/posts/" + (i % 100) + "/like");
+                allowed[i].setRemoteAddr(address);
+                rejected[i] = new MockHttpServletRequest("POST", "/posts/" + (i % 100) + "/dislike");
+                rejected[i].setRemoteAddr(address);
+                unlimited[i] = new MockHttpServletRequest("GET", "/posts");
+                unlimited[i].setRemoteAddr(address);
+            }
+        }
+    }
+
+    @Benchmark
+    public int allowed(Requests requests) throws Exception {
+        int i = requests.next++ & (Requests.SIZE - 1);
+        filter.doFilter(requests.allowed[i], requests.response, NOOP_CHAIN);
+        return requests.response.getStatus();
+    }
+
+    @Benchmark
+    public int rejected(Requests requests) throws Exception {
+        int i = requests.next++ & (Requests.SIZE - 1);
+        requests.response.reset();
+        filter.doFilter(requests.rejected[i], requests.response, NOOP_CHAIN);
+        return requests.response.getStatus();
+    }
+
+    @Benchmark
+    public int unlimited(Requests requests) throws Exception {
+        int i = requests.next++ & (Requests.SIZE - 1);
+        filter.doFilter(requests.unlimited[i], requests.response, NOOP_CHAIN);
+        return requests.response.getStatus();
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.securing_web;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.h2.Driver;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Холодный старт приложения в отдельных процессах JVM: время от запуска процесса до первого ответа 200
+// на GET /login и RSS процесса сразу после него. JMH здесь не подходит - меряется запуск JVM целиком.
+//   mvn -Pjmh test-compile exec:exec@startup -Dstartup.args="5"
+// Аргументы: число замеров на вариант, затем (необязательно) имена вариантов:
+//   ddl-auto     - профиль по умолчанию, схема через ddl-auto=update
+//   fast-start   - профиль fast-start: миграции Flyway, ленивые контроллеры
+//   aot          - fast-start из jar со сгенерированным AOT (нужна сборка mvn -Pfast-start package)
+//   aot-cds      - то же с архивом CDS, записанным в прогревочном запуске
+// БД - файл H2 на вариант: первый запуск каждого варианта прогревочный (создаёт схему), затем в БД
+// добавляется 10000 постов, чтобы при старте было что читать индексу поиска и горячим постам
+public class StartupBenchmark {
+
+    private static final List<String> VARIANTS = List.of("ddl-auto", "fast-start", "aot", "aot-cds");
+    private static final long TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(3);
+
+    private final Path workDir;
+    private final Path target = Path.of("target").toAbsolutePath();
+    private final String classesClasspath;
+    private final String h2Jar;
+
+    private StartupBenchmark(Path workDir) {
+        this.workDir = workDir;
+        // без test-classes: там тестовый application.properties, который перекрыл бы основной
+        List<String> entries = Arrays.stream(System.getProperty("java.class.path").split(File.pathSeparator))
+                .filter(entry -> !entry.endsWith("test-classes"))
+                .toList();
+        this.classesClasspath = String.join(File.pathSeparator, entries);
+        this.h2Jar = entries.stream().filter(entry -> entry.contains(File.separator + "h2-")).findFirst().orElseThrow();
+    }
+
+    public static void main(String[] args) throws Exception {
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        List<String> variants = args.length > 1 ? List.of(args).subList(1, args.length) : VARIANTS;
+        Path workDir = Files.createTempDirectory("startup-benchmark");
+        StartupBenchmark benchmark = new StartupBenchmark(workDir);
+
+        Map<String, long[][]> results = new LinkedHashMap<>();
+        for (String variant : variants) {
+            if (variant.startsWith("aot") && benchmark.applicationJar() == null) {
+                System.out.printf("%s: skipped, no target/*.jar and target/lib (mvn -Pfast-start package)%n", variant);
+                continue;
+            }
+            results.put(variant, benchmark.measure(variant, runs));
+        }
+
+        System.out.printf("%n%-12s %14s %14s %12s%n", "variant", "first req, ms", "min, ms", "RSS, MB");
+        results.forEach((variant, samples) -> System.out.printf("%-12s %14d %14d %12d%n", variant,
+                median(samples[0]), Arrays.stream(samples[0]).min().orElse(0), median(samples[1]) / 1024));
+        System.out.println("logs: " + workDir);
+    }
+
+    // [0] - время до первого ответа в мс, [1] - RSS в КБ
+    private long[][] measure(String variant, int runs) throws Exception {
+        Path archive = workDir.resolve(variant + ".jsa");
+        String url = "jdbc:h2:file:" + workDir.resolve(variant) + ";MODE=PostgreSQL";
+
+        // прогрев: схема (и для aot-cds - запись архива классов), затем данные
+        List<String> warmUp = new ArrayList<>();
+        if ("aot-cds".equals(variant)) {
+            warmUp.add("-XX:ArchiveClassesAtExit=" + archive);
+            warmUp.add("--forum.startup.exit-on-ready=true");
+        }
+        start(variant, url, warmUp, variant + "-warmup");
+        seed(url);
+
+        long[][] samples = new long[2][runs];
+        for (int i = 0; i < runs; i++) {
+            List<String> extra = "aot-cds".equals(variant)
+                    ? List.of("-XX:SharedArchiveFile=" + archive) : List.of();
+            long[] sample = start(variant, url, extra, variant + "-" + i);
+            samples[0][i] = sample[0];
+            samples[1][i] = sample[1];
+            System.out.printf("%s #%d: first request %d ms, RSS %d MB%n", variant, i + 1, sample[0], sample[1] / 1024);
+        }
+        return samples;
+    }
+
+    private long[] start(String variant, String url, List<String> extra, String logName) throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(), "-Xmx512m"));
+        extra.stream().filter(arg -> arg.startsWith("-X")).forEach(command::add);
+        if (variant.startsWith("aot")) {
+            command.add("-Dspring.aot.enabled=true");
+            command.addAll(List.of("-cp", applicationJar() + File.pathSeparator + target.resolve("lib") + File.separator
+                    + "*" + File.pathSeparator + h2Jar));
+        } else {
+            command.addAll(List.of("-cp", classesClasspath));
+        }
+        command.add(SecuringWebApplication.class.getName());
+        if (!"ddl-auto".equals(variant)) {
+            command.add("--spring.profiles.active=fast-start");
+        }
+        command.addAll(List.of(
+                "--server.port=" + port,
+                "--management.server.port=" + freePort(),
+                "--spring.datasource.url=" + url,
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--forum.votes.snapshot-path=",
+                "--forum.summary.repair-on-startup=false"));
+        extra.stream().filter(arg -> arg.startsWith("--")).forEach(command::add);
+
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(workDir.resolve(logName + ".log").toFile())
+                .start();
+        try {
+            if (extra.contains("--forum.startup.exit-on-ready=true")) {
+                if (!process.waitFor(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS) || process.exitValue() != 0) {
+                    throw new IllegalStateException("Обучающий запуск не завершился, см. " + logName + ".log");
+                }
+                return new long[]{0, 0};
+            }
+            awaitFirstResponse(process, port, logName);
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            return new long[]{elapsed, rssKilobytes(process.pid())};
+        } finally {
+            process.destroy();
+            if (!process.waitFor(1, TimeUnit.MINUTES)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static void awaitFirstResponse(Process process, int port, String logName) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Приложение завершилось при старте, см. " + logName + ".log");
+            }
+            try {
+                HttpURLConnection connection = (HttpURLConnection)
+                        URI.create("http://localhost:" + port + "/login").toURL().openConnection();
+                connection.setConnectTimeout(100);
+                connection.setReadTimeout(10_000);
+                if (connection.getResponseCode() == 200) {
+                    connection.getInputStream().readAllBytes();
+                    return;
+                }
+            } catch (IOException e) {
+                // порт ещё не слушается
+            }
+            Thread.sleep(5);
+        }
+        throw new IllegalStateException("Нет ответа за " + TIMEOUT_MILLIS + " мс, см. " + logName + ".log");
+    }
+
+    private static void seed(String url) {
+        SimpleDriverDataSource dataSource = new SimpleDriverDataSource(new Driver(), url, "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        // файл закрывается вместе с последним соединением, до следующего запуска приложения
+        BenchmarkApplication.seedPosts(jdbcTemplate, 10_000, 2);
+    }
+
+    private Path applicationJar() throws IOException {
+        if (!Files.isDirectory(target.resolve("lib"))) {
+            return null;
+        }
+        try (Stream<Path> files = Files.list(target)) {
+            return files.filter(file -> file.toString().endsWith(".jar") && !file.toString().endsWith("-exec.jar"))
+                    .findFirst().orElse(null);
+        }
+    }
+
+    private static long rssKilobytes(long pid) throws IOException {
+        Path status = Path.of("/proc", Long.toString(pid), "status");
+        if (!Files.exists(status)) {
+            return 0;
+        }
+        try (Stream<String> lines = Files.lines(status)) {
+            return lines.filter(line -> line.startsWith("VmRSS:"))
+                    .map(line -> Long.parseLong(line.replaceAll("\\D", "")))
+                    .findFirst().orElse(0L);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
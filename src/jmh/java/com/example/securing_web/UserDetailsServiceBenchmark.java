@@ -0,0 +1,58 @@
+package com.example.securing_web;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.concurrent.TimeUnit;
+
+// Загрузка пользователя при входе: попадание в кэш и промах (чтение из БД)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserDetailsServiceBenchmark {
+
+    private ConfigurableApplicationContext context;
+    private CustomUserDetailsService userDetailsService;
+    private UserDetailsCache userCache;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkApplication.start("user-details");
+        UserService userService = context.getBean(UserService.class);
+        for (int i = 0; i < 1_000; i++) {
+            userService.register("user" + i, "password");
+        }
+        userDetailsService = context.getBean(CustomUserDetailsService.class);
+        userCache = context.getBean(UserDetailsCache.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public UserDetails loadUserCached() {
+        return userDetailsService.loadUserByUsername("user500");
+    }
+
+    @Benchmark
+    public UserDetails loadUserUncached() {
+        userCache.removeUserFromCache("user500");
+        return userDetailsService.loadUserByUsername("user500");
+    }
+}
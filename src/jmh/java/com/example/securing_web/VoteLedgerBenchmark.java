@@ -0,0 +1,172 @@
+package com.example.securing_web;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.h2.Driver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Проверка "голосовал ли уже" по VOTES голосам в памяти: ledger - битовые карты VoteLedger (compact),
+// strings - множество пар (postId, username), как если бы все голоса rows-режима держать в кэше.
+// Голоса распределены по постам по закону Ципфа (несколько постов с сотнями тысяч голосов, длинный хвост
+// с единицами), id пользователей - из USERS. Объём кучи, а для ledger ещё время и размер снимка на диске
+// печатаются при подготовке (строки имён общие для всех пар, так что для strings это оценка снизу);
+// в замере половина обращений - существующие голоса, половина - новые пары
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class VoteLedgerBenchmark {
+
+    private static final int POSTS = 100_000;
+    private static final int USERS = 1_000_000;
+    private static final int SAMPLES = 1 << 20;
+
+    private record VoteKey(Long postId, String username) {
+    }
+
+    @Param({"ledger", "strings"})
+    public String mode;
+
+    @Param({"10000000"})
+    public int votes;
+
+    private VoteLedger ledger;
+    private Set<VoteKey> strings;
+    private long[] samplePosts;
+    private int[] sampleUsers;
+    private String[] usernames;
+    private Path snapshot;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+        usernames = new String[USERS];
+        for (int i = 0; i < USERS; i++) {
+            usernames[i] = "user" + i;
+        }
+        double[] cumulative = new double[POSTS];
+        double total = 0;
+        for (int rank = 0; rank < POSTS; rank++) {
+            total += 1.0 / (rank + 1);
+            cumulative[rank] = total;
+        }
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(
+                new SimpleDriverDataSource(new Driver(), "jdbc:h2:mem:vote-ledger;DB_CLOSE_DELAY=-1"));
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS users (id BIGINT PRIMARY KEY, username VARCHAR(255))");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS post_vote (id BIGINT PRIMARY KEY, username VARCHAR(255), "
+                + "user_id BIGINT, post_id BIGINT, vote_type VARCHAR(16))");
+        snapshot = Files.createTempFile("vote-ledger", ".snapshot");
+        Files.delete(snapshot);
+
+        long before = usedHeap();
+        if ("ledger".equals(mode)) {
+            ledger = new VoteLedger(jdbcTemplate, null, true, snapshot, 1, System::nanoTime);
+        } else {
+            strings = ConcurrentHashMap.newKeySet();
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < votes; i++) {
+            long postId = postFor(random, cumulative, total);
+            int userId = random.nextInt(USERS);
+            if (ledger != null) {
+                ledger.record(postId, userId, random.nextInt(4) == 0 ? VoteType.DISLIKE : VoteType.LIKE, () -> true);
+            } else {
+                strings.add(new VoteKey(postId, usernames[userId]));
+            }
+        }
+        long heap = usedHeap() - before;
+        System.out.printf("%n%s, %d votes: heap %.1f MB (%.1f bytes/vote)%n", mode, votes, heap / 1048576.0,
+                (double) heap / votes);
+
+        if (ledger != null) {
+            System.out.printf("ledger estimate %.1f MB, %d posts%n", ledger.getSizeInBytes() / 1048576.0,
+                    ledger.getPostCount());
+            long started = System.nanoTime();
+            ledger.snapshot();
+            long written = System.nanoTime() - started;
+            VoteLedger restored = new VoteLedger(jdbcTemplate, null, true, snapshot, 1, System::nanoTime);
+            started = System.nanoTime();
+            restored.load();
+            long loaded = System.nanoTime() - started;
+            System.out.printf("snapshot %.1f MB: write %d ms, load %d ms%n", Files.size(snapshot) / 1048576.0,
+                    TimeUnit.NANOSECONDS.toMillis(written), TimeUnit.NANOSECONDS.toMillis(loaded));
+        }
+
+        // чётные - существующие голоса (тот же генератор с тем же seed), нечётные - случайные пары
+        Random replay = new Random(42);
+        Random fresh = new Random(7);
+        samplePosts = new long[SAMPLES];
+        sampleUsers = new int[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            Random source = i % 2 == 0 ? replay : fresh;
+            samplePosts[i] = postFor(source, cumulative, total);
+            sampleUsers[i] = source.nextInt(USERS);
+            if (source == replay) {
+                replay.nextInt(4);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(snapshot);
+    }
+
+    @Benchmark
+    public boolean hasVoted() {
+        int i = next++ & (SAMPLES - 1);
+        if (ledger != null) {
+            return ledger.hasVoted(samplePosts[i], sampleUsers[i]);
+        }
+        return strings.contains(new VoteKey(samplePosts[i], usernames[sampleUsers[i]]));
+    }
+
+    private static long postFor(Random random, double[] cumulative, double total) {
+        double point = random.nextDouble() * total;
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulative[middle] < point) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low + 1;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -1,12 +1,18 @@
 package com.example.securing_web;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 
 @Entity
+// Keyset-страницы комментариев поста и последние комментарии для PostSummary
+@Table(indexes = @Index(name = "idx_comment_post_id_id", columnList = "post_id, id"))
 public class Comment {
 
+    // Последовательность с шагом 50, а не IDENTITY: Hibernate выдаёт id без обращения к БД
+    // на каждую вставку и может объединять INSERT'ы в batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "comment_seq")
+    @SequenceGenerator(name = "comment_seq", sequenceName = "comment_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -18,6 +24,12 @@ public class Comment {
     @Column(length = 1000) // Можно увеличить, если нужно
     private String content;
 
+    // Оптимистичная блокировка, как у Post: правка и удаление по устаревшей копии не проходят
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
     public Comment() {
     }
 
@@ -36,6 +48,14 @@ public class Comment {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public Post getPost() {
         return post;
     }
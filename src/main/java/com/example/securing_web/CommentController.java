@@ -1,19 +1,43 @@
 package com.example.securing_web;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @Controller
 @RequestMapping("/api/comments")
 public class CommentController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final CommentService commentService;
+    private final ObjectMapper objectMapper;
+    private final int pageSize;
+    private final int maxPageSize;
+    private final int exportChunkSize;
 
-    public CommentController(CommentService commentService) {
+    public CommentController(CommentService commentService,
+                             ObjectMapper objectMapper,
+                             @Value("${forum.comments.page-size:50}") int pageSize,
+                             @Value("${forum.comments.max-page-size:500}") int maxPageSize,
+                             @Value("${forum.comments.export-chunk-size:1000}") int exportChunkSize) {
         this.commentService = commentService;
+        this.objectMapper = objectMapper;
+        this.pageSize = pageSize;
+        this.maxPageSize = maxPageSize;
+        this.exportChunkSize = exportChunkSize;
     }
 
 
@@ -30,14 +54,81 @@ public class CommentController {
         return "redirect:/posts";
     }
 
+    // Удаление автором: 204, 404 - нет комментария, 403 - чужой комментарий
+    @DeleteMapping("/{commentId}")
+    @ResponseBody
+    public ResponseEntity<Void> deleteComment(@PathVariable Long commentId,
+                                              @AuthenticationPrincipal ForumUserPrincipal user) {
+        try {
+            commentService.deleteComment(commentId, user.getUsername());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    // Правка текста автором: 204, 404 - нет комментария, 403 - чужой комментарий, 409 - изменён после версии version
+    // или не удалось записать за forum.retry.max-attempts попыток
+    @PutMapping("/{commentId}")
+    @ResponseBody
+    public ResponseEntity<Void> editComment(@PathVariable Long commentId,
+                                            @RequestParam String content,
+                                            @RequestParam(required = false) Long version,
+                                            @AuthenticationPrincipal ForumUserPrincipal user) {
+        if (content.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            commentService.editComment(commentId, user.getUsername(), content, version);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        } catch (StaleEditException | OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    // Страница комментариев в порядке id; курсор следующей страницы - в заголовке X-Next-Cursor
     @GetMapping("/post/{postId}")
     @ResponseBody
-    public ResponseEntity<List<Comment>> getCommentsByPost(@PathVariable Long postId) {
-        List<Comment> comments = commentService.getCommentsByPostId(postId);
-        if (comments == null || comments.isEmpty()) {
+    public ResponseEntity<List<CommentDto>> getCommentsByPost(@PathVariable Long postId,
+                                                              @RequestParam(required = false) Long after,
+                                                              @RequestParam(required = false) Integer limit) {
+        int size = limit == null ? pageSize : Math.max(1, Math.min(limit, maxPageSize));
+        CommentPage page = commentService.getCommentPage(postId, after, size);
+        if (page.getComments().isEmpty()) {
             return ResponseEntity.noContent().build();
         }
-        return ResponseEntity.ok(comments);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor().toString());
+        }
+        return response.body(page.getComments());
     }
-}
 
+    // Выгрузка всех комментариев поста в NDJSON (по объекту на строку) без буферизации всего ответа
+    @GetMapping("/post/{postId}/export")
+    @ResponseBody
+    public ResponseEntity<StreamingResponseBody> exportCommentsByPost(@PathVariable Long postId) {
+        StreamingResponseBody body = out -> {
+            try {
+                commentService.exportComments(postId, exportChunkSize, chunk -> {
+                    try {
+                        for (CommentDto comment : chunk) {
+                            out.write(objectMapper.writeValueAsBytes(comment));
+                            out.write('\n');
+                        }
+                        out.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+}
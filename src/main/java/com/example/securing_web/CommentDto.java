@@ -1,6 +1,7 @@
 package com.example.securing_web;
 
 public class CommentDto {
+    private Long id;
     private Long postId;
     private String author;
     private String content;
@@ -14,6 +15,20 @@ public class CommentDto {
         this.content = content;
     }
 
+    // Для JPQL-проекции: поля читаются прямо из comment, без загрузки Post
+    public CommentDto(Long id, Long postId, String author, String content) {
+        this(postId, author, content);
+        this.id = id;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
     public Long getPostId() {
         return postId;
     }
@@ -0,0 +1,239 @@
+package com.example.securing_web;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Запись комментариев пачками: addComment кладёт комментарий в ограниченную очередь, а фоновый поток
+// сохраняет накопленное одной транзакцией (batch insert, id из последовательности с шагом 50).
+// Пачка уходит, когда набралось batch-size комментариев или прошло flush-interval-ms с первого из них.
+// SYNC: вызов ждёт коммита транзакции; ASYNC: возвращается сразу после постановки в очередь.
+// cancel у возвращённого future снимает комментарий, который поток записи ещё не взял в транзакцию.
+@Component
+public class CommentIngestionPipeline {
+
+    public enum Durability {
+        SYNC,
+        ASYNC
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(CommentIngestionPipeline.class);
+
+    private final CommentRepository commentRepository;
+    private final PostRepository postRepository;
+    private final PostLookupCache postLookupCache;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final PostFragmentCache postFragmentCache;
+    private final PostSummaryService postSummaryService;
+    private final FeedEventBroadcaster feedEventBroadcaster;
+
+    private final BlockingQueue<PendingComment> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long offerTimeoutMillis;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public CommentIngestionPipeline(CommentRepository commentRepository,
+                                    PostRepository postRepository,
+                                    PostLookupCache postLookupCache,
+                                    TransactionTemplate transactionTemplate,
+                                    JdbcTemplate jdbcTemplate,
+                                    PostFragmentCache postFragmentCache,
+                                    PostSummaryService postSummaryService,
+                                    FeedEventBroadcaster feedEventBroadcaster,
+                                    @Value("${forum.comments.queue-capacity:10000}") int queueCapacity,
+                                    @Value("${forum.comments.batch-size:50}") int batchSize,
+                                    @Value("${forum.comments.flush-interval-ms:10}") long flushIntervalMillis,
+                                    @Value("${forum.comments.offer-timeout-ms:1000}") long offerTimeoutMillis) {
+        this.commentRepository = commentRepository;
+        this.postRepository = postRepository;
+        this.postLookupCache = postLookupCache;
+        this.transactionTemplate = transactionTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.postFragmentCache = postFragmentCache;
+        this.postSummaryService = postSummaryService;
+        this.feedEventBroadcaster = feedEventBroadcaster;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.offerTimeoutMillis = offerTimeoutMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        alignCommentSequence();
+        running = true;
+        worker = new Thread(this::run, "comment-ingest");
+        worker.start();
+    }
+
+    // Сохраняет всё, что уже в очереди, и останавливает поток
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        worker.join();
+    }
+
+    public CompletableFuture<Comment> submit(Long postId, String author, String content) {
+        requirePost(postId);
+
+        Comment comment = new Comment();
+        comment.setAuthor(author);
+        comment.setContent(content);
+        PendingComment pending = new PendingComment(postId, comment);
+        try {
+            if (!running || !queue.offer(pending, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("Очередь комментариев переполнена, повторите попытку позже");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Добавление комментария прервано", e);
+        }
+        return pending.future;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    private void requirePost(Long postId) {
+        if (!postLookupCache.exists(postId)) {
+            throw new IllegalArgumentException("Пост с ID " + postId + " не найден");
+        }
+    }
+
+    private void run() {
+        List<PendingComment> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingComment first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingComment next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                }
+                // отменённые (SYNC-вызов не дождался подтверждения) не записываем
+                batch.removeIf(pending -> !pending.claimed.compareAndSet(false, true));
+                if (!batch.isEmpty()) {
+                    persist(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (RuntimeException e) {
+                logger.error("Ошибка в потоке записи комментариев", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Подтверждение (завершение future) - только после коммита транзакции
+    private void persist(List<PendingComment> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> saveAll(batch));
+            batch.forEach(this::acknowledge);
+        } catch (RuntimeException batchFailure) {
+            // например, пост удалили, пока комментарий ждал в очереди: сохраняем по одному,
+            // чтобы ошибка досталась только виновнику
+            logger.debug("Пачка комментариев не сохранилась, сохраняем по одному", batchFailure);
+            for (PendingComment pending : batch) {
+                try {
+                    // откатившаяся пачка уже выдала id и версию: с версией сущность считалась бы
+                    // существующей и ушла бы в merge, а не в persist
+                    pending.comment.setId(null);
+                    pending.comment.setVersion(null);
+                    transactionTemplate.executeWithoutResult(status -> saveAll(List.of(pending)));
+                    acknowledge(pending);
+                } catch (RuntimeException e) {
+                    pending.future.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    private void acknowledge(PendingComment pending) {
+        postFragmentCache.invalidate(pending.postId);
+        Comment comment = pending.comment;
+        feedEventBroadcaster.publish(FeedEvent.commentAdded(
+                new CommentDto(comment.getId(), pending.postId, comment.getAuthor(), comment.getContent())));
+        pending.future.complete(pending.comment);
+    }
+
+    // Сводки постов обновляются в той же транзакции; flush нужен, чтобы они увидели новые строки comment
+    private void saveAll(List<PendingComment> batch) {
+        List<Comment> comments = new ArrayList<>(batch.size());
+        Map<Long, Integer> addedByPost = new HashMap<>();
+        for (PendingComment pending : batch) {
+            pending.comment.setPost(postRepository.getReferenceById(pending.postId));
+            comments.add(pending.comment);
+            addedByPost.merge(pending.postId, 1, Integer::sum);
+        }
+        commentRepository.saveAllAndFlush(comments);
+        postSummaryService.commentsAdded(addedByPost);
+    }
+
+    // Переход с IDENTITY на последовательность: на существующей БД comment_seq создаётся с 1
+    // и выдавал бы уже занятые id, поэтому при старте сдвигаем её за максимальный id
+    private void alignCommentSequence() {
+        try (Connection connection = jdbcTemplate.getDataSource().getConnection()) {
+            if (!"PostgreSQL".equals(connection.getMetaData().getDatabaseProductName())) {
+                return;
+            }
+        } catch (SQLException e) {
+            logger.warn("Не удалось определить тип БД для проверки comment_seq", e);
+            return;
+        }
+        jdbcTemplate.queryForList("SELECT setval('comment_seq', (SELECT max(id) FROM comment)) "
+                + "WHERE (SELECT max(id) FROM comment) > (SELECT last_value FROM comment_seq)");
+    }
+
+    private static final class PendingComment {
+        final Long postId;
+        final Comment comment;
+        // взят потоком записи или отменён - что случилось раньше
+        final AtomicBoolean claimed = new AtomicBoolean();
+        final CompletableFuture<Comment> future = new CompletableFuture<>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                return claimed.compareAndSet(false, true) && super.cancel(mayInterruptIfRunning);
+            }
+        };
+
+        PendingComment(Long postId, Comment comment) {
+            this.postId = postId;
+            this.comment = comment;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.securing_web;
+
+import java.util.List;
+
+// Страница комментариев: курсор - id последнего комментария (null, если страниц больше нет)
+public class CommentPage {
+
+    private final List<CommentDto> comments;
+    private final Long nextCursor;
+
+    public CommentPage(List<CommentDto> comments, Long nextCursor) {
+        this.comments = comments;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<CommentDto> getComments() {
+        return comments;
+    }
+
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+}
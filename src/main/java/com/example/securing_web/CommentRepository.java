@@ -1,9 +1,16 @@
 package com.example.securing_web;
 
-import com.example.securing_web.Comment;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
 import java.util.List;
 
 public interface CommentRepository extends JpaRepository<Comment, Long> {
-    List<Comment> findByPostId(Long postId);
-}
\ No newline at end of file
+
+    // Keyset по id комментария; c.post.id берётся из внешнего ключа, join с post не нужен
+    @Query("select new com.example.securing_web.CommentDto(c.id, c.post.id, c.author, c.content) " +
+            "from Comment c where c.post.id = :postId and c.id > :after order by c.id")
+    List<CommentDto> findPageByPostId(@Param("postId") Long postId, @Param("after") Long after, Pageable pageable);
+}
@@ -1,35 +1,176 @@
 package com.example.securing_web;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 @Service
 public class CommentService {
 
+    static final String EDIT_OPERATION = "comment.edit";
+    static final String DELETE_OPERATION = "comment.delete";
+
     private final CommentRepository commentRepository;
-    private final PostRepository postRepository;
+    private final CommentIngestionPipeline ingestionPipeline;
+    private final PostSummaryService postSummaryService;
+    private final PostFragmentCache postFragmentCache;
+    private final CommentIngestionPipeline.Durability defaultDurability;
+    private final long ackTimeoutMillis;
+    private final ReadYourWrites readYourWrites;
+    private final HotRanking hotRanking;
+    private final PostLookupCache postLookupCache;
+    private final ConflictRetryExecutor conflictRetry;
+    private final TransactionTemplate readOnlyTransaction;
 
-    public CommentService(CommentRepository commentRepository, PostRepository postRepository) {
+    public CommentService(CommentRepository commentRepository,
+                          CommentIngestionPipeline ingestionPipeline,
+                          PostSummaryService postSummaryService,
+                          PostFragmentCache postFragmentCache,
+                          @Value("${forum.comments.durability:SYNC}") CommentIngestionPipeline.Durability defaultDurability,
+                          @Value("${forum.comments.ack-timeout-ms:5000}") long ackTimeoutMillis,
+                          ReadYourWrites readYourWrites,
+                          HotRanking hotRanking,
+                          PostLookupCache postLookupCache,
+                          ConflictRetryExecutor conflictRetry,
+                          PlatformTransactionManager transactionManager) {
         this.commentRepository = commentRepository;
-        this.postRepository = postRepository;
+        this.ingestionPipeline = ingestionPipeline;
+        this.postSummaryService = postSummaryService;
+        this.postFragmentCache = postFragmentCache;
+        this.defaultDurability = defaultDurability;
+        this.ackTimeoutMillis = ackTimeoutMillis;
+        this.readYourWrites = readYourWrites;
+        this.hotRanking = hotRanking;
+        this.postLookupCache = postLookupCache;
+        this.conflictRetry = conflictRetry;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
-    @Transactional
     public Comment addComment(Long postId, String author, String content) {
-        Post post = postRepository.findById(postId)
-                .orElseThrow(() -> new IllegalArgumentException("Пост с ID " + postId + " не найден"));
+        return addComment(postId, author, content, defaultDurability);
+    }
+
+    // SYNC - комментарий записан в БД к моменту возврата; ASYNC - только принят в очередь (id ещё не присвоен).
+    // SYNC, не дождавшийся подтверждения за ack-timeout-ms, снимает комментарий с очереди и падает;
+    // если запись уже идёт, ждёт коммита или ошибки транзакции
+    public Comment addComment(Long postId, String author, String content,
+                              CommentIngestionPipeline.Durability durability) {
+        CompletableFuture<Comment> saved = ingestionPipeline.submit(postId, author, content);
+        readYourWrites.markWrite();
+        // в рейтинг - только записанный комментарий, в том числе в режиме ASYNC, и только к живому посту:
+        // пост, удалённый пока комментарий стоял в очереди, иначе вернулся бы в HotRanking после remove()
+        saved.thenRun(() -> {
+            if (postLookupCache.exists(postId)) {
+                hotRanking.commented(postId);
+            }
+        });
+        if (durability == CommentIngestionPipeline.Durability.ASYNC) {
+            return saved.getNow(null);
+        }
+        try {
+            try {
+                return saved.get(ackTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // ещё в очереди - снимаем: ошибка значит "не сохранён", и повтор клиента не создаст дубликат
+                if (saved.cancel(false)) {
+                    throw new IllegalStateException("Комментарий не подтверждён за " + ackTimeoutMillis + " мс", e);
+                }
+                // поток записи уже взял комментарий в транзакцию: ждём её исхода, успех без коммита не возвращаем
+                return saved.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Добавление комментария прервано", e);
+        }
+    }
+
+    // Удаление и пересчёт сводки поста - в одной транзакции. Post.removeComment не вызываем:
+    // он загрузил бы все комментарии поста ради удаления одного. DELETE проверяет версию,
+    // при одновременной правке попытка повторяется с перечитанным комментарием. Удаляет только автор
+    public void deleteComment(Long commentId, String editor) {
+        conflictRetry.executeWithoutResult(DELETE_OPERATION, () -> {
+            Comment comment = findOwnComment(commentId, editor);
+            Long postId = comment.getPost().getId();
+            commentRepository.delete(comment);
+            commentRepository.flush();
+            postSummaryService.commentRemoved(postId);
+            postFragmentCache.invalidateAfterCommit(postId);
+            readYourWrites.markWrite();
+        });
+    }
+
+    // Правка текста автором; expectedVersion - версия, которую видел клиент (null - без проверки),
+    // см. PostService.editPost
+    public Comment editComment(Long commentId, String editor, String content, Long expectedVersion) {
+        return conflictRetry.execute(EDIT_OPERATION, () -> {
+            Comment comment = findOwnComment(commentId, editor);
+            if (expectedVersion != null && !expectedVersion.equals(comment.getVersion())) {
+                throw new StaleEditException("Комментарий " + commentId + " изменён после загрузки");
+            }
+            comment.setContent(content);
+            Comment saved = commentRepository.saveAndFlush(comment);
+            // текст мог попасть в последние комментарии сводки
+            Long postId = comment.getPost().getId();
+            postSummaryService.commentChanged(postId);
+            postFragmentCache.invalidateAfterCommit(postId);
+            readYourWrites.markWrite();
+            return saved;
+        });
+    }
+
+    private Comment findOwnComment(Long commentId, String editor) {
+        Comment comment = commentRepository.findById(commentId)
+                .orElseThrow(() -> new IllegalArgumentException("Комментарий с ID " + commentId + " не найден"));
+        if (!Objects.equals(comment.getAuthor(), editor)) {
+            throw new AccessDeniedException("Править и удалять комментарий может только автор");
+        }
+        return comment;
+    }
 
-        Comment comment = new Comment();
-        comment.setPost(post);       // устанавливаем пост
-        comment.setAuthor(author);   // автор комментария
-        comment.setContent(content); // текст комментария
+    @Transactional(readOnly = true)
+    public CommentPage getCommentPage(Long postId, Long after, int size) {
+        // на один больше, чтобы понять, есть ли следующая страница
+        List<CommentDto> comments = commentRepository.findPageByPostId(
+                postId, after == null ? 0L : after, PageRequest.of(0, size + 1));
 
-        return commentRepository.save(comment);
+        Long nextCursor = null;
+        if (comments.size() > size) {
+            comments = comments.subList(0, size);
+            nextCursor = comments.get(comments.size() - 1).getId();
+        }
+        return new CommentPage(comments, nextCursor);
     }
 
-    public List<Comment> getCommentsByPostId(Long postId) {
-        return commentRepository.findByPostId(postId);
+    // Все комментарии поста кусками по chunkSize: в памяти не больше одного куска,
+    // каждый кусок - отдельная короткая readOnly-транзакция (может уйти на реплику).
+    // Через TransactionTemplate: вызов getCommentPage изнутри класса минует прокси и его @Transactional
+    public void exportComments(Long postId, int chunkSize, Consumer<List<CommentDto>> sink) {
+        Long after = null;
+        do {
+            Long cursor = after;
+            CommentPage page = readOnlyTransaction.execute(status -> getCommentPage(postId, cursor, chunkSize));
+            if (!page.getComments().isEmpty()) {
+                sink.accept(page.getComments());
+            }
+            after = page.getNextCursor();
+        } while (after != null);
     }
 }
\ No newline at end of file
@@ -0,0 +1,120 @@
+package com.example.securing_web;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Повтор операций при конфликте оптимистичной блокировки (@Version). Каждая попытка - отдельная транзакция,
+// которая заново читает сущности, поэтому вызывать можно только вне транзакции. Перед повтором - пауза
+// со случайной длительностью от 0 до min(max-delay, base-delay * 2^(попытка-1)): потоки, столкнувшиеся
+// на одной строке, расходятся во времени. После max-attempts попыток конфликт уходит вызывающему
+@Component
+public class ConflictRetryExecutor {
+
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    private final Map<String, OperationStats> operations = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ConflictRetryExecutor(PlatformTransactionManager transactionManager,
+                                 @Value("${forum.retry.max-attempts:5}") int maxAttempts,
+                                 @Value("${forum.retry.base-delay-ms:2}") long baseDelayMillis,
+                                 @Value("${forum.retry.max-delay-ms:50}") long maxDelayMillis) {
+        this(new TransactionTemplate(transactionManager), maxAttempts, baseDelayMillis, maxDelayMillis);
+    }
+
+    ConflictRetryExecutor(TransactionTemplate transactionTemplate, int maxAttempts, long baseDelayMillis,
+                          long maxDelayMillis) {
+        this.transactionTemplate = transactionTemplate;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    // operation - имя для счётчиков (post.edit, comment.delete, ...)
+    public <T> T execute(String operation, Supplier<T> action) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            // повтор внутри чужой транзакции перечитал бы те же устаревшие сущности из её контекста
+            throw new IllegalStateException("Операция " + operation + " с повтором вызвана внутри транзакции");
+        }
+        OperationStats stats = stats(operation);
+        stats.calls.increment();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> action.get());
+            } catch (OptimisticLockingFailureException e) {
+                stats.conflicts.increment();
+                if (attempt >= maxAttempts) {
+                    stats.exhausted.increment();
+                    throw e;
+                }
+                stats.retries.increment();
+                backOff(operation, attempt);
+            }
+        }
+    }
+
+    public void executeWithoutResult(String operation, Runnable action) {
+        execute(operation, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public OperationStats stats(String operation) {
+        return operations.computeIfAbsent(operation, name -> new OperationStats());
+    }
+
+    private void backOff(String operation, int attempt) {
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 30));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        if (delay == 0) {
+            Thread.yield();
+            return;
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Повтор операции " + operation + " прерван", e);
+        }
+    }
+
+    // Доля конфликтов - conflicts / (calls + retries), т.е. на попытку; exhausted - вызовы, не прошедшие за max-attempts
+    public static final class OperationStats {
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder conflicts = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder exhausted = new LongAdder();
+
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        public long getConflicts() {
+            return conflicts.sum();
+        }
+
+        public long getRetries() {
+            return retries.sum();
+        }
+
+        public long getExhausted() {
+            return exhausted.sum();
+        }
+    }
+}
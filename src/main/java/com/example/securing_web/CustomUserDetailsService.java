@@ -3,6 +3,7 @@ package com.example.securing_web;
 import com.example.securing_web.User;
 import com.example.securing_web.UserRepository;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
@@ -10,34 +11,52 @@ import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collections;
-
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     private static final Logger logger = LoggerFactory.getLogger(CustomUserDetailsService.class);
 
     private final UserRepository userRepository;
 
-    public CustomUserDetailsService(UserRepository userRepository){
+    private final UserDetailsCache userCache;
+
+    public CustomUserDetailsService(UserRepository userRepository, UserDetailsCache userCache){
         this.userRepository = userRepository;
+        this.userCache = userCache;
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        logger.info("Попытка загрузить пользователя: {}", username);
+        UserDetails cached = userCache.getUserFromCache(username);
+        if (cached != null) {
+            return cached;
+        }
+
+        logger.debug("Попытка загрузить пользователя: {}", username);
+        long stamp = userCache.stamp();
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> {
                     logger.warn("Пользователь не найден: {}", username);
                     return new UsernameNotFoundException("Пользователь не найден: " + username);
                 });
 
-        logger.info("Пользователь найден: {}", username);
+        logger.debug("Пользователь найден: {}", username);
 
-        return new org.springframework.security.core.userdetails.User(
-                user.getUsername(),
-                user.getPassword(),
-                Collections.emptyList() // Здесь можно добавить роли при необходимости
-        );
+        // роли пока не используются; id и fullName нужны дальше без повторного чтения users
+        ForumUserPrincipal principal = ForumUserPrincipal.of(user);
+        userCache.putUserInCache(principal, stamp);
+        return principal;
+    }
+
+    // Вызывается DaoAuthenticationProvider после успешного входа, если cost BCrypt изменился;
+    // newPassword уже захэширован
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        userRepository.findByUsername(user.getUsername()).ifPresent(entity -> {
+            entity.setPassword(newPassword);
+            userRepository.save(entity);
+        });
+        userCache.removeUserFromCache(user.getUsername());
+        return ((ForumUserPrincipal) user).withPassword(newPassword);
     }
 }
\ No newline at end of file
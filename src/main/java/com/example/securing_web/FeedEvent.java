@@ -0,0 +1,49 @@
+package com.example.securing_web;
+
+// Событие живой ленты; name - имя события SSE, data сериализуется в JSON
+public class FeedEvent {
+
+    public static final String POST_CREATED = "post-created";
+    public static final String POST_DELETED = "post-deleted";
+    public static final String COMMENT_ADDED = "comment-added";
+    public static final String VOTES = "votes";
+
+    private final String name;
+    private final Object data;
+
+    public FeedEvent(String name, Object data) {
+        this.name = name;
+        this.data = data;
+    }
+
+    public static FeedEvent postCreated(Post post) {
+        return new FeedEvent(POST_CREATED, new PostRef(post.getId(), post.getTitle(), post.getAuthor()));
+    }
+
+    public static FeedEvent postDeleted(Long postId) {
+        return new FeedEvent(POST_DELETED, new PostRef(postId, null, null));
+    }
+
+    public static FeedEvent commentAdded(CommentDto comment) {
+        return new FeedEvent(COMMENT_ADDED, comment);
+    }
+
+    public static FeedEvent votes(Long postId, long likes, long dislikes) {
+        return new FeedEvent(VOTES, new VoteDelta(postId, likes, dislikes));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Object getData() {
+        return data;
+    }
+
+    public record PostRef(Long postId, String title, String author) {
+    }
+
+    // Приращения, а не итоговые значения: их можно складывать при склейке
+    public record VoteDelta(Long postId, long likes, long dislikes) {
+    }
+}
@@ -0,0 +1,318 @@
+package com.example.securing_web;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Рассылка событий живой ленты подписчикам (SSE). publish только кладёт событие в ограниченный буфер
+// каждого подписчика и никогда не ждёт сеть; отправкой занимается небольшой пул потоков.
+// Приращения голосов по одному посту, ещё не ушедшие подписчику, складываются в одно событие.
+// Подписчик отключается, если его буфер переполнен, отправка упала или зависла дольше send-timeout-ms.
+@Component
+public class FeedEventBroadcaster {
+
+    private static final Logger logger = LoggerFactory.getLogger(FeedEventBroadcaster.class);
+
+    // Сколько событий подписчика отправлять за один заход, прежде чем уступить поток другим
+    private static final int DRAIN_BATCH = 64;
+
+    // Канал до клиента; send может блокироваться, close должен прерывать зависшую отправку
+    public interface Sink {
+
+        void send(FeedEvent event) throws IOException;
+
+        void heartbeat() throws IOException;
+
+        void close();
+    }
+
+    private final Map<Long, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private final ExecutorService senders;
+    private final ScheduledExecutorService watchdog;
+    private final ExecutorService closers;
+    private final int bufferSize;
+    private final long sendTimeoutNanos;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    public FeedEventBroadcaster(@Value("${forum.events.buffer-size:256}") int bufferSize,
+                                @Value("${forum.events.sender-threads:8}") int senderThreads,
+                                @Value("${forum.events.send-timeout-ms:10000}") long sendTimeoutMillis) {
+        this.bufferSize = bufferSize;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "feed-events-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // зависшая отправка держит поток пула, поэтому проверяем чаще, чем раз в send-timeout-ms
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "feed-events-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // close может ждать зависшую отправку, а их одновременно не больше sender-threads:
+        // ещё один поток сверху, чтобы закрытие остальных не стояло за ними
+        AtomicInteger closerNumber = new AtomicInteger();
+        this.closers = Executors.newFixedThreadPool(senderThreads + 1, runnable -> {
+            Thread thread = new Thread(runnable, "feed-events-close-" + closerNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long checkMillis = Math.max(10, sendTimeoutMillis / 4);
+        watchdog.scheduleWithFixedDelay(this::evictStalled, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public long subscribe(Sink sink) {
+        long id = nextId.incrementAndGet();
+        subscribers.put(id, new Subscriber(id, sink));
+        return id;
+    }
+
+    public void unsubscribe(long id) {
+        Subscriber subscriber = subscribers.remove(id);
+        if (subscriber != null) {
+            subscriber.closed = true;
+        }
+    }
+
+    public void publish(FeedEvent event) {
+        published.increment();
+        for (Subscriber subscriber : subscribers.values()) {
+            subscriber.offer(event);
+        }
+    }
+
+    public void publishVotes(Long postId, long likes, long dislikes) {
+        published.increment();
+        for (Subscriber subscriber : subscribers.values()) {
+            subscriber.offerVotes(postId, likes, dislikes);
+        }
+    }
+
+    // Пустое событие раз в heartbeat-ms: держит соединение через прокси и выявляет мёртвых клиентов
+    @Scheduled(fixedDelayString = "${forum.events.heartbeat-ms:15000}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers.values()) {
+            subscriber.requestHeartbeat();
+        }
+    }
+
+    // Закрытие канала прерывает зависшую отправку и освобождает поток
+    private void evictStalled() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers.values()) {
+            long started = subscriber.sendStartedAt;
+            if (started != 0 && now - started > sendTimeoutNanos) {
+                evict(subscriber, "отправка зависла");
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public long getPublished() {
+        return published.sum();
+    }
+
+    public long getDelivered() {
+        return delivered.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public long getEvicted() {
+        return evicted.sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.values().forEach(subscriber -> subscriber.sink.close());
+        subscribers.clear();
+        watchdog.shutdownNow();
+        senders.shutdownNow();
+        closers.shutdownNow();
+    }
+
+    private void evict(Subscriber subscriber, String reason) {
+        if (subscribers.remove(subscriber.id, subscriber)) {
+            subscriber.closed = true;
+            evicted.increment();
+            logger.debug("Подписчик {} отключён: {}", subscriber.id, reason);
+            // close может ждать сеть - не в потоке публикации и не в пуле отправки:
+            // все его потоки могут быть заняты как раз зависшими отправками
+            closers.execute(subscriber.sink::close);
+        }
+    }
+
+    private final class Subscriber {
+
+        final long id;
+        final Sink sink;
+
+        // ReentrantLock, а не synchronized: в режиме виртуальных потоков публикация идёт из них
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ArrayDeque<FeedEvent> queue = new ArrayDeque<>();
+        private final Map<Long, long[]> pendingVotes = new LinkedHashMap<>();
+        private boolean heartbeatRequested;
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        volatile boolean closed;
+        volatile long sendStartedAt;
+
+        Subscriber(long id, Sink sink) {
+            this.id = id;
+            this.sink = sink;
+        }
+
+        void offer(FeedEvent event) {
+            lock.lock();
+            try {
+                if (queue.size() + pendingVotes.size() >= bufferSize) {
+                    overflow();
+                    return;
+                }
+                queue.add(event);
+            } finally {
+                lock.unlock();
+            }
+            schedule();
+        }
+
+        void offerVotes(Long postId, long likes, long dislikes) {
+            lock.lock();
+            try {
+                long[] pending = pendingVotes.get(postId);
+                if (pending != null) {
+                    pending[0] += likes;
+                    pending[1] += dislikes;
+                    coalesced.increment();
+                    return;
+                }
+                if (queue.size() + pendingVotes.size() >= bufferSize) {
+                    overflow();
+                    return;
+                }
+                pendingVotes.put(postId, new long[]{likes, dislikes});
+            } finally {
+                lock.unlock();
+            }
+            schedule();
+        }
+
+        void requestHeartbeat() {
+            lock.lock();
+            try {
+                heartbeatRequested = true;
+            } finally {
+                lock.unlock();
+            }
+            schedule();
+        }
+
+        private void overflow() {
+            // под lock подписчика: evict лишь удаляет его из карты и отдаёт закрытие пулу
+            evict(this, "буфер переполнен");
+        }
+
+        private void schedule() {
+            if (!closed && scheduled.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            List<FeedEvent> batch = takeBatch();
+            boolean heartbeatOnly = batch == null;
+            try {
+                if (heartbeatOnly) {
+                    sendStartedAt = System.nanoTime();
+                    sink.heartbeat();
+                } else {
+                    for (FeedEvent event : batch) {
+                        if (closed) {
+                            return;
+                        }
+                        sendStartedAt = System.nanoTime();
+                        sink.send(event);
+                        delivered.increment();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                evict(this, "ошибка отправки: " + e);
+                return;
+            } finally {
+                sendStartedAt = 0;
+                scheduled.set(false);
+            }
+            // события, пришедшие во время отправки, или остаток сверх DRAIN_BATCH
+            if (hasWork()) {
+                schedule();
+            }
+        }
+
+        // null - отправлять нечего, кроме heartbeat
+        private List<FeedEvent> takeBatch() {
+            lock.lock();
+            try {
+                List<FeedEvent> batch = new ArrayList<>(Math.min(DRAIN_BATCH, queue.size() + pendingVotes.size()));
+                while (batch.size() < DRAIN_BATCH && !queue.isEmpty()) {
+                    batch.add(queue.poll());
+                }
+                var votes = pendingVotes.entrySet().iterator();
+                while (batch.size() < DRAIN_BATCH && votes.hasNext()) {
+                    Map.Entry<Long, long[]> entry = votes.next();
+                    batch.add(FeedEvent.votes(entry.getKey(), entry.getValue()[0], entry.getValue()[1]));
+                    votes.remove();
+                }
+                if (batch.isEmpty() && heartbeatRequested) {
+                    heartbeatRequested = false;
+                    return null;
+                }
+                // любое событие заменяет heartbeat
+                heartbeatRequested = false;
+                return batch;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean hasWork() {
+            lock.lock();
+            try {
+                return !queue.isEmpty() || !pendingVotes.isEmpty() || heartbeatRequested;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package com.example.securing_web;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+// Выгрузка и загрузка данных форума (users, post, comment, post_vote) в NDJSON: одна строка - одна запись,
+// поле "type" - таблица, остальные поля - колонки, id сохраняются.
+// Выгрузка читает каждую таблицу одним курсором (fetch-size строк за раз) в одном снимке БД,
+// загрузка пишет пачками: COPY на PostgreSQL, batch INSERT на остальных БД. Память не зависит от объёма.
+// Обе операции отдают контрольные точки, с которых их можно продолжить после сбоя.
+@Service
+public class ForumDataTransfer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ForumDataTransfer.class);
+
+    private static final String LIVE_POST = "post_id IN (SELECT id FROM post WHERE deleted_at IS NULL)";
+
+    // Порядок важен: внешние ключи ссылаются на предыдущие таблицы.
+    // filter - условие выгрузки: мягко удалённые посты (ждут PostPurgeJob) и всё, что к ним относится, не выгружаются
+    enum Table {
+        USERS("users", "TRUE", "id", "username", "password", "full_name"),
+        POST("post", "deleted_at IS NULL", "id", "title", "content", "author", "likes", "dislikes"),
+        COMMENT("comment", LIVE_POST, "id", "post_id", "author", "content"),
+        POST_VOTE("post_vote", LIVE_POST, "id", "username", "user_id", "post_id", "vote_type");
+
+        final String name;
+        final String filter;
+        final List<String> columns;
+
+        Table(String name, String filter, String... columns) {
+            this.name = name;
+            this.filter = filter;
+            this.columns = List.of(columns);
+        }
+
+        static Table of(String name) {
+            for (Table table : values()) {
+                if (table.name.equals(name)) {
+                    return table;
+                }
+            }
+            throw new IllegalArgumentException("Неизвестная таблица в выгрузке: " + name);
+        }
+    }
+
+    // Выгрузка: таблица, последний выгруженный id и число записанных байт (до него обрезается файл).
+    // Загрузка: table/lastId - последняя загруженная запись, position - число обработанных строк
+    public record Checkpoint(String table, long lastId, long position) {
+    }
+
+    public static final class Report {
+
+        private final Map<String, Long> rows = new LinkedHashMap<>();
+        private final long startedAt = System.nanoTime();
+        private long elapsedNanos;
+
+        void add(String table, long count) {
+            rows.merge(table, count, Long::sum);
+        }
+
+        void finish() {
+            elapsedNanos = System.nanoTime() - startedAt;
+        }
+
+        public Map<String, Long> getRows() {
+            return Collections.unmodifiableMap(rows);
+        }
+
+        public long getTotalRows() {
+            return rows.values().stream().mapToLong(Long::longValue).sum();
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : getTotalRows() * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s, всего %d строк за %.1f с (%.0f строк/с)",
+                    rows, getTotalRows(), elapsedNanos / 1e9, getRowsPerSecond());
+        }
+    }
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate cursorTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final PostSummaryService postSummaryService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final int batchSize;
+    private final int checkpointEvery;
+
+    public ForumDataTransfer(DataSource dataSource,
+                             JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             PostSummaryService postSummaryService,
+                             @Value("${forum.transfer.batch-size:5000}") int batchSize,
+                             @Value("${forum.transfer.fetch-size:1000}") int fetchSize,
+                             @Value("${forum.transfer.checkpoint-every:50000}") int checkpointEvery) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionManager = transactionManager;
+        this.postSummaryService = postSummaryService;
+        this.batchSize = batchSize;
+        this.checkpointEvery = checkpointEvery;
+        // PostgreSQL читает курсором только при fetchSize > 0 и выключенном autocommit (т.е. в транзакции)
+        this.cursorTemplate = new JdbcTemplate(dataSource);
+        this.cursorTemplate.setFetchSize(fetchSize);
+    }
+
+    public Report export(OutputStream out, Checkpoint resumeFrom, Consumer<Checkpoint> checkpoints) {
+        Report report = new Report();
+        TransactionTemplate snapshot = new TransactionTemplate(transactionManager);
+        snapshot.setReadOnly(true);
+        snapshot.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+
+        long startPosition = resumeFrom == null ? 0 : resumeFrom.position();
+        PositionOutputStream position = new PositionOutputStream(out, startPosition);
+        snapshot.executeWithoutResult(status -> {
+            try (JsonGenerator json = objectMapper.getFactory().createGenerator(position, JsonEncoding.UTF8)) {
+                json.setRootValueSeparator(null);
+                boolean skipping = resumeFrom != null;
+                for (Table table : Table.values()) {
+                    long after = 0;
+                    if (skipping) {
+                        if (!table.name.equals(resumeFrom.table())) {
+                            continue;
+                        }
+                        skipping = false;
+                        after = resumeFrom.lastId();
+                    }
+                    exportTable(table, after, json, position, report, checkpoints);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        report.finish();
+        logger.info("Выгрузка завершена: {}", report);
+        return report;
+    }
+
+    private void exportTable(Table table, long after, JsonGenerator json, PositionOutputStream position,
+                             Report report, Consumer<Checkpoint> checkpoints) {
+        String sql = "SELECT " + String.join(", ", table.columns) + " FROM " + table.name
+                + " WHERE id > ? AND " + table.filter + " ORDER BY id";
+        long[] written = {0};
+        cursorTemplate.query(sql, rs -> {
+            try {
+                json.writeStartObject();
+                json.writeStringField("type", table.name);
+                for (int i = 0; i < table.columns.size(); i++) {
+                    json.writeFieldName(table.columns.get(i));
+                    json.writeObject(rs.getObject(i + 1));
+                }
+                json.writeEndObject();
+                json.writeRaw('\n');
+                if (++written[0] % checkpointEvery == 0) {
+                    json.flush();
+                    checkpoints.accept(new Checkpoint(table.name, rs.getLong(1), position.position));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, after);
+        try {
+            json.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        report.add(table.name, written[0]);
+        logger.info("Выгружено {}: {} строк", table.name, written[0]);
+    }
+
+    // skipLines - position из последней контрольной точки предыдущей попытки (0 - с начала).
+    // Каждая пачка - отдельная транзакция; контрольная точка отдаётся после её коммита
+    public Report importData(InputStream in, long skipLines, Consumer<Checkpoint> checkpoints) throws IOException {
+        Report report = new Report();
+        boolean postgres = isPostgres();
+        TransactionTemplate batchTransaction = new TransactionTemplate(transactionManager);
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        long line = 0;
+        Table current = null;
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        String text;
+        while ((text = reader.readLine()) != null) {
+            line++;
+            if (line <= skipLines || text.isBlank()) {
+                continue;
+            }
+            JsonNode node = objectMapper.readTree(text);
+            Table table = Table.of(node.path("type").asText());
+            if (current != table || batch.size() == batchSize) {
+                flushBatch(current, batch, line - 1, postgres, batchTransaction, report, checkpoints);
+                current = table;
+            }
+            Object[] row = new Object[table.columns.size()];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = toValue(node.get(table.columns.get(i)));
+            }
+            batch.add(row);
+        }
+        flushBatch(current, batch, line, postgres, batchTransaction, report, checkpoints);
+
+        alignIdGenerators(postgres);
+        postSummaryService.repairAll();
+        report.finish();
+        logger.info("Загрузка завершена: {}", report);
+        return report;
+    }
+
+    private void flushBatch(Table table, List<Object[]> batch, long line, boolean postgres,
+                            TransactionTemplate batchTransaction, Report report, Consumer<Checkpoint> checkpoints) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        batchTransaction.executeWithoutResult(status -> {
+            if (postgres) {
+                copy(table, batch);
+            } else {
+                insert(table, batch);
+            }
+        });
+        report.add(table.name, batch.size());
+        checkpoints.accept(new Checkpoint(table.name, ((Number) batch.get(batch.size() - 1)[0]).longValue(), line));
+        batch.clear();
+    }
+
+    private void insert(Table table, List<Object[]> batch) {
+        String placeholders = String.join(", ", Collections.nCopies(table.columns.size(), "?"));
+        jdbcTemplate.batchUpdate("INSERT INTO " + table.name + " (" + String.join(", ", table.columns)
+                + ") VALUES (" + placeholders + ")", batch);
+    }
+
+    // COPY ... FROM STDIN в CSV: строки пачки один раз собираются в память, без разбора SQL на каждую
+    private void copy(Table table, List<Object[]> batch) {
+        StringBuilder csv = new StringBuilder();
+        for (Object[] row : batch) {
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) {
+                    csv.append(',');
+                }
+                Object value = row[i];
+                if (value instanceof String string) {
+                    csv.append('"').append(string.replace("\"", "\"\"")).append('"');
+                } else if (value != null) {
+                    csv.append(value);
+                }
+            }
+            csv.append('\n');
+        }
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            connection.unwrap(PGConnection.class).getCopyAPI().copyIn(
+                    "COPY " + table.name + " (" + String.join(", ", table.columns) + ") FROM STDIN WITH (FORMAT csv)",
+                    new StringReader(csv.toString()));
+        } catch (SQLException | IOException e) {
+            throw new IllegalStateException("COPY в " + table.name + " не удался", e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    // id загружены явно, поэтому генераторы нужно сдвинуть за максимальный id
+    private void alignIdGenerators(boolean postgres) {
+        for (Table table : Table.values()) {
+            Long max = jdbcTemplate.queryForObject("SELECT max(id) FROM " + table.name, Long.class);
+            if (max == null) {
+                continue;
+            }
+            if (table == Table.COMMENT) {
+                // comment_seq с шагом 50 (pooled): следующее значение max + 50 даёт id с max + 1
+                if (postgres) {
+                    jdbcTemplate.queryForObject("SELECT setval('comment_seq', ?)", Long.class, max);
+                } else {
+                    jdbcTemplate.execute("ALTER SEQUENCE comment_seq RESTART WITH " + (max + 50));
+                }
+            } else if (postgres) {
+                jdbcTemplate.queryForObject("SELECT setval(pg_get_serial_sequence(?, 'id'), ?)",
+                        Long.class, table.name, max);
+            } else {
+                jdbcTemplate.execute("ALTER TABLE " + table.name + " ALTER COLUMN id RESTART WITH " + (max + 1));
+            }
+        }
+    }
+
+    private boolean isPostgres() {
+        try (Connection connection = dataSource.getConnection()) {
+            return "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName());
+        } catch (SQLException e) {
+            throw new IllegalStateException("Не удалось определить тип БД", e);
+        }
+    }
+
+    private static Object toValue(JsonNode node) {
+        if (node == null || node.isNull()) {
+            return null;
+        }
+        if (node.isIntegralNumber()) {
+            return node.longValue();
+        }
+        return node.asText();
+    }
+
+    // Считает записанные байты: по ним после сбоя обрезается недописанный хвост файла
+    private static final class PositionOutputStream extends FilterOutputStream {
+
+        long position;
+
+        PositionOutputStream(OutputStream out, long position) {
+            super(out);
+            this.position = position;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            position++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            position += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // поток закрывает вызывающий
+            flush();
+        }
+    }
+}
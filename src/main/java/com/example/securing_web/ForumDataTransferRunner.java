@@ -0,0 +1,106 @@
+package com.example.securing_web;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Выгрузка/загрузка из командной строки, после неё приложение завершается:
+//   --forum.transfer.export=dump.ndjson
+//   --forum.transfer.import=dump.ndjson
+// Контрольная точка пишется в <файл>.checkpoint; если файл остался от прерванного запуска,
+// операция продолжается с неё, после успешного завершения он удаляется
+@Component
+public class ForumDataTransferRunner implements ApplicationRunner {
+
+    private final ForumDataTransfer transfer;
+    private final ConfigurableApplicationContext context;
+    private final String exportPath;
+    private final String importPath;
+
+    public ForumDataTransferRunner(ForumDataTransfer transfer,
+                                   ConfigurableApplicationContext context,
+                                   @Value("${forum.transfer.export:}") String exportPath,
+                                   @Value("${forum.transfer.import:}") String importPath) {
+        this.transfer = transfer;
+        this.context = context;
+        this.exportPath = exportPath;
+        this.importPath = importPath;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        if (exportPath.isBlank() && importPath.isBlank()) {
+            return;
+        }
+        if (!exportPath.isBlank()) {
+            exportTo(Path.of(exportPath));
+        }
+        if (!importPath.isBlank()) {
+            importFrom(Path.of(importPath));
+        }
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+
+    private void exportTo(Path file) throws IOException {
+        Path checkpointFile = checkpointFile(file);
+        ForumDataTransfer.Checkpoint resumeFrom = readCheckpoint(checkpointFile);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // всё, что записано после контрольной точки, могло оборваться на середине строки
+            channel.truncate(resumeFrom == null ? 0 : resumeFrom.position());
+            channel.position(channel.size());
+            try (OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16)) {
+                transfer.export(out, resumeFrom, checkpoint -> writeCheckpoint(checkpointFile, checkpoint));
+            }
+        }
+        Files.deleteIfExists(checkpointFile);
+    }
+
+    private void importFrom(Path file) throws IOException {
+        Path checkpointFile = checkpointFile(file);
+        ForumDataTransfer.Checkpoint resumeFrom = readCheckpoint(checkpointFile);
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+            transfer.importData(in, resumeFrom == null ? 0 : resumeFrom.position(),
+                    checkpoint -> writeCheckpoint(checkpointFile, checkpoint));
+        }
+        Files.deleteIfExists(checkpointFile);
+    }
+
+    private static Path checkpointFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".checkpoint");
+    }
+
+    private static ForumDataTransfer.Checkpoint readCheckpoint(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        String[] parts = Files.readString(file).trim().split(" ");
+        return new ForumDataTransfer.Checkpoint(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+    }
+
+    // Через временный файл: оборванная запись не должна испортить предыдущую контрольную точку
+    private static void writeCheckpoint(Path file, ForumDataTransfer.Checkpoint checkpoint) {
+        try {
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(temp, checkpoint.table() + " " + checkpoint.lastId() + " " + checkpoint.position());
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
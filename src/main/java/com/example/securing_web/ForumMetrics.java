@@ -0,0 +1,191 @@
+package com.example.securing_web;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+// Метрики сервисов форума для /actuator/prometheus. Сами сервисы считают в LongAdder и ничего не знают
+// о Micrometer; здесь счётчики только читаются при сборе метрик
+@Component
+public class ForumMetrics implements MeterBinder {
+
+    private final PostService postService;
+    private final UserService userService;
+    private final PasswordHashingService passwordHashingService;
+    private final UserDetailsCache userDetailsCache;
+    private final PostFragmentCache postFragmentCache;
+    private final UserDirectoryService userDirectoryService;
+    private final PostLookupCache postLookupCache;
+    private final HotRanking hotRanking;
+    private final PostPurgeJob postPurgeJob;
+    private final VoteLedger voteLedger;
+    private final CommentIngestionPipeline commentIngestionPipeline;
+    private final FeedEventBroadcaster feedEventBroadcaster;
+    private final RateLimiter rateLimiter;
+    private final ObjectProvider<ReplicaRouter> replicaRouter;
+    private final ConflictRetryExecutor conflictRetry;
+
+    public ForumMetrics(PostService postService,
+                        UserService userService,
+                        PasswordHashingService passwordHashingService,
+                        UserDetailsCache userDetailsCache,
+                        PostFragmentCache postFragmentCache,
+                        UserDirectoryService userDirectoryService,
+                        PostLookupCache postLookupCache,
+                        HotRanking hotRanking,
+                        PostPurgeJob postPurgeJob,
+                        VoteLedger voteLedger,
+                        CommentIngestionPipeline commentIngestionPipeline,
+                        FeedEventBroadcaster feedEventBroadcaster,
+                        RateLimiter rateLimiter,
+                        ObjectProvider<ReplicaRouter> replicaRouter,
+                        ConflictRetryExecutor conflictRetry) {
+        this.postService = postService;
+        this.userService = userService;
+        this.passwordHashingService = passwordHashingService;
+        this.userDetailsCache = userDetailsCache;
+        this.postFragmentCache = postFragmentCache;
+        this.userDirectoryService = userDirectoryService;
+        this.postLookupCache = postLookupCache;
+        this.hotRanking = hotRanking;
+        this.postPurgeJob = postPurgeJob;
+        this.voteLedger = voteLedger;
+        this.commentIngestionPipeline = commentIngestionPipeline;
+        this.feedEventBroadcaster = feedEventBroadcaster;
+        this.rateLimiter = rateLimiter;
+        this.replicaRouter = replicaRouter;
+        this.conflictRetry = conflictRetry;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("forum.votes", postService, PostService::getVotesRecorded)
+                .description("Голоса").tag("result", "recorded").register(registry);
+        FunctionCounter.builder("forum.votes", postService, PostService::getVotesDeduplicated)
+                .description("Голоса").tag("result", "duplicate").register(registry);
+        FunctionCounter.builder("forum.votes", postService, PostService::getVotesRejected)
+                .description("Голоса").tag("result", "deleted-post").register(registry);
+        // только при forum.votes.storage=compact
+        if (voteLedger.isEnabled()) {
+            Gauge.builder("forum.votes.ledger.bytes", voteLedger, VoteLedger::getSizeInBytes)
+                    .description("Битовые карты голосов в памяти").baseUnit("bytes").register(registry);
+            Gauge.builder("forum.votes.ledger.posts", voteLedger, VoteLedger::getPostCount).register(registry);
+            FunctionTimer.builder("forum.votes.ledger.snapshot", voteLedger,
+                            VoteLedger::getSnapshots, VoteLedger::getSnapshotNanos, TimeUnit.NANOSECONDS)
+                    .description("Сохранение снимков битовых карт").register(registry);
+        }
+
+        for (String operation : List.of(PostService.EDIT_OPERATION, CommentService.EDIT_OPERATION,
+                CommentService.DELETE_OPERATION)) {
+            bindRetry(registry, operation, conflictRetry.stats(operation));
+        }
+
+        FunctionTimer.builder("forum.password.hash", passwordHashingService,
+                        PasswordHashingService::getHashCount, PasswordHashingService::getHashNanos, TimeUnit.NANOSECONDS)
+                .description("Все вычисления BCrypt").register(registry);
+        FunctionTimer.builder("forum.register.hash", userService,
+                        UserService::getRegistrations, UserService::getRegisterHashNanos, TimeUnit.NANOSECONDS)
+                .description("BCrypt при регистрации, с ожиданием в очереди").register(registry);
+        FunctionCounter.builder("forum.password.rejected", passwordHashingService,
+                PasswordHashingService::getRejected).register(registry);
+        Gauge.builder("forum.password.queue", passwordHashingService, PasswordHashingService::getQueueSize)
+                .register(registry);
+
+        bindCache(registry, "user-details", userDetailsCache,
+                UserDetailsCache::getHits, UserDetailsCache::getMisses);
+        bindCache(registry, "post-fragments", postFragmentCache,
+                PostFragmentCache::getHits, PostFragmentCache::getMisses);
+        bindCache(registry, "user-directory", userDirectoryService,
+                UserDirectoryService::getCacheHits, UserDirectoryService::getCacheMisses);
+        bindCache(registry, "post-exists", postLookupCache,
+                PostLookupCache::getPostHits, PostLookupCache::getPostMisses);
+        bindCache(registry, "post-votes", postLookupCache,
+                PostLookupCache::getVoteHits, PostLookupCache::getVoteMisses);
+        FunctionCounter.builder("forum.cache.loads", postLookupCache, PostLookupCache::getPostLoads)
+                .description("Запросы к БД после промаха, одновременные промахи по одному посту считаются один раз")
+                .tag("cache", "post-exists").register(registry);
+        FunctionCounter.builder("forum.cache.evictions", postLookupCache, PostLookupCache::getEvictions)
+                .tag("cache", "post-lookup").register(registry);
+        Gauge.builder("forum.hot.tracked", hotRanking, HotRanking::size)
+                .description("Посты в рейтинге горячих").register(registry);
+        FunctionCounter.builder("forum.purge.rows", postPurgeJob, PostPurgeJob::getCommentsPurged)
+                .description("Строки, удалённые очисткой удалённых постов").tag("table", "comment").register(registry);
+        FunctionCounter.builder("forum.purge.rows", postPurgeJob, PostPurgeJob::getVotesPurged)
+                .description("Строки, удалённые очисткой удалённых постов").tag("table", "post_vote").register(registry);
+        FunctionCounter.builder("forum.purge.posts", postPurgeJob, PostPurgeJob::getPostsPurged).register(registry);
+        Gauge.builder("forum.purge.pending", postPurgeJob, PostPurgeJob::getPendingPosts)
+                .description("Удалённые посты, ожидающие очистки").register(registry);
+        FunctionCounter.builder("forum.fragments.render.saved", postFragmentCache,
+                        cache -> cache.getRenderNanosSaved() / 1e9)
+                .description("Время рендеринга, сэкономленное кэшем карточек").baseUnit("seconds").register(registry);
+
+        FunctionTimer.builder("forum.sql", SqlStatementTracker.class,
+                        tracker -> SqlStatementTracker.getStatements(),
+                        tracker -> SqlStatementTracker.getStatementNanos(), TimeUnit.NANOSECONDS)
+                .description("Все выполненные SQL-запросы").register(registry);
+
+        Gauge.builder("forum.comments.queue", commentIngestionPipeline, CommentIngestionPipeline::getQueueSize)
+                .register(registry);
+        Gauge.builder("forum.events.subscribers", feedEventBroadcaster, FeedEventBroadcaster::getSubscriberCount)
+                .register(registry);
+        FunctionCounter.builder("forum.events.evicted", feedEventBroadcaster, FeedEventBroadcaster::getEvicted)
+                .register(registry);
+
+        FunctionCounter.builder("forum.rate.limit.requests", rateLimiter, RateLimiter::getAllowed)
+                .tag("result", "allowed").register(registry);
+        FunctionCounter.builder("forum.rate.limit.requests", rateLimiter, RateLimiter::getRejected)
+                .tag("result", "rejected").register(registry);
+        Gauge.builder("forum.rate.limit.buckets", rateLimiter, RateLimiter::getStoreSize).register(registry);
+
+        // только при forum.replicas.enabled
+        replicaRouter.ifAvailable(router -> {
+            FunctionCounter.builder("forum.db.connections", router, ReplicaRouter::getPrimaryConnections)
+                    .tag("target", "primary").register(registry);
+            FunctionCounter.builder("forum.db.connections", router, ReplicaRouter::getReplicaConnections)
+                    .tag("target", "replica").register(registry);
+            FunctionCounter.builder("forum.db.replica.failovers", router, ReplicaRouter::getFailovers)
+                    .register(registry);
+            for (ReplicaRouter.Replica replica : router.getReplicas()) {
+                Gauge.builder("forum.db.replica.lag", replica, ReplicaRouter.Replica::getLagMillis)
+                        .tag("replica", replica.getName()).baseUnit("milliseconds").register(registry);
+                Gauge.builder("forum.db.replica.healthy", replica, r -> r.isHealthy() ? 1 : 0)
+                        .tag("replica", replica.getName()).register(registry);
+            }
+        });
+    }
+
+    // Конфликты @Version по операциям: доля конфликтов на попытку - conflicts / (calls + retries)
+    private static void bindRetry(MeterRegistry registry, String operation, ConflictRetryExecutor.OperationStats stats) {
+        FunctionCounter.builder("forum.retry.calls", stats, ConflictRetryExecutor.OperationStats::getCalls)
+                .tag("operation", operation).register(registry);
+        FunctionCounter.builder("forum.retry.conflicts", stats, ConflictRetryExecutor.OperationStats::getConflicts)
+                .description("Попытки, отклонённые оптимистичной блокировкой").tag("operation", operation)
+                .register(registry);
+        FunctionCounter.builder("forum.retry.retries", stats, ConflictRetryExecutor.OperationStats::getRetries)
+                .tag("operation", operation).register(registry);
+        FunctionCounter.builder("forum.retry.exhausted", stats, ConflictRetryExecutor.OperationStats::getExhausted)
+                .description("Вызовы, не прошедшие за max-attempts попыток").tag("operation", operation)
+                .register(registry);
+    }
+
+    private static <T> void bindCache(MeterRegistry registry, String name, T cache,
+                                      ToDoubleFunction<T> hits, ToDoubleFunction<T> misses) {
+        FunctionCounter.builder("forum.cache.requests", cache, hits)
+                .tag("cache", name).tag("result", "hit").register(registry);
+        FunctionCounter.builder("forum.cache.requests", cache, misses)
+                .tag("cache", name).tag("result", "miss").register(registry);
+        Gauge.builder("forum.cache.hit.ratio", cache, c -> {
+            double hit = hits.applyAsDouble(c);
+            double total = hit + misses.applyAsDouble(c);
+            return total == 0 ? 0 : hit / total;
+        }).tag("cache", name).register(registry);
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.securing_web;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+// Текущий пользователь в SecurityContext: id, username и fullName, собранные один раз при входе
+// (CustomUserDetailsService) или из токена - контроллерам и сервисам не нужно снова читать users.
+// Неизменяемый: вместо стирания пароля в общем экземпляре (его держит UserDetailsCache) после входа
+// в контекст кладётся копия без пароля, см. WebSecurityConfig.authenticationProvider
+public final class ForumUserPrincipal implements UserDetails {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long id;
+    private final String username;
+    private final String fullName;
+    private final String password;
+    private final List<GrantedAuthority> authorities;
+
+    public ForumUserPrincipal(Long id, String username, String fullName, String password,
+                              Collection<? extends GrantedAuthority> authorities) {
+        this.id = id;
+        this.username = username;
+        this.fullName = fullName;
+        this.password = password;
+        this.authorities = List.copyOf(authorities);
+    }
+
+    static ForumUserPrincipal of(User user) {
+        return new ForumUserPrincipal(user.getId(), user.getUsername(), user.getFullName(), user.getPassword(),
+                List.of());
+    }
+
+    public ForumUserPrincipal withPassword(String password) {
+        return new ForumUserPrincipal(id, username, fullName, password, authorities);
+    }
+
+    public ForumUserPrincipal withoutPassword() {
+        return password == null ? this : withPassword(null);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    public String getFullName() {
+        return fullName;
+    }
+
+    public String getDisplayName() {
+        return fullName != null && !fullName.isEmpty() ? fullName : username;
+    }
+
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public List<GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    // Как у User из Spring Security: сессии одного пользователя сравниваются по имени
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof ForumUserPrincipal principal && username.equals(principal.username);
+    }
+
+    @Override
+    public int hashCode() {
+        return username.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "ForumUserPrincipal[id=" + id + ", username=" + username + "]";
+    }
+}
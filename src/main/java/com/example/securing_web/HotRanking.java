@@ -0,0 +1,250 @@
+package com.example.securing_web;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// "Горячие" посты (/posts?sort=hot) без сортировки в БД: у каждого поста счёт с затуханием по времени,
+// обновляемый событиями - создание поста, голос, комментарий.
+// Прямое затухание (forward decay): событие в момент t добавляет weight * 2^((t - landmark) / half-life),
+// т.е. вес растёт со временем события, а не убывает у старых. Относительный порядок при этом тот же, что
+// у weight * 2^(-(now - t) / half-life), но старые счёты не нужно пересчитывать при каждом событии.
+// Чтобы множитель не переполнился, rebase() периодически переносит landmark на "сейчас", деля все счёты
+// на одно и то же число, и выбрасывает остывшие посты.
+// Счёты - в ConcurrentSkipListSet по убыванию: первые K постов читаются за O(K), без блокировок;
+// rebase() строит новый набор рядом и подменяет его целиком, так что чтение не видит его пустым.
+// Состояние в памяти узла: при старте восстанавливается из БД (лайки, дизлайки и комментарии
+// считаются событиями момента создания поста), дальше видит только события своего узла
+@Component
+public class HotRanking {
+
+    private static final Logger logger = LoggerFactory.getLogger(HotRanking.class);
+
+    private record Entry(double score, long postId) {
+    }
+
+    private static final Comparator<Entry> HOTTEST_FIRST = Comparator.comparingDouble(Entry::score).reversed()
+            .thenComparing(Comparator.comparingLong(Entry::postId).reversed());
+
+    // остывший пост: меньше этого (в единицах веса на момент landmark) - выбрасывается при rebase
+    private static final double COLD_SCORE = 1e-3;
+
+    private final PostRepository postRepository;
+    private final Clock clock;
+    private final double halfLifeMillis;
+    private final int maxTracked;
+    private final double postWeight;
+    private final double likeWeight;
+    private final double dislikeWeight;
+    private final double commentWeight;
+
+    // Счёты по постам, они же по убыванию и landmark, к которому они приведены, - меняются вместе
+    private record State(Map<Long, Entry> scores, NavigableSet<Entry> ranking, long landmarkMillis) {
+
+        State(long landmarkMillis) {
+            this(new ConcurrentHashMap<>(), new ConcurrentSkipListSet<>(HOTTEST_FIRST), landmarkMillis);
+        }
+    }
+
+    // события меняют счёты параллельно (read), rebase подменяет состояние (write); чтение - без блокировки
+    private final ReentrantReadWriteLock rebaseLock = new ReentrantReadWriteLock();
+    private volatile State state;
+
+    @Autowired
+    public HotRanking(PostRepository postRepository,
+                      @Value("${forum.hot.half-life:6h}") Duration halfLife,
+                      @Value("${forum.hot.max-tracked:100000}") int maxTracked,
+                      @Value("${forum.hot.post-weight:1}") double postWeight,
+                      @Value("${forum.hot.like-weight:1}") double likeWeight,
+                      @Value("${forum.hot.dislike-weight:-1}") double dislikeWeight,
+                      @Value("${forum.hot.comment-weight:2}") double commentWeight) {
+        this(postRepository, Clock.systemUTC(), halfLife, maxTracked, postWeight, likeWeight, dislikeWeight,
+                commentWeight);
+    }
+
+    HotRanking(PostRepository postRepository, Clock clock, Duration halfLife, int maxTracked,
+               double postWeight, double likeWeight, double dislikeWeight, double commentWeight) {
+        this.postRepository = postRepository;
+        this.clock = clock;
+        this.halfLifeMillis = halfLife.toMillis();
+        this.maxTracked = maxTracked;
+        this.postWeight = postWeight;
+        this.likeWeight = likeWeight;
+        this.dislikeWeight = dislikeWeight;
+        this.commentWeight = commentWeight;
+        this.state = new State(clock.millis());
+    }
+
+    public void postCreated(Long postId) {
+        add(postId, postWeight);
+    }
+
+    public void voted(Long postId, VoteType type) {
+        add(postId, type == VoteType.LIKE ? likeWeight : dislikeWeight);
+    }
+
+    public void commented(Long postId) {
+        add(postId, commentWeight);
+    }
+
+    public void remove(Long postId) {
+        rebaseLock.readLock().lock();
+        try {
+            State current = state;
+            current.scores().computeIfPresent(postId, (id, entry) -> {
+                current.ranking().remove(entry);
+                return null;
+            });
+        } finally {
+            rebaseLock.readLock().unlock();
+        }
+    }
+
+    // Самые горячие посты начиная с offset; O(offset + limit)
+    public List<Long> top(int offset, int limit) {
+        List<Long> ids = new ArrayList<>(limit);
+        Iterator<Entry> iterator = state.ranking().iterator();
+        for (int skipped = 0; skipped < offset && iterator.hasNext(); skipped++) {
+            iterator.next();
+        }
+        while (ids.size() < limit && iterator.hasNext()) {
+            ids.add(iterator.next().postId());
+        }
+        return ids;
+    }
+
+    // Счёт на текущий момент, в единицах веса события "сейчас"
+    public double score(Long postId) {
+        State current = state;
+        Entry entry = current.scores().get(postId);
+        return entry == null ? 0 : entry.score() / growth(current, clock.millis());
+    }
+
+    public int size() {
+        return state.scores().size();
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        long started = System.nanoTime();
+        long now = clock.millis();
+        // через 20 периодов полураспада вклад меньше миллионной доли - такие посты не читаем
+        Instant since = Instant.ofEpochMilli(now - (long) (halfLifeMillis * 20));
+        int loaded = 0;
+        Long after = 0L;
+        List<Object[]> rows;
+        do {
+            rows = postRepository.findActivitySince(since, after, PageRequest.of(0, 1000));
+            for (Object[] row : rows) {
+                Long postId = (Long) row[0];
+                long createdAt = ((Instant) row[1]).toEpochMilli();
+                double weight = postWeight + likeWeight * ((Number) row[2]).longValue()
+                        + dislikeWeight * ((Number) row[3]).longValue()
+                        + commentWeight * ((Number) row[4]).longValue();
+                add(postId, weight, createdAt);
+                after = postId;
+                loaded++;
+            }
+        } while (!rows.isEmpty());
+        logger.info("Рейтинг горячих постов восстановлен: {} постов за {} мс", loaded,
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    // Перенос landmark на текущий момент и удаление остывших постов
+    @Scheduled(fixedDelayString = "${forum.hot.rebase-ms:600000}")
+    public void rebase() {
+        rebaseLock.writeLock().lock();
+        try {
+            long now = clock.millis();
+            State current = state;
+            double scale = 1 / growth(current, now);
+            State rescaled = new State(now);
+            for (Entry entry : current.scores().values()) {
+                double score = entry.score() * scale;
+                if (Math.abs(score) >= COLD_SCORE) {
+                    Entry updated = new Entry(score, entry.postId());
+                    rescaled.scores().put(updated.postId(), updated);
+                    rescaled.ranking().add(updated);
+                }
+            }
+            state = rescaled;
+        } finally {
+            rebaseLock.writeLock().unlock();
+        }
+    }
+
+    private void add(Long postId, double weight) {
+        add(postId, weight, clock.millis());
+    }
+
+    private void add(Long postId, double weight, long atMillis) {
+        if (weight == 0) {
+            return;
+        }
+        rebaseLock.readLock().lock();
+        try {
+            State current = state;
+            double delta = weight * growth(current, atMillis);
+            current.scores().compute(postId, (id, entry) -> {
+                Entry updated = new Entry(entry == null ? delta : entry.score() + delta, id);
+                if (entry != null) {
+                    current.ranking().remove(entry);
+                }
+                current.ranking().add(updated);
+                return updated;
+            });
+            if (current.scores().size() > maxTracked) {
+                evictColdest(current);
+            }
+        } finally {
+            rebaseLock.readLock().unlock();
+        }
+    }
+
+    // Выше предела - выбрасываем наименее горячие; вернутся со следующим событием, но с нуля.
+    // Удаление - под блокировкой ключа в scores, как и в add(): запись, которую другой поток уже
+    // положил в ranking, но ещё не в scores, или уже обновил, не трогаем - хватит следующего события
+    private void evictColdest(State current) {
+        while (current.scores().size() > maxTracked) {
+            Iterator<Entry> coldest = current.ranking().descendingIterator();
+            if (!coldest.hasNext()) {
+                return;
+            }
+            Entry candidate = coldest.next();
+            boolean[] evicted = {false};
+            current.scores().computeIfPresent(candidate.postId(), (id, entry) -> {
+                if (!entry.equals(candidate)) {
+                    return entry;
+                }
+                current.ranking().remove(entry);
+                evicted[0] = true;
+                return null;
+            });
+            if (!evicted[0]) {
+                return;
+            }
+        }
+    }
+
+    private double growth(State current, long atMillis) {
+        return Math.pow(2, (atMillis - current.landmarkMillis()) / halfLifeMillis);
+    }
+}
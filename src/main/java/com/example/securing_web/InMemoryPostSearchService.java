@@ -0,0 +1,170 @@
+package com.example.securing_web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Встроенный инвертированный индекс: терм -> (id поста -> взвешенная частота).
+// Совпадение в заголовке весит больше, чем в тексте; ранжирование по BM25 без нормализации длины.
+// Последнее слово запроса ищется по префиксу, чтобы поиск работал при наборе.
+@Service
+@ConditionalOnProperty(name = "forum.search.engine", havingValue = "memory", matchIfMissing = true)
+public class InMemoryPostSearchService implements PostSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryPostSearchService.class);
+
+    private static final int TITLE_WEIGHT = 3;
+    private static final int CONTENT_WEIGHT = 1;
+    private static final int REBUILD_BATCH = 500;
+
+    private final PostRepository postRepository;
+
+    private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    private final Map<Long, List<String>> documentTerms = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public InMemoryPostSearchService(PostRepository postRepository) {
+        this.postRepository = postRepository;
+    }
+
+    // Построение индекса при старте, пачками по id, чтобы не держать всю таблицу в памяти
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long started = System.currentTimeMillis();
+        long after = 0;
+        int total = 0;
+        List<Post> batch;
+        do {
+            batch = postRepository.findBatchAfter(after, PageRequest.of(0, REBUILD_BATCH));
+            for (Post post : batch) {
+                index(post);
+                after = post.getId();
+            }
+            total += batch.size();
+        } while (batch.size() == REBUILD_BATCH);
+        logger.info("Поисковый индекс построен: {} постов за {} мс", total, System.currentTimeMillis() - started);
+    }
+
+    @Override
+    public void index(Post post) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : SearchTokenizer.tokenize(post.getTitle())) {
+            frequencies.merge(term, TITLE_WEIGHT, Integer::sum);
+        }
+        for (String term : SearchTokenizer.tokenize(post.getContent())) {
+            frequencies.merge(term, CONTENT_WEIGHT, Integer::sum);
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(post.getId());
+            frequencies.forEach((term, frequency) ->
+                    postings.computeIfAbsent(term, t -> new HashMap<>()).put(post.getId(), frequency));
+            documentTerms.put(post.getId(), new ArrayList<>(frequencies.keySet()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Long postId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(postId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeLocked(Long postId) {
+        List<String> terms = documentTerms.remove(postId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Map<Long, Integer> docs = postings.get(term);
+            if (docs != null) {
+                docs.remove(postId);
+                if (docs.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<Long> search(String query, int offset, int limit) {
+        List<String> terms = SearchTokenizer.tokenize(query);
+        if (terms.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<Long, Double> scores;
+        lock.readLock().lock();
+        try {
+            int documents = documentTerms.size();
+            scores = null;
+            for (int i = 0; i < terms.size(); i++) {
+                boolean prefix = i == terms.size() - 1;
+                Map<Long, Double> termScores = scoreTerm(terms.get(i), prefix, documents);
+                scores = scores == null ? termScores : intersect(scores, termScores);
+                if (scores.isEmpty()) {
+                    return Collections.emptyList();
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Map.Entry<Long, Double>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort(Map.Entry.<Long, Double>comparingByValue(Comparator.reverseOrder())
+                .thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder())));
+
+        List<Long> ids = new ArrayList<>();
+        for (int i = offset; i < ranked.size() && ids.size() < limit; i++) {
+            ids.add(ranked.get(i).getKey());
+        }
+        return ids;
+    }
+
+    // Для префикса берём лучший из подходящих термов, чтобы "java" и "javascript" не суммировались
+    private Map<Long, Double> scoreTerm(String term, boolean prefix, int documents) {
+        Map<String, Map<Long, Integer>> matching = prefix
+                ? postings.subMap(term, true, term + Character.MAX_VALUE, false)
+                : postings.containsKey(term) ? Map.of(term, postings.get(term)) : Map.of();
+
+        Map<Long, Double> scores = new HashMap<>();
+        matching.forEach((matched, docs) -> {
+            double idf = Math.log(1 + (documents - docs.size() + 0.5) / (docs.size() + 0.5));
+            docs.forEach((postId, frequency) ->
+                    scores.merge(postId, idf * frequency / (frequency + 1.2), Math::max));
+        });
+        return scores;
+    }
+
+    private static Map<Long, Double> intersect(Map<Long, Double> left, Map<Long, Double> right) {
+        Map<Long, Double> result = new HashMap<>();
+        left.forEach((postId, score) -> {
+            Double other = right.get(postId);
+            if (other != null) {
+                result.put(postId, score + other);
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.securing_web;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Единственный PasswordEncoder приложения. BCrypt выполняется на отдельном ограниченном пуле:
+// всплеск входов и регистраций не занимает все потоки Tomcat, а при переполненной очереди
+// запрос сразу получает 503 (PasswordHashingBusyException).
+@Service
+public class PasswordHashingService implements PasswordEncoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashingService.class);
+
+    private static final int MIN_STRENGTH = 10;
+    private static final int MAX_STRENGTH = 16;
+
+    private final BCryptPasswordEncoder encoder;
+    private final int strength;
+    private final ThreadPoolExecutor executor;
+    private final long waitMillis;
+
+    private final LongAdder hashCount = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public PasswordHashingService(@Value("${forum.password.strength:10}") int strength,
+                                  @Value("${forum.password.calibrate:false}") boolean calibrate,
+                                  @Value("${forum.password.target-millis:250}") long targetMillis,
+                                  @Value("${forum.password.threads:0}") int threads,
+                                  @Value("${forum.password.queue-capacity:64}") int queueCapacity,
+                                  @Value("${forum.password.wait-millis:2000}") long waitMillis) {
+        this.strength = calibrate ? calibrate(targetMillis) : strength;
+        this.encoder = new BCryptPasswordEncoder(this.strength);
+        this.waitMillis = waitMillis;
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "bcrypt-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        logger.info("BCrypt: cost {}, потоков {}, очередь {}", this.strength, poolSize, queueCapacity);
+    }
+
+    // Подбирает наибольший cost, при котором один хэш укладывается в targetMillis на этой машине
+    static int calibrate(long targetMillis) {
+        long targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+        new BCryptPasswordEncoder(MIN_STRENGTH).encode("warm-up");
+
+        int cost = MIN_STRENGTH;
+        while (cost < MAX_STRENGTH && timeHash(cost + 1) <= targetNanos) {
+            cost++;
+        }
+        logger.info("Калибровка BCrypt: выбран cost {} для цели {} мс", cost, targetMillis);
+        return cost;
+    }
+
+    private static long timeHash(int cost) {
+        long started = System.nanoTime();
+        new BCryptPasswordEncoder(cost).encode("calibration");
+        return System.nanoTime() - started;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return execute(() -> encoder.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(() -> encoder.matches(rawPassword, encodedPassword));
+    }
+
+    // true, если хэш посчитан с меньшим cost, чем текущий: DaoAuthenticationProvider
+    // тогда перехэширует пароль после успешного входа
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return encoder.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T execute(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long started = System.nanoTime();
+                try {
+                    return task.call();
+                } finally {
+                    hashNanos.add(System.nanoTime() - started);
+                    hashCount.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new PasswordHashingBusyException("Сервер перегружен, повторите попытку позже");
+        }
+
+        try {
+            return future.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.increment();
+            throw new PasswordHashingBusyException("Сервер перегружен, повторите попытку позже");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Хэширование пароля прервано", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    public long getHashCount() {
+        return hashCount.sum();
+    }
+
+    public long getHashNanos() {
+        return hashNanos.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+}
@@ -1,10 +1,19 @@
 package com.example.securing_web;
 
 import jakarta.persistence.*;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+// created_at - для восстановления рейтинга горячих постов (HotRanking) по недавним постам,
+// deleted_at - для поиска постов, ожидающих очистки (PostPurgeJob)
+@Table(indexes = {
+        @Index(name = "idx_post_created_at", columnList = "created_at"),
+        @Index(name = "idx_post_deleted_at", columnList = "deleted_at")})
 public class Post {
 
     @Id
@@ -18,12 +27,29 @@ public class Post {
 
     private String author;
 
-    @Column(nullable = false)
+    // Счётчики меняет только VoteAggregator атомарным UPDATE ... SET likes = likes + ?, поэтому сущность
+    // их не записывает: правка поста по устаревшей копии не затрёт голоса, пришедшие после её чтения
+    @Column(nullable = false, updatable = false)
     private int likes = 0;
 
-    @Column(nullable = false)
+    @Column(nullable = false, updatable = false)
     private int dislikes = 0;
 
+    // Посты, созданные до появления колонки, остаются с null
+    @Column(name = "created_at")
+    private Instant createdAt;
+
+    // Мягкое удаление: пост скрыт везде, строку вместе с комментариями и голосами удалит PostPurgeJob
+    @Column(name = "deleted_at")
+    private Instant deletedAt;
+
+    // Оптимистичная блокировка: правка и мягкое удаление (PostRepository.markDeleted) увеличивают версию, запись по
+    // устаревшей копии падает с OptimisticLockingFailureException. DEFAULT 0 - для строк, вставленных SQL
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
     // Правильно объявленное единственное поле комментариев
     @OneToMany(mappedBy = "post", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Comment> comments = new ArrayList<>();
@@ -88,6 +114,26 @@ public class Post {
         this.dislikes = dislikes;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Instant getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(Instant deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+
     public List<Comment> getComments() {
         return comments;
     }
@@ -116,7 +162,9 @@ public class Post {
                 ", author='" + author + '\'' +
                 ", likes=" + likes +
                 ", dislikes=" + dislikes +
-                ", commentsCount=" + (comments != null ? comments.size() : 0) +
+                // не инициализируем ленивую коллекцию ради строки в логе
+                ", commentsCount=" + (comments == null ? "0"
+                        : Hibernate.isInitialized(comments) ? String.valueOf(comments.size()) : "?") +
                 '}';
     }
 }
\ No newline at end of file
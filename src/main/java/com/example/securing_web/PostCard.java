@@ -0,0 +1,41 @@
+package com.example.securing_web;
+
+import java.util.List;
+
+// Всё, что нужно карточке поста в ленте: пост без коллекции комментариев и его сводка
+public class PostCard {
+
+    private final Post post;
+    private final long commentCount;
+    private final long likes;
+    private final long dislikes;
+    private final List<CommentDto> latestComments;
+
+    public PostCard(Post post, long commentCount, long likes, long dislikes, List<CommentDto> latestComments) {
+        this.post = post;
+        this.commentCount = commentCount;
+        this.likes = likes;
+        this.dislikes = dislikes;
+        this.latestComments = latestComments;
+    }
+
+    public Post getPost() {
+        return post;
+    }
+
+    public long getCommentCount() {
+        return commentCount;
+    }
+
+    public long getLikes() {
+        return likes;
+    }
+
+    public long getDislikes() {
+        return dislikes;
+    }
+
+    public List<CommentDto> getLatestComments() {
+        return latestComments;
+    }
+}
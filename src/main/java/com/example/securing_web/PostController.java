@@ -1,26 +1,26 @@
 package com.example.securing_web;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.List;
-
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.filter.HiddenHttpMethodFilter;
 
 @Controller
 @RequestMapping("/posts")
 public class PostController {
 
-    @Autowired
-    private PostRepository postRepository;
-
     @Autowired
     private UserRepository userRepository;
 
@@ -30,6 +30,18 @@ public class PostController {
     @Autowired
     private CommentService commentService;  // <-- добавил CommentService
 
+    @Autowired
+    private PostFragmentCache postFragmentCache;
+
+    @Autowired
+    private PostFragmentRenderer postFragmentRenderer;
+
+    @Autowired
+    private FeedEventBroadcaster feedEventBroadcaster;
+
+    @Value("${forum.events.timeout-ms:1800000}")
+    private long eventsTimeoutMillis;
+
 
     // Фильтр для поддержки PUT/DELETE методов через _method
     @Bean
@@ -38,56 +50,107 @@ public class PostController {
     }
 
     @GetMapping("/create")
-    public String showCreatePostForm(Model model) {
+    public String showCreatePostForm(@AuthenticationPrincipal ForumUserPrincipal user, Model model) {
         model.addAttribute("post", new Post());
-
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String username = auth.getName();
-        model.addAttribute("username", username);
+        model.addAttribute("username", user.getUsername());
 
         return "createPost";
     }
 
     @PostMapping("/create")
-    public String createPost(@ModelAttribute Post post, @AuthenticationPrincipal UserDetails userDetails) {
-        String author = userDetails.getUsername();
-        post.setAuthor(author);
-        postRepository.save(post);
+    public String createPost(@ModelAttribute Post post, @AuthenticationPrincipal ForumUserPrincipal user) {
+        postService.createPost(post, user.getUsername());
         return "redirect:/posts";
     }
 
+    // sort=hot - горячие посты (HotRanking, страницы по номеру), иначе новые сверху (keyset по id)
     @GetMapping
-    public String viewPosts(Model model) {
-        List<Post> posts = postRepository.findAll();
-        model.addAttribute("posts", posts);
+    public String viewPosts(@RequestParam(value = "before", required = false) Long before,
+                            @RequestParam(value = "sort", required = false) String sort,
+                            @RequestParam(value = "page", defaultValue = "0") int pageNumber,
+                            Model model,
+                            WebRequest webRequest, HttpServletRequest request, HttpServletResponse response) {
+        boolean hot = "hot".equals(sort);
+        PostIdPage page = hot
+                ? postService.getHotIds(Math.max(pageNumber, 0), postService.getFeedPageSize())
+                : postService.getFeedIds(before, postService.getFeedPageSize());
+        long[] versions = postFragmentCache.versions(page.getIds());
+
+        // браузер может хранить страницу, но обязан перепроверять её по ETag
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        if (webRequest.checkNotModified(postFragmentCache.etag(page.getIds(), versions, page.getNextCursor()))) {
+            return null;
+        }
+
+        model.addAttribute("fragments", postFragmentRenderer.renderAll(page.getIds(), versions, request, response));
+        if (hot) {
+            model.addAttribute("sort", "hot");
+            model.addAttribute("nextPage", page.getNextCursor());
+        } else {
+            model.addAttribute("nextCursor", page.getNextCursor());
+        }
         return "postList";
     }
 
+    // Живая лента: новые посты, комментарии и изменения голосов (Server-Sent Events).
+    // По истечении timeout-ms соединение закрывается, и EventSource в браузере переподключается сам
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public SseEmitter events() {
+        SseEmitter emitter = new SseEmitter(eventsTimeoutMillis);
+        long subscriptionId = feedEventBroadcaster.subscribe(new SseFeedSink(emitter));
+        emitter.onCompletion(() -> feedEventBroadcaster.unsubscribe(subscriptionId));
+        emitter.onTimeout(() -> feedEventBroadcaster.unsubscribe(subscriptionId));
+        emitter.onError(e -> feedEventBroadcaster.unsubscribe(subscriptionId));
+        return emitter;
+    }
+
     // Удаление поста (работает с _method="delete")
     @DeleteMapping("/delete/{id}")
     public String deletePost(@PathVariable Long id) {
-        postRepository.deleteById(id);
+        postService.deletePost(id);
+        return "redirect:/posts";
+    }
+
+    // Правка автором; version - версия поста, с которой начата правка (необязательно).
+    // Если пост успели изменить или удалить - в ленту с error=conflict, правка не применяется
+    @PostMapping("/{id}/edit")
+    public String editPost(@PathVariable Long id,
+                           @RequestParam String title,
+                           @RequestParam String content,
+                           @RequestParam(required = false) Long version,
+                           @AuthenticationPrincipal ForumUserPrincipal user) {
+        try {
+            postService.editPost(id, user.getUsername(), title, content, version);
+        } catch (StaleEditException | OptimisticLockingFailureException e) {
+            return "redirect:/posts?error=conflict";
+        }
         return "redirect:/posts";
     }
 
     @GetMapping("/search")
-    public String searchPosts(@RequestParam("query") String query, Model model) {
-        List<Post> posts = postRepository.findByTitleContainingOrContentContaining(query, query);
-        model.addAttribute("posts", posts);
+    public String searchPosts(@RequestParam("query") String query,
+                              @RequestParam(value = "page", defaultValue = "0") int page,
+                              Model model, HttpServletRequest request, HttpServletResponse response) {
+        PostIdPage result = postService.searchPostIds(query, Math.max(page, 0), postService.getFeedPageSize());
+        long[] versions = postFragmentCache.versions(result.getIds());
+        model.addAttribute("fragments", postFragmentRenderer.renderAll(result.getIds(), versions, request, response));
+        model.addAttribute("query", query);
+        model.addAttribute("nextPage", result.getNextCursor());
         return "postList";
     }
 
     // Лайк
     @PostMapping("/{id}/like")
-    public String likePost(@PathVariable Long id, @AuthenticationPrincipal UserDetails userDetails) {
-        postService.likePost(id, userDetails.getUsername());
+    public String likePost(@PathVariable Long id, @AuthenticationPrincipal ForumUserPrincipal user) {
+        postService.likePost(id, user);
         return "redirect:/posts";
     }
 
     // Дизлайк
     @PostMapping("/{id}/dislike")
-    public String dislikePost(@PathVariable Long id, @AuthenticationPrincipal UserDetails userDetails) {
-        postService.dislikePost(id, userDetails.getUsername());
+    public String dislikePost(@PathVariable Long id, @AuthenticationPrincipal ForumUserPrincipal user) {
+        postService.dislikePost(id, user);
         return "redirect:/posts";
     }
 
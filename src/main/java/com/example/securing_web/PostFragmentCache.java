@@ -0,0 +1,174 @@
+package com.example.securing_web;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Кэш отрендеренных карточек постов (fragments/post.html) с ключом (id поста, версия).
+// Версия растёт при каждом изменении поста: создание/удаление, запись голосов, новые комментарии.
+// Версию нужно прочитать ДО загрузки поста из БД: тогда изменение, случившееся во время рендеринга,
+// поднимет версию, и устаревшая карточка больше не совпадёт ни с одним запросом.
+// Версии выдаёт общий счётчик, поэтому они только растут и карту версий можно очищать: у поста без записи
+// версия floor, а floor больше любой выданной до очистки. Записей не больше max-versions.
+@Component
+public class PostFragmentCache {
+
+    private final int maxSize;
+    private final int maxVersions;
+
+    // Версии живут в памяти процесса; эпоха отличает ETag'и после перезапуска
+    private final long epoch = ThreadLocalRandom.current().nextLong();
+
+    private final Map<Long, Long> versions = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicBoolean trimming = new AtomicBoolean();
+    private volatile long floor;
+    private final Map<Long, Fragment> fragments = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder renderNanos = new LongAdder();
+
+    @Autowired
+    public PostFragmentCache(@Value("${forum.fragments.max-size:5000}") int maxSize,
+                             @Value("${forum.fragments.max-versions:100000}") int maxVersions) {
+        this.maxSize = maxSize;
+        this.maxVersions = maxVersions;
+    }
+
+    PostFragmentCache(int maxSize) {
+        this(maxSize, 100_000);
+    }
+
+    public long[] versions(List<Long> postIds) {
+        long[] result = new long[postIds.size()];
+        for (int i = 0; i < result.length; i++) {
+            // запись читается раньше floor: если её уже убрала очистка, floor уже поднят
+            Long version = versions.get(postIds.get(i));
+            result[i] = version != null ? version : floor;
+        }
+        return result;
+    }
+
+    public String get(Long postId, long version) {
+        Fragment fragment = fragments.get(postId);
+        if (fragment != null && fragment.version == version) {
+            hits.increment();
+            return fragment.html;
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(Long postId, long version, String html, long renderedInNanos) {
+        renderNanos.add(renderedInNanos);
+        if (fragments.size() >= maxSize) {
+            evictSome();
+        }
+        // более новую версию, положенную параллельным запросом, не затираем
+        fragments.merge(postId, new Fragment(version, html),
+                (current, candidate) -> candidate.version >= current.version ? candidate : current);
+    }
+
+    public void invalidate(Long postId) {
+        versions.put(postId, clock.incrementAndGet());
+        fragments.remove(postId);
+        if (versions.size() > maxVersions) {
+            trimVersions();
+        }
+    }
+
+    // Сильный ETag страницы: зависит от состава страницы, версий карточек и курсора следующей страницы
+    // Внутри транзакции сбрасывать карточку можно только после коммита: иначе перерендер
+    // между сбросом и коммитом закэширует старые данные под новой версией
+    public void invalidateAfterCommit(Long postId) {
+        AfterCommit.run(() -> invalidate(postId));
+    }
+
+    public String etag(List<Long> postIds, long[] postVersions, Long nextCursor) {
+        long hash = epoch;
+        for (int i = 0; i < postVersions.length; i++) {
+            hash = mix(hash, postIds.get(i));
+            hash = mix(hash, postVersions[i]);
+        }
+        hash = mix(hash, nextCursor == null ? -1 : nextCursor);
+        return Long.toHexString(hash);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getRenderNanos() {
+        return renderNanos.sum();
+    }
+
+    // Оценка сэкономленного времени: попадания, умноженные на среднее время рендеринга карточки
+    public long getRenderNanosSaved() {
+        long rendered = misses.sum();
+        return rendered == 0 ? 0 : hits.sum() * (renderNanos.sum() / rendered);
+    }
+
+    public int size() {
+        return fragments.size();
+    }
+
+    // Очистка карты версий целиком: раз в max-versions изменений все карточки и ETag'и сменятся один раз.
+    // floor поднимается до удаления, а удаляется только запись, не изменившаяся с тех пор
+    private void trimVersions() {
+        if (!trimming.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long newFloor = clock.incrementAndGet();
+            floor = newFloor;
+            versions.values().removeIf(version -> version < newFloor);
+        } finally {
+            trimming.set(false);
+        }
+    }
+
+    public int versionCount() {
+        return versions.size();
+    }
+
+    // Грубое вытеснение десятой части записей: точный LRU здесь не нужен,
+    // промах стоит одного рендеринга
+    private void evictSome() {
+        int toEvict = Math.max(1, maxSize / 10);
+        Iterator<Long> iterator = fragments.keySet().iterator();
+        while (toEvict-- > 0 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private static long mix(long hash, long value) {
+        hash ^= value;
+        hash *= 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 32);
+    }
+
+    private static final class Fragment {
+        final long version;
+        final String html;
+
+        Fragment(long version, String html) {
+            this.version = version;
+            this.html = html;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.securing_web;
+
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.web.servlet.JakartaServletWebApplication;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Собирает страницу из карточек постов: берёт их из PostFragmentCache, а недостающие
+// загружает (посты и их сводки, без комментариев) и рендерит из fragments/post.html
+@Component
+public class PostFragmentRenderer {
+
+    private static final Set<String> POST_FRAGMENT = Set.of("post");
+
+    private final SpringTemplateEngine templateEngine;
+    private final JakartaServletWebApplication webApplication;
+    private final PostFragmentCache fragmentCache;
+    private final PostService postService;
+
+    public PostFragmentRenderer(SpringTemplateEngine templateEngine,
+                                ServletContext servletContext,
+                                PostFragmentCache fragmentCache,
+                                PostService postService) {
+        this.templateEngine = templateEngine;
+        this.webApplication = JakartaServletWebApplication.buildApplication(servletContext);
+        this.fragmentCache = fragmentCache;
+        this.postService = postService;
+    }
+
+    // versions должны быть прочитаны до вызова (см. PostFragmentCache)
+    public List<String> renderAll(List<Long> postIds, long[] versions,
+                                  HttpServletRequest request, HttpServletResponse response) {
+        String[] html = new String[postIds.size()];
+        Map<Long, Integer> missing = new HashMap<>();
+        for (int i = 0; i < html.length; i++) {
+            html[i] = fragmentCache.get(postIds.get(i), versions[i]);
+            if (html[i] == null) {
+                missing.put(postIds.get(i), i);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            // карточка попадёт в общий кэш под текущей версией, поэтому читается с основной БД:
+            // отстающая реплика закрепила бы в кэше старые счётчики до следующего изменения поста
+            List<PostCard> cards = ReadYourWrites.onPrimary(() -> postService.loadCards(new ArrayList<>(missing.keySet())));
+            for (PostCard card : cards) {
+                Long postId = card.getPost().getId();
+                int index = missing.get(postId);
+                long started = System.nanoTime();
+                html[index] = render(card, request, response);
+                fragmentCache.put(postId, versions[index], html[index], System.nanoTime() - started);
+            }
+        }
+
+        // пост мог быть удалён между выборкой id и загрузкой
+        List<String> result = new ArrayList<>(html.length);
+        for (String fragment : html) {
+            if (fragment != null) {
+                result.add(fragment);
+            }
+        }
+        return result;
+    }
+
+    public String render(PostCard card, HttpServletRequest request, HttpServletResponse response) {
+        WebContext context = new WebContext(
+                webApplication.buildExchange(request, new NoUrlRewritingResponse(response)),
+                request.getLocale(), Map.of("card", card, "post", card.getPost()));
+        return templateEngine.process("fragments/post", POST_FRAGMENT, context);
+    }
+
+    // Карточка общая для всех, поэтому jsessionid в ссылки не подставляем
+    private static final class NoUrlRewritingResponse extends HttpServletResponseWrapper {
+
+        NoUrlRewritingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public String encodeURL(String url) {
+            return url;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.securing_web;
+
+import java.util.List;
+
+// Страница ленты или поиска на уровне id: сами посты загружаются только для тех,
+// чьих карточек нет в PostFragmentCache
+public class PostIdPage {
+
+    private final List<Long> ids;
+    private final Long nextCursor;
+
+    public PostIdPage(List<Long> ids, Long nextCursor) {
+        this.ids = ids;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Long> getIds() {
+        return ids;
+    }
+
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+}
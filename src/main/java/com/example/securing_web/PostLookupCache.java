@@ -0,0 +1,75 @@
+package com.example.securing_web;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Частые проверки по популярным постам без похода в БД: существует ли пост (перед комментарием)
+// и голосовал ли уже пользователь (повторный лайк не доходит до INSERT ... ON CONFLICT).
+// Кэшируется только "да": пост, которого ещё нет, может появиться, а голос, которого нет, - быть отдан.
+// Оба ответа сбрасываются при удалении поста; голос нельзя отозвать, так что другой инвалидации не нужно
+@Component
+public class PostLookupCache {
+
+    private record VoteKey(Long postId, String username) {
+    }
+
+    private final PostRepository postRepository;
+    private final TinyLfuCache<Long, Boolean> posts;
+    private final TinyLfuCache<VoteKey, Boolean> votes;
+
+    public PostLookupCache(PostRepository postRepository,
+                           @Value("${forum.post-cache.max-posts:10000}") int maxPosts,
+                           @Value("${forum.post-cache.max-votes:100000}") int maxVotes) {
+        this.postRepository = postRepository;
+        this.posts = new TinyLfuCache<>(maxPosts);
+        this.votes = new TinyLfuCache<>(maxVotes);
+    }
+
+    // Одновременные промахи по одному посту дают один запрос к БД
+    public boolean exists(Long postId) {
+        return posts.get(postId, id -> postRepository.existsByIdAndDeletedAtIsNull(id) ? Boolean.TRUE : null) != null;
+    }
+
+    public boolean hasVoted(Long postId, String username) {
+        return votes.getIfPresent(new VoteKey(postId, username)) != null;
+    }
+
+    // stamp - из voteStamp() до записи голоса в БД
+    public void markVoted(Long postId, String username, long stamp) {
+        votes.put(new VoteKey(postId, username), Boolean.TRUE, stamp);
+    }
+
+    public long voteStamp() {
+        return votes.stamp();
+    }
+
+    // Вызывать после коммита удаления: иначе проверка между сбросом и коммитом снова закэширует пост
+    public void invalidatePost(Long postId) {
+        posts.invalidate(postId);
+        votes.invalidateIf(key -> key.postId().equals(postId));
+    }
+
+    public long getPostHits() {
+        return posts.getHits();
+    }
+
+    public long getPostMisses() {
+        return posts.getMisses();
+    }
+
+    public long getPostLoads() {
+        return posts.getLoads();
+    }
+
+    public long getVoteHits() {
+        return votes.getHits();
+    }
+
+    public long getVoteMisses() {
+        return votes.getMisses();
+    }
+
+    public long getEvictions() {
+        return posts.getEvictions() + votes.getEvictions();
+    }
+}
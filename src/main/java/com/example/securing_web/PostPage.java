@@ -0,0 +1,23 @@
+package com.example.securing_web;
+
+import java.util.List;
+
+// Страница ленты: посты и курсор для следующей страницы (null, если страниц больше нет)
+public class PostPage {
+
+    private final List<Post> posts;
+    private final Long nextCursor;
+
+    public PostPage(List<Post> posts, Long nextCursor) {
+        this.posts = posts;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Post> getPosts() {
+        return posts;
+    }
+
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.securing_web;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Физическое удаление мягко удалённых постов (deleted_at не null) в фоновом потоке: комментарии и голоса
+// удаляются кусками по chunk-size строк, каждый кусок - отдельная короткая транзакция, между кусками пауза
+// pause-ms, чтобы не забирать БД у запросов. Сам пост, остаток голосов и сводка удаляются последней транзакцией.
+// Состояние очистки - только пометка в post: после перезапуска поток продолжает с того, что осталось
+@Component
+public class PostPurgeJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostPurgeJob.class);
+
+    private static final String PENDING_SQL = "SELECT id FROM post WHERE deleted_at IS NOT NULL ORDER BY id LIMIT 100";
+    private static final String COUNT_PENDING_SQL = "SELECT count(*) FROM post WHERE deleted_at IS NOT NULL";
+    private static final String DELETE_COMMENTS_SQL =
+            "DELETE FROM comment WHERE id IN (SELECT id FROM comment WHERE post_id = ? LIMIT ?)";
+    private static final String DELETE_VOTES_SQL =
+            "DELETE FROM post_vote WHERE id IN (SELECT id FROM post_vote WHERE post_id = ? LIMIT ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PostSummaryService postSummaryService;
+    private final boolean enabled;
+    private final int chunkSize;
+    private final long pauseMillis;
+    private final long pollMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition wake = lock.newCondition();
+    private boolean signalled;
+
+    private final LongAdder commentsPurged = new LongAdder();
+    private final LongAdder votesPurged = new LongAdder();
+    private final LongAdder postsPurged = new LongAdder();
+    private volatile long pendingPosts;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public PostPurgeJob(JdbcTemplate jdbcTemplate,
+                        TransactionTemplate transactionTemplate,
+                        PostSummaryService postSummaryService,
+                        @Value("${forum.purge.enabled:true}") boolean enabled,
+                        @Value("${forum.purge.chunk-size:1000}") int chunkSize,
+                        @Value("${forum.purge.pause-ms:50}") long pauseMillis,
+                        @Value("${forum.purge.poll-ms:60000}") long pollMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.postSummaryService = postSummaryService;
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+        this.pauseMillis = pauseMillis;
+        this.pollMillis = pollMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::run, "post-purge");
+        worker.start();
+    }
+
+    // Текущий кусок дочищается, остальное продолжится после перезапуска
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (worker == null) {
+            return;
+        }
+        running = false;
+        wakeUp();
+        worker.join();
+    }
+
+    // Вызывается после коммита удаления поста, чтобы не ждать poll-ms
+    public void wakeUp() {
+        lock.lock();
+        try {
+            signalled = true;
+            wake.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                if (purgePending() == 0) {
+                    await(pollMillis);
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Ошибка очистки удалённых постов, повторим через {} мс", pollMillis, e);
+                await(pollMillis);
+            }
+        }
+    }
+
+    private int purgePending() {
+        List<Long> postIds = jdbcTemplate.queryForList(PENDING_SQL, Long.class);
+        pendingPosts = postIds.isEmpty() ? 0 : jdbcTemplate.queryForObject(COUNT_PENDING_SQL, Long.class);
+        for (Long postId : postIds) {
+            if (!running) {
+                break;
+            }
+            purge(postId);
+        }
+        return postIds.size();
+    }
+
+    private void purge(Long postId) {
+        long started = System.nanoTime();
+        long comments = deleteInChunks(DELETE_COMMENTS_SQL, postId, commentsPurged);
+        long votes = deleteInChunks(DELETE_VOTES_SQL, postId, votesPurged);
+        if (!running) {
+            return;
+        }
+        // пост скрыт, но голос или комментарий мог успеть проскочить после последнего куска
+        transactionTemplate.executeWithoutResult(status -> {
+            commentsPurged.add(jdbcTemplate.update("DELETE FROM comment WHERE post_id = ?", postId));
+            votesPurged.add(jdbcTemplate.update("DELETE FROM post_vote WHERE post_id = ?", postId));
+            postSummaryService.delete(postId);
+            jdbcTemplate.update("DELETE FROM post WHERE id = ? AND deleted_at IS NOT NULL", postId);
+        });
+        postsPurged.increment();
+        pendingPosts = Math.max(0, pendingPosts - 1);
+        logger.info("Пост {} очищен: {} комментариев, {} голосов за {} мс", postId, comments, votes,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    private long deleteInChunks(String sql, Long postId, LongAdder counter) {
+        long total = 0;
+        while (running) {
+            int deleted = jdbcTemplate.update(sql, postId, chunkSize);
+            counter.add(deleted);
+            total += deleted;
+            if (deleted < chunkSize) {
+                break;
+            }
+            pause(pauseMillis);
+        }
+        return total;
+    }
+
+    private void pause(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (running) {
+                // wakeUp не должен прерывать паузу между кусками - ждём всё время, пока не stop
+                long remaining = TimeUnit.MILLISECONDS.toNanos(millis);
+                while (running && remaining > 0) {
+                    remaining = wake.awaitNanos(remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void await(long millis) {
+        lock.lock();
+        try {
+            if (!signalled && running) {
+                wake.await(millis, TimeUnit.MILLISECONDS);
+            }
+            signalled = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getCommentsPurged() {
+        return commentsPurged.sum();
+    }
+
+    public long getVotesPurged() {
+        return votesPurged.sum();
+    }
+
+    public long getPostsPurged() {
+        return postsPurged.sum();
+    }
+
+    // Удалённые посты, которые ещё не очищены (по последней проверке)
+    public long getPendingPosts() {
+        return pendingPosts;
+    }
+}
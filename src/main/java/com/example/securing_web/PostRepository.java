@@ -1,8 +1,46 @@
 package com.example.securing_web;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 public interface PostRepository extends JpaRepository<Post, Long> {
     List<Post> findByTitleContainingOrContentContaining(String title, String content);
-}
\ No newline at end of file
+
+    // Первая страница ленты: только id, новые посты сверху
+    @Query("select p.id from Post p where p.deletedAt is null order by p.id desc")
+    List<Long> findFeedIds(Pageable pageable);
+
+    // Следующие страницы: keyset по id вместо OFFSET
+    @Query("select p.id from Post p where p.id < :before and p.deletedAt is null order by p.id desc")
+    List<Long> findFeedIdsBefore(@Param("before") Long before, Pageable pageable);
+
+    // Обход всей таблицы пачками по возрастанию id (построение индексов и т.п.)
+    @Query("select p from Post p where p.id > :after and p.deletedAt is null order by p.id")
+    List<Post> findBatchAfter(@Param("after") Long after, Pageable pageable);
+
+    // Активность постов не старше since для HotRanking: id, created_at, лайки, дизлайки, комментарии.
+    // Пачками по возрастанию id; посты без created_at не попадают
+    @Query("select p.id, p.createdAt, s.likes, s.dislikes, s.commentCount from Post p " +
+            "join PostSummary s on s.postId = p.id " +
+            "where p.createdAt >= :since and p.id > :after and p.deletedAt is null order by p.id")
+    List<Object[]> findActivitySince(@Param("since") Instant since, @Param("after") Long after, Pageable pageable);
+
+    boolean existsByIdAndDeletedAtIsNull(Long id);
+
+    // 0 - поста нет или он уже удалён. Версия растёт, правка по копии до удаления получит конфликт
+    // (явно, а не "update versioned": в Hibernate 6.1 он падает на построении SQL)
+    @Modifying
+    @Query("update Post p set p.deletedAt = :at, p.version = p.version + 1 where p.id = :id and p.deletedAt is null")
+    int markDeleted(@Param("id") Long id, @Param("at") Instant at);
+
+    // Посты страницы вместе с комментариями одним запросом (без N+1)
+    @Query("select distinct p from Post p left join fetch p.comments where p.id in :ids and p.deletedAt is null order by p.id desc")
+    List<Post> findAllWithCommentsByIdIn(@Param("ids") Collection<Long> ids);
+}
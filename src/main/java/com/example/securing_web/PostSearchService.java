@@ -0,0 +1,14 @@
+package com.example.securing_web;
+
+import java.util.List;
+
+// Поиск по постам. Реализация выбирается свойством forum.search.engine (memory | postgres)
+public interface PostSearchService {
+
+    // id найденных постов по убыванию релевантности
+    List<Long> search(String query, int offset, int limit);
+
+    void index(Post post);
+
+    void remove(Long postId);
+}
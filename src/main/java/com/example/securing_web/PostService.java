@@ -1,46 +1,301 @@
 package com.example.securing_web;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
 
 @Service
 public class PostService {
 
+    static final String EDIT_OPERATION = "post.edit";
+
     @Autowired
     private PostRepository postRepository;
 
     @Autowired
     private PostVoteRepository voteRepository;
 
-    public void likePost(Long postId, String username) {
-        Post post = postRepository.findById(postId).orElseThrow();
-
-        voteRepository.findByUsernameAndPostId(username, postId).ifPresentOrElse(vote -> {
-            // пользователь уже голосовал
-        }, () -> {
-            post.setLikes(post.getLikes() + 1);
-            PostVote vote = new PostVote();
-            vote.setUsername(username);
-            vote.setPost(post);
-            vote.setVoteType(VoteType.LIKE);
-            voteRepository.save(vote);
-            postRepository.save(post);
+    @Autowired
+    private PostSearchService postSearchService;
+
+    @Autowired
+    private VoteAggregator voteAggregator;
+
+    @Autowired
+    private PostFragmentCache postFragmentCache;
+
+    @Autowired
+    private PostSummaryService postSummaryService;
+
+    @Autowired
+    private FeedEventBroadcaster feedEventBroadcaster;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    @Autowired
+    private PostLookupCache postLookupCache;
+
+    @Autowired
+    private HotRanking hotRanking;
+
+    @Autowired
+    private PostPurgeJob postPurgeJob;
+
+    @Autowired
+    private VoteLedger voteLedger;
+
+    @Autowired
+    private ConflictRetryExecutor conflictRetry;
+
+    @Value("${forum.feed.page-size:20}")
+    private int feedPageSize;
+
+    private final LongAdder votesRecorded = new LongAdder();
+    private final LongAdder votesDeduplicated = new LongAdder();
+    private final LongAdder votesRejected = new LongAdder();
+
+    public int getFeedPageSize() {
+        return feedPageSize;
+    }
+
+    // Лента с keyset-пагинацией: два запроса на страницу независимо от её размера
+    @Transactional(readOnly = true)
+    public PostPage getFeedPage(Long before, int size) {
+        PostIdPage page = getFeedIds(before, size);
+        return new PostPage(loadPosts(page.getIds()), page.getNextCursor());
+    }
+
+    @Transactional(readOnly = true)
+    public PostIdPage getFeedIds(Long before, int size) {
+        // берём на один id больше, чтобы понять, есть ли следующая страница
+        PageRequest limit = PageRequest.of(0, size + 1);
+        List<Long> ids = before == null
+                ? postRepository.findFeedIds(limit)
+                : postRepository.findFeedIdsBefore(before, limit);
+
+        Long nextCursor = null;
+        if (ids.size() > size) {
+            ids = ids.subList(0, size);
+            nextCursor = ids.get(ids.size() - 1);
+        }
+        return new PostIdPage(ids, nextCursor);
+    }
+
+    // Посты с комментариями одним запросом, в порядке переданных id
+    @Transactional(readOnly = true)
+    public List<Post> loadPosts(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, Integer> order = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            order.put(ids.get(i), i);
+        }
+        List<Post> posts = new ArrayList<>(postRepository.findAllWithCommentsByIdIn(ids));
+        posts.sort(Comparator.comparing(post -> order.get(post.getId())));
+        return posts;
+    }
+
+    // Карточки постов для ленты: посты без комментариев и их сводки, таблица comment не читается.
+    // Сводку, которой ещё нет (пост старше PostSummary, ремонт до него не дошёл), строим на месте
+    public List<PostCard> loadCards(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, PostSummary> summaries = postSummaryService.findAll(ids);
+        Map<Long, Post> posts = new HashMap<>();
+        for (Post post : postRepository.findAllById(ids)) {
+            posts.put(post.getId(), post);
+        }
+
+        List<PostCard> cards = new ArrayList<>(posts.size());
+        for (Long id : ids) {
+            Post post = posts.get(id);
+            if (post == null || post.getDeletedAt() != null) {
+                continue;
+            }
+            PostSummary summary = summaries.get(id);
+            if (summary == null) {
+                summary = postSummaryService.rebuild(id);
+            }
+            if (summary == null) {
+                continue;
+            }
+            cards.add(new PostCard(post, summary.getCommentCount(), summary.getLikes(), summary.getDislikes(),
+                    postSummaryService.parseLatestComments(summary)));
+        }
+        return cards;
+    }
+
+    @Transactional
+    public Post createPost(Post post, String author) {
+        post.setAuthor(author);
+        post.setCreatedAt(Instant.now());
+        Post saved = postRepository.save(post);
+        postSummaryService.create(saved.getId());
+        postSearchService.index(saved);
+        postFragmentCache.invalidateAfterCommit(saved.getId());
+        AfterCommit.run(() -> feedEventBroadcaster.publish(FeedEvent.postCreated(saved)));
+        AfterCommit.run(() -> hotRanking.postCreated(saved.getId()));
+        readYourWrites.markWrite();
+        return saved;
+    }
+
+    // Мягкое удаление: пост сразу пропадает из ленты и поиска, комментарии и голоса
+    // физически удаляет PostPurgeJob в фоне, небольшими порциями
+    @Transactional
+    public void deletePost(Long id) {
+        if (postRepository.markDeleted(id, Instant.now()) == 0) {
+            return;
+        }
+        postSummaryService.delete(id);
+        postSearchService.remove(id);
+        AfterCommit.run(() -> postLookupCache.invalidatePost(id));
+        AfterCommit.run(() -> hotRanking.remove(id));
+        AfterCommit.run(() -> voteLedger.remove(id));
+        postFragmentCache.invalidateAfterCommit(id);
+        AfterCommit.run(() -> feedEventBroadcaster.publish(FeedEvent.postDeleted(id)));
+        AfterCommit.run(postPurgeJob::wakeUp);
+        readYourWrites.markWrite();
+    }
+
+    // Правка заголовка и текста автором. expectedVersion - версия, которую видел автор (null - без проверки):
+    // если пост с тех пор изменили или удалили, правка отклоняется (StaleEditException), а не затирает чужую.
+    // Запись, вклинившаяся между чтением и flush, - конфликт, который ConflictRetryExecutor повторяет
+    public Post editPost(Long postId, String editor, String title, String content, Long expectedVersion) {
+        return conflictRetry.execute(EDIT_OPERATION, () -> {
+            Post post = postRepository.findById(postId)
+                    .orElseThrow(() -> new IllegalArgumentException("Пост с ID " + postId + " не найден"));
+            if (!Objects.equals(post.getAuthor(), editor)) {
+                throw new AccessDeniedException("Править пост может только автор");
+            }
+            if (post.getDeletedAt() != null
+                    || expectedVersion != null && !expectedVersion.equals(post.getVersion())) {
+                throw new StaleEditException("Пост " + postId + " изменён или удалён после загрузки");
+            }
+            post.setTitle(title);
+            post.setContent(content);
+            Post saved = postRepository.saveAndFlush(post);
+            postSearchService.index(saved);
+            postFragmentCache.invalidateAfterCommit(postId);
+            readYourWrites.markWrite();
+            return saved;
         });
     }
 
+    // Горячие посты (HotRanking) без запроса к БД; page начинается с 0, курсор - номер следующей страницы
+    public PostIdPage getHotIds(int page, int size) {
+        List<Long> ids = hotRanking.top(page * size, size + 1);
+        Long nextPage = null;
+        if (ids.size() > size) {
+            ids = ids.subList(0, size);
+            nextPage = (long) page + 1;
+        }
+        return new PostIdPage(ids, nextPage);
+    }
+
+    // Поиск по индексу; page начинается с 0. В PostIdPage курсор - номер следующей страницы
+    @Transactional(readOnly = true)
+    public PostIdPage searchPostIds(String query, int page, int size) {
+        List<Long> ids = postSearchService.search(query, page * size, size + 1);
+        Long nextPage = null;
+        if (ids.size() > size) {
+            ids = ids.subList(0, size);
+            nextPage = (long) page + 1;
+        }
+        return new PostIdPage(ids, nextPage);
+    }
+
+    public void likePost(Long postId, String username) {
+        vote(postId, username, null, VoteType.LIKE);
+    }
+
     public void dislikePost(Long postId, String username) {
-        Post post = postRepository.findById(postId).orElseThrow();
-
-        voteRepository.findByUsernameAndPostId(username, postId).ifPresentOrElse(vote -> {
-            // пользователь уже голосовал
-        }, () -> {
-            post.setDislikes(post.getDislikes() + 1);
-            PostVote vote = new PostVote();
-            vote.setUsername(username);
-            vote.setPost(post);
-            vote.setVoteType(VoteType.DISLIKE);
-            voteRepository.save(vote);
-            postRepository.save(post);
-        });
+        vote(postId, username, null, VoteType.DISLIKE);
+    }
+
+    // Из контроллера: id пользователя уже есть в principal, в compact-режиме users не читается
+    public void likePost(Long postId, ForumUserPrincipal user) {
+        vote(postId, user.getUsername(), user.getId(), VoteType.LIKE);
+    }
+
+    public void dislikePost(Long postId, ForumUserPrincipal user) {
+        vote(postId, user.getUsername(), user.getId(), VoteType.DISLIKE);
+    }
+
+    // Не больше одного запроса на голос: известный повтор отсекает PostLookupCache, остальное -
+    // вставка с отсечением дубликата; счётчики поста обновит VoteAggregator.
+    // Карточку поста сбрасывает и событие живой ленты шлёт тоже он - после записи счётчиков в БД,
+    // иначе перерендер показал бы старые числа, а подписчики получали бы по событию на каждый голос.
+    // Голос за удалённый пост (кнопка на старой странице) не записывается: иначе пост вернулся бы
+    // в HotRanking и VoteLedger, а после очистки строки INSERT упал бы на внешнем ключе
+    private void vote(Long postId, String username, Long userId, VoteType type) {
+        if (!postLookupCache.exists(postId)) {
+            votesRejected.increment();
+            return;
+        }
+        if (voteLedger.isEnabled()) {
+            voteByUserId(postId, userId != null ? userId : voteLedger.userId(username), type);
+            return;
+        }
+        if (postLookupCache.hasVoted(postId, username)) {
+            votesDeduplicated.increment();
+            return;
+        }
+        long stamp = postLookupCache.voteStamp();
+        if (voteRepository.insertIfAbsent(username, postId, type.name()) == 1) {
+            voteAggregator.record(postId, type);
+            hotRanking.voted(postId, type);
+            votesRecorded.increment();
+            readYourWrites.markWrite();
+        } else {
+            votesDeduplicated.increment();
+        }
+        postLookupCache.markVoted(postId, username, stamp);
+    }
+
+    // forum.votes.storage=compact: повтор отсекают битовые карты VoteLedger, в БД идёт только новый голос
+    private void voteByUserId(Long postId, long userId, VoteType type) {
+        if (voteLedger.hasVoted(postId, userId)) {
+            votesDeduplicated.increment();
+            return;
+        }
+        if (voteLedger.record(postId, userId, type,
+                () -> voteRepository.insertIfAbsentByUserId(userId, postId, type.name()) == 1)) {
+            voteAggregator.record(postId, type);
+            hotRanking.voted(postId, type);
+            votesRecorded.increment();
+            readYourWrites.markWrite();
+        } else {
+            votesDeduplicated.increment();
+        }
+    }
+
+    public long getVotesRecorded() {
+        return votesRecorded.sum();
+    }
+
+    // Повторные голоса, отсечённые уникальным индексом
+    public long getVotesDeduplicated() {
+        return votesDeduplicated.sum();
+    }
+
+    // Голоса за удалённые или несуществующие посты
+    public long getVotesRejected() {
+        return votesRejected.sum();
     }
-}
\ No newline at end of file
+}
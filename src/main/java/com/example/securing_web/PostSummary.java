@@ -0,0 +1,58 @@
+package com.example.securing_web;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+// Денормализованная сводка по посту для ленты: счётчики и последние комментарии (JSON),
+// чтобы карточку можно было отрисовать, не читая таблицу comment.
+// Пишется только через PostSummaryService (JDBC), здесь - чтение и создание схемы
+@Entity
+@Table(name = "post_summary")
+public class PostSummary {
+
+    @Id
+    @Column(name = "post_id")
+    private Long postId;
+
+    @Column(nullable = false)
+    private long commentCount;
+
+    @Column(nullable = false)
+    private long likes;
+
+    @Column(nullable = false)
+    private long dislikes;
+
+    // Последние forum.summary.latest-comments комментариев, новые в конце
+    @Column(nullable = false, length = 20000)
+    private String latestComments = "[]";
+
+    public PostSummary() {
+    }
+
+    public PostSummary(Long postId) {
+        this.postId = postId;
+    }
+
+    public Long getPostId() {
+        return postId;
+    }
+
+    public long getCommentCount() {
+        return commentCount;
+    }
+
+    public long getLikes() {
+        return likes;
+    }
+
+    public long getDislikes() {
+        return dislikes;
+    }
+
+    public String getLatestComments() {
+        return latestComments;
+    }
+}
@@ -0,0 +1,6 @@
+package com.example.securing_web;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface PostSummaryRepository extends JpaRepository<PostSummary, Long> {
+}
@@ -0,0 +1,264 @@
+package com.example.securing_web;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Поддержка PostSummary. Приращения (новые комментарии, удаление комментария, голоса) пишутся
+// в той же транзакции, что и изменение исходных таблиц. Ремонт пересчитывает сводки по post и comment
+// кусками по id: в каждом куске сначала блокируются строки сводки, потом читаются исходные таблицы
+// (без блокировок). Параллельная транзакция, уже изменившая comment/post, ждёт эту блокировку и
+// добавляет своё приращение к пересчитанному значению, поэтому ремонт ничего не теряет.
+@Service
+public class PostSummaryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostSummaryService.class);
+
+    private static final String INSERT_SQL = "INSERT INTO post_summary "
+            + "(post_id, comment_count, likes, dislikes, latest_comments) VALUES (?, 0, 0, 0, '[]') ON CONFLICT DO NOTHING";
+    private static final String ADD_COMMENTS_SQL =
+            "UPDATE post_summary SET comment_count = comment_count + ? WHERE post_id = ?";
+    private static final String LATEST_COMMENTS_SQL = "UPDATE post_summary SET latest_comments = ? WHERE post_id = ?";
+    private static final String REPLACE_SQL = "UPDATE post_summary "
+            + "SET comment_count = ?, likes = ?, dislikes = ?, latest_comments = ? WHERE post_id = ?";
+    // Индекс comment(post_id, id) - читается ровно limit строк
+    private static final String LATEST_SQL =
+            "SELECT id, post_id, author, content FROM comment WHERE post_id = ? ORDER BY id DESC LIMIT ?";
+    private static final String LATEST_IN_RANGE_SQL = "SELECT id, post_id, author, content FROM ("
+            + "SELECT id, post_id, author, content, row_number() OVER (PARTITION BY post_id ORDER BY id DESC) AS rn "
+            + "FROM comment WHERE post_id BETWEEN ? AND ?) ranked WHERE rn <= ? ORDER BY post_id, id";
+
+    private static final TypeReference<List<CommentDto>> COMMENT_LIST = new TypeReference<>() {
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PostSummaryRepository summaryRepository;
+    // Свой ObjectMapper: это формат хранения, он не должен зависеть от настроек Jackson для HTTP
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final int latestCount;
+    private final int repairChunkSize;
+    private final boolean repairOnStartup;
+
+    private final AtomicBoolean repairing = new AtomicBoolean();
+
+    public PostSummaryService(JdbcTemplate jdbcTemplate,
+                              TransactionTemplate transactionTemplate,
+                              PostSummaryRepository summaryRepository,
+                              @Value("${forum.summary.latest-comments:5}") int latestCount,
+                              @Value("${forum.summary.repair-chunk-size:500}") int repairChunkSize,
+                              @Value("${forum.summary.repair-on-startup:true}") boolean repairOnStartup) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.summaryRepository = summaryRepository;
+        this.latestCount = latestCount;
+        this.repairChunkSize = repairChunkSize;
+        this.repairOnStartup = repairOnStartup;
+    }
+
+    public void create(Long postId) {
+        jdbcTemplate.update(INSERT_SQL, postId);
+    }
+
+    public void delete(Long postId) {
+        jdbcTemplate.update("DELETE FROM post_summary WHERE post_id = ?", postId);
+    }
+
+    // Вызывается в транзакции, добавившей комментарии, после flush: число новых комментариев по постам
+    public void commentsAdded(Map<Long, Integer> addedByPost) {
+        addedByPost.forEach(this::commentsChanged);
+    }
+
+    public void commentRemoved(Long postId) {
+        commentsChanged(postId, -1);
+    }
+
+    // Комментарий изменён: число то же, последние комментарии пересобираются
+    public void commentChanged(Long postId) {
+        commentsChanged(postId, 0);
+    }
+
+    // Сначала UPDATE счётчика - он блокирует строку сводки, и только потом чтение последних комментариев:
+    // параллельная транзакция того же поста ждёт коммита и читает уже с его комментарием.
+    // Прочитанный до блокировки список мог бы затереть чужой комментарий устаревшим снимком
+    private void commentsChanged(Long postId, int delta) {
+        if (jdbcTemplate.update(ADD_COMMENTS_SQL, delta, postId) == 0) {
+            // пост создан до появления сводок и ещё не обработан ремонтом
+            rebuildRange(postId, postId);
+            return;
+        }
+        jdbcTemplate.update(LATEST_COMMENTS_SQL, toJson(latestComments(postId)), postId);
+    }
+
+    public Map<Long, PostSummary> findAll(Collection<Long> postIds) {
+        Map<Long, PostSummary> result = new HashMap<>();
+        for (PostSummary summary : summaryRepository.findAllById(postIds)) {
+            result.put(summary.getPostId(), summary);
+        }
+        return result;
+    }
+
+    // Пересчитать сводку одного поста в отдельной транзакции (например, если её ещё нет)
+    public PostSummary rebuild(Long postId) {
+        transactionTemplate.executeWithoutResult(status -> rebuildRange(postId, postId));
+        return summaryRepository.findById(postId).orElse(null);
+    }
+
+    public List<CommentDto> parseLatestComments(PostSummary summary) {
+        try {
+            return objectMapper.readValue(summary.getLatestComments(), COMMENT_LIST);
+        } catch (JsonProcessingException e) {
+            logger.warn("Повреждённые latest_comments у поста {}, ремонт их пересчитает", summary.getPostId(), e);
+            return Collections.emptyList();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void repairOnStartup() {
+        if (repairOnStartup) {
+            Thread thread = new Thread(this::repairAll, "post-summary-repair");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    // Полный обход: короткая транзакция на каждый кусок из repair-chunk-size постов.
+    // Возвращает число исправленных (созданных, обновлённых или удалённых) сводок
+    @Scheduled(cron = "${forum.summary.repair-cron:0 30 4 * * *}")
+    public int repairAll() {
+        if (!repairing.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            int repaired = 0;
+            long after = 0;
+            while (true) {
+                List<Long> ids = jdbcTemplate.queryForList(
+                        "SELECT id FROM post WHERE id > ? ORDER BY id LIMIT ?", Long.class, after, repairChunkSize);
+                if (ids.isEmpty()) {
+                    break;
+                }
+                long from = after + 1;
+                long to = ids.size() < repairChunkSize ? Long.MAX_VALUE : ids.get(ids.size() - 1);
+                Integer fixed = transactionTemplate.execute(status -> rebuildRange(from, to));
+                repaired += fixed == null ? 0 : fixed;
+                after = ids.get(ids.size() - 1);
+            }
+            // сводки удалённых постов за последним id
+            repaired += jdbcTemplate.update("DELETE FROM post_summary s WHERE s.post_id > ? "
+                    + "AND NOT EXISTS (SELECT 1 FROM post p WHERE p.id = s.post_id)", after);
+            if (repaired > 0) {
+                logger.info("Ремонт сводок постов: исправлено {}", repaired);
+            }
+            return repaired;
+        } finally {
+            repairing.set(false);
+        }
+    }
+
+    // Пересчёт сводок постов с id в [from, to]; должен выполняться в транзакции
+    private int rebuildRange(long from, long to) {
+        List<Long> postIds = jdbcTemplate.queryForList(
+                "SELECT id FROM post WHERE id BETWEEN ? AND ? AND deleted_at IS NULL", Long.class, from, to);
+        Set<Long> existing = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT post_id FROM post_summary WHERE post_id BETWEEN ? AND ?", Long.class, from, to));
+        Set<Long> repaired = new HashSet<>();
+        List<Object[]> missing = new ArrayList<>();
+        for (Long postId : postIds) {
+            if (!existing.contains(postId)) {
+                missing.add(new Object[]{postId});
+                repaired.add(postId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, missing);
+        }
+
+        // блокируем сводки, и только потом перечитываем исходные данные
+        Map<Long, PostSummaryRow> current = new HashMap<>();
+        jdbcTemplate.query("SELECT post_id, comment_count, likes, dislikes, latest_comments FROM post_summary "
+                + "WHERE post_id BETWEEN ? AND ? FOR UPDATE", rs -> {
+            current.put(rs.getLong(1), new PostSummaryRow(rs.getLong(2), rs.getLong(3), rs.getLong(4), rs.getString(5)));
+        }, from, to);
+        Map<Long, long[]> votes = new HashMap<>();
+        // у удалённых (ожидающих очистки) постов сводки нет, существующая считается лишней
+        jdbcTemplate.query("SELECT id, likes, dislikes FROM post WHERE id BETWEEN ? AND ? AND deleted_at IS NULL",
+                rs -> {
+                    votes.put(rs.getLong(1), new long[]{rs.getLong(2), rs.getLong(3)});
+                }, from, to);
+
+        Map<Long, Long> counts = new HashMap<>();
+        jdbcTemplate.query("SELECT post_id, count(*) FROM comment WHERE post_id BETWEEN ? AND ? GROUP BY post_id",
+                rs -> {
+                    counts.put(rs.getLong(1), rs.getLong(2));
+                }, from, to);
+        Map<Long, List<CommentDto>> latest = new HashMap<>();
+        jdbcTemplate.query(LATEST_IN_RANGE_SQL, rs -> {
+            latest.computeIfAbsent(rs.getLong(2), id -> new ArrayList<>())
+                    .add(new CommentDto(rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getString(4)));
+        }, from, to, latestCount);
+
+        List<Object[]> updates = new ArrayList<>();
+        List<Object[]> orphans = new ArrayList<>();
+        for (Map.Entry<Long, PostSummaryRow> entry : current.entrySet()) {
+            Long postId = entry.getKey();
+            long[] postVotes = votes.get(postId);
+            if (postVotes == null) {
+                orphans.add(new Object[]{postId});
+                continue;
+            }
+            PostSummaryRow expected = new PostSummaryRow(counts.getOrDefault(postId, 0L), postVotes[0], postVotes[1],
+                    toJson(latest.getOrDefault(postId, Collections.emptyList())));
+            if (!expected.equals(entry.getValue())) {
+                updates.add(new Object[]{expected.commentCount(), expected.likes(), expected.dislikes(),
+                        expected.latestComments(), postId});
+                repaired.add(postId);
+            }
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(REPLACE_SQL, updates);
+        }
+        if (!orphans.isEmpty()) {
+            jdbcTemplate.batchUpdate("DELETE FROM post_summary WHERE post_id = ?", orphans);
+        }
+        return repaired.size() + orphans.size();
+    }
+
+    private List<CommentDto> latestComments(Long postId) {
+        List<CommentDto> comments = new ArrayList<>(jdbcTemplate.query(LATEST_SQL,
+                (rs, rowNum) -> new CommentDto(rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getString(4)),
+                postId, latestCount));
+        Collections.reverse(comments);
+        return comments;
+    }
+
+    private String toJson(List<CommentDto> comments) {
+        try {
+            return objectMapper.writeValueAsString(comments);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record PostSummaryRow(long commentCount, long likes, long dislikes, String latestComments) {
+    }
+}
@@ -3,6 +3,13 @@ package com.example.securing_web;
 import jakarta.persistence.*;
 
 @Entity
+// post_id в уникальных индексах второй - для удаления голосов поста нужен свой индекс.
+// Голос хранит либо username (forum.votes.storage=rows), либо user_id (compact); NULL не конфликтует,
+// так что каждый режим отсекает повторы своим индексом
+@Table(uniqueConstraints = {
+        @UniqueConstraint(name = "uk_post_vote_username_post", columnNames = {"username", "post_id"}),
+        @UniqueConstraint(name = "uk_post_vote_user_post", columnNames = {"user_id", "post_id"})},
+        indexes = @Index(name = "idx_post_vote_post_id", columnList = "post_id"))
 public class PostVote {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -10,6 +17,9 @@ public class PostVote {
 
     private String username;
 
+    @Column(name = "user_id")
+    private Long userId;
+
     @ManyToOne
     @JoinColumn(name = "post_id")
     private Post post;
@@ -21,6 +31,8 @@ public class PostVote {
     public Long getId() { return id; }
     public String getUsername() { return username; }
     public void setUsername(String username) { this.username = username; }
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
     public Post getPost() { return post; }
     public void setPost(Post post) { this.post = post; }
     public VoteType getVoteType() { return voteType; }
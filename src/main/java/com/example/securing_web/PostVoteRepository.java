@@ -1,9 +1,33 @@
 package com.example.securing_web;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
 public interface PostVoteRepository extends JpaRepository<PostVote, Long> {
     Optional<PostVote> findByUsernameAndPostId(String username, Long postId);
-}
\ No newline at end of file
+
+    // Вставка без предварительной проверки: повторный голос отсекает уникальный индекс (username, post_id).
+    // Возвращает 1, если голос записан, и 0, если пользователь уже голосовал
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO post_vote (username, post_id, vote_type) VALUES (:username, :postId, :voteType) "
+            + "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("username") String username,
+                       @Param("postId") Long postId,
+                       @Param("voteType") String voteType);
+
+    // То же для forum.votes.storage=compact: строка без username, повтор отсекает индекс (user_id, post_id)
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO post_vote (user_id, post_id, vote_type) VALUES (:userId, :postId, :voteType) "
+            + "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertIfAbsentByUserId(@Param("userId") Long userId,
+                               @Param("postId") Long postId,
+                               @Param("voteType") String voteType);
+
+}
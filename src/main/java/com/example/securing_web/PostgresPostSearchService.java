@@ -0,0 +1,60 @@
+package com.example.securing_web;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Полнотекстовый поиск средствами PostgreSQL: tsvector по заголовку (вес A) и тексту (вес B) под GIN-индексом.
+// Индекс поддерживает сама БД, поэтому index/remove ничего не делают.
+@Service
+@ConditionalOnProperty(name = "forum.search.engine", havingValue = "postgres")
+public class PostgresPostSearchService implements PostSearchService {
+
+    // Выражение должно совпадать с выражением индекса, иначе планировщик его не использует
+    static final String DOCUMENT = "setweight(to_tsvector('simple', coalesce(title, '')), 'A') || "
+            + "setweight(to_tsvector('simple', coalesce(content, '')), 'B')";
+
+    private static final String CREATE_INDEX = "CREATE INDEX IF NOT EXISTS post_search_idx ON post USING GIN (("
+            + DOCUMENT + "))";
+
+    private static final String SEARCH = "SELECT p.id FROM post p, to_tsquery('simple', ?) q "
+            + "WHERE (" + DOCUMENT + ") @@ q AND p.deleted_at IS NULL "
+            + "ORDER BY ts_rank(" + DOCUMENT + ", q) DESC, p.id DESC "
+            + "LIMIT ? OFFSET ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PostgresPostSearchService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void createIndex() {
+        jdbcTemplate.execute(CREATE_INDEX);
+    }
+
+    @Override
+    public List<Long> search(String query, int offset, int limit) {
+        List<String> terms = SearchTokenizer.tokenize(query);
+        if (terms.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // термы содержат только буквы и цифры, так что синтаксис tsquery в них не попадёт;
+        // последний терм ищем по префиксу
+        String tsQuery = terms.stream().collect(Collectors.joining(" & ")) + ":*";
+        return jdbcTemplate.queryForList(SEARCH, Long.class, tsQuery, limit, offset);
+    }
+
+    @Override
+    public void index(Post post) {
+    }
+
+    @Override
+    public void remove(Long postId) {
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.securing_web;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// Фильтр в цепочке Spring Security (см. WebSecurityConfig): после восстановления SecurityContext из сессии,
+// чтобы знать пользователя, но до проверки пароля при входе - отказ не тратит BCrypt.
+// Не бин: иначе Spring Boot зарегистрировал бы его ещё и обычным фильтром сервлета
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimiter rateLimiter;
+
+    public RateLimitFilter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long wait = rateLimiter.acquire(request);
+        if (wait == 0) {
+            chain.doFilter(request, response);
+            return;
+        }
+        // не sendError: страница /error сама прошла бы через авторизацию и для анонима стала бы редиректом
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader("Retry-After", Long.toString(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + 999_999_999))));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write("Слишком много запросов, повторите позже");
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.securing_web;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+// Лимит на маршрут: не больше capacity запросов подряд, дальше - по capacity за period.
+// Запись в настройках: "МЕТОД ШАБЛОН КЛЮЧ ЧИСЛО/ПЕРИОД", например "POST /posts/*/like user 60/m".
+// Ключ ip - адрес клиента, user - имя вошедшего пользователя (для анонимных - адрес).
+// В шаблоне * - один сегмент пути, ** в конце - любой остаток. Сравнение без AntPathMatcher и без
+// выделения памяти: фильтр проверяет правила на каждом запросе
+public final class RateLimitRule {
+
+    public enum KeyType { IP, USER }
+
+    private final int index;
+    private final String method;
+    private final String pattern;
+    private final String[] segments;
+    private final KeyType keyType;
+    private final long capacity;
+    private final long periodNanos;
+
+    public RateLimitRule(int index, String method, String pattern, KeyType keyType, long capacity, long periodNanos) {
+        if (capacity <= 0 || periodNanos <= 0) {
+            throw new IllegalArgumentException("Лимит должен быть положительным: " + pattern);
+        }
+        if (!pattern.startsWith("/")) {
+            throw new IllegalArgumentException("Шаблон должен начинаться с /: " + pattern);
+        }
+        this.index = index;
+        this.method = method;
+        this.pattern = pattern;
+        this.segments = pattern.substring(1).split("/", -1);
+        this.keyType = keyType;
+        this.capacity = capacity;
+        this.periodNanos = periodNanos;
+    }
+
+    public int index() {
+        return index;
+    }
+
+    public KeyType keyType() {
+        return keyType;
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    public long periodNanos() {
+        return periodNanos;
+    }
+
+    public boolean matches(String requestMethod, String path) {
+        if (!"*".equals(method) && !method.equals(requestMethod)) {
+            return false;
+        }
+        if (path.isEmpty() || path.charAt(0) != '/') {
+            return false;
+        }
+        int start = 1;
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if ("**".equals(segment) && i == segments.length - 1) {
+                return true;
+            }
+            if (start > path.length()) {
+                return false;
+            }
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            boolean last = i == segments.length - 1;
+            if (last != (end == path.length())) {
+                return false;
+            }
+            if (!"*".equals(segment)
+                    && (segment.length() != end - start || !path.startsWith(segment, start))) {
+                return false;
+            }
+            start = end + 1;
+        }
+        return true;
+    }
+
+    // Время, за которое в пустое ведро возвращается один токен
+    public long nanosPerToken() {
+        return periodNanos / capacity;
+    }
+
+    // Через столько времени простоя ведро снова полное и его можно забыть без потери состояния
+    public long idleNanos() {
+        return periodNanos;
+    }
+
+    @Override
+    public String toString() {
+        return method + " " + pattern + " " + keyType + " " + capacity + "/" + periodNanos + "ns";
+    }
+
+    public static List<RateLimitRule> parseAll(String specs) {
+        List<RateLimitRule> rules = new ArrayList<>();
+        for (String spec : specs.split(",")) {
+            if (!spec.isBlank()) {
+                rules.add(parse(rules.size(), spec.trim()));
+            }
+        }
+        return rules;
+    }
+
+    static RateLimitRule parse(int index, String spec) {
+        String[] parts = spec.split("\\s+");
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("Ожидается \"МЕТОД ШАБЛОН КЛЮЧ ЧИСЛО/ПЕРИОД\": " + spec);
+        }
+        String[] limit = parts[3].split("/");
+        if (limit.length != 2) {
+            throw new IllegalArgumentException("Ожидается ЧИСЛО/ПЕРИОД (s, m, h): " + spec);
+        }
+        long periodNanos = switch (limit[1]) {
+            case "s" -> TimeUnit.SECONDS.toNanos(1);
+            case "m" -> TimeUnit.MINUTES.toNanos(1);
+            case "h" -> TimeUnit.HOURS.toNanos(1);
+            default -> throw new IllegalArgumentException("Неизвестный период " + limit[1] + ": " + spec);
+        };
+        return new RateLimitRule(index, parts[0].toUpperCase(Locale.ROOT), parts[1],
+                KeyType.valueOf(parts[2].toUpperCase(Locale.ROOT)), Long.parseLong(limit[0]), periodNanos);
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.securing_web;
+
+// Хранилище вёдер токенов. Локальное (StripedRateLimitStore) считает в памяти узла,
+// общее (SharedRateLimitStore) - во внешнем счётчике, видимом всем узлам
+public interface RateLimitStore {
+
+    // 0 - запрос пропущен и токен списан, иначе через сколько наносекунд появится следующий токен
+    long tryAcquire(String key, RateLimitRule rule);
+
+    // Убрать записи, которые без потери состояния можно создать заново
+    default void evictIdle() {
+    }
+
+    default int size() {
+        return 0;
+    }
+}
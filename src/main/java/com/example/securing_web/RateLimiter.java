@@ -0,0 +1,101 @@
+package com.example.securing_web;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+// Ограничение частоты запросов по маршрутам (forum.rate-limit.rules). Срабатывает первое подходящее правило.
+// store=local - вёдра в памяти узла, store=shared - общий счётчик, для него нужен бин
+// SharedRateLimitStore.CounterClient
+@Component
+public class RateLimiter {
+
+    private final boolean enabled;
+    private final List<RateLimitRule> rules;
+    private final RateLimitStore store;
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    @Autowired
+    public RateLimiter(@Value("${forum.rate-limit.enabled:true}") boolean enabled,
+                       @Value("${forum.rate-limit.rules:}") String rules,
+                       @Value("${forum.rate-limit.store:local}") String store,
+                       @Value("${forum.rate-limit.stripes:64}") int stripes,
+                       @Value("${forum.rate-limit.max-entries:100000}") int maxEntries,
+                       ObjectProvider<SharedRateLimitStore.CounterClient> counterClient) {
+        this(enabled, RateLimitRule.parseAll(rules), switch (store) {
+            case "local" -> new StripedRateLimitStore(stripes, maxEntries, System::nanoTime);
+            // окна должны совпадать на всех узлах, поэтому часы настенные, а не nanoTime
+            case "shared" -> new SharedRateLimitStore(counterClient.getIfAvailable(() -> {
+                throw new IllegalStateException("forum.rate-limit.store=shared требует бин SharedRateLimitStore.CounterClient");
+            }), () -> System.currentTimeMillis() * 1_000_000);
+            default -> throw new IllegalArgumentException("Неизвестное forum.rate-limit.store: " + store);
+        });
+    }
+
+    RateLimiter(boolean enabled, List<RateLimitRule> rules, RateLimitStore store) {
+        this.enabled = enabled;
+        this.rules = List.copyOf(rules);
+        this.store = store;
+    }
+
+    // 0 - запрос можно выполнять, иначе через сколько наносекунд повторить
+    public long acquire(HttpServletRequest request) {
+        if (!enabled) {
+            return 0;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        String method = request.getMethod();
+        for (RateLimitRule rule : rules) {
+            if (rule.matches(method, path)) {
+                long wait = store.tryAcquire(key(rule, request), rule);
+                if (wait == 0) {
+                    allowed.increment();
+                } else {
+                    rejected.increment();
+                }
+                return wait;
+            }
+        }
+        return 0;
+    }
+
+    private static String key(RateLimitRule rule, HttpServletRequest request) {
+        if (rule.keyType() == RateLimitRule.KeyType.USER) {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication != null && authentication.isAuthenticated()
+                    && !(authentication instanceof AnonymousAuthenticationToken)) {
+                return rule.index() + ":u:" + authentication.getName();
+            }
+        }
+        // за прокси адрес клиента берётся из X-Forwarded-For только при server.forward-headers-strategy
+        return rule.index() + ":ip:" + request.getRemoteAddr();
+    }
+
+    @Scheduled(fixedDelayString = "${forum.rate-limit.sweep-ms:60000}")
+    public void evictIdle() {
+        store.evictIdle();
+    }
+
+    public long getAllowed() {
+        return allowed.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public int getStoreSize() {
+        return store.size();
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.securing_web;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+// Чтение своих записей при репликах (forum.replicas.enabled): после голоса, поста или комментария
+// пользователь sticky-ms читает с основной БД, а не с реплики, которая могла ещё не получить запись.
+// sticky-ms не меньше max-lag-ms: реплику с большим отставанием ReplicaRouter и так не выбирает.
+// Учёт в памяти узла - при нескольких узлах без липких сессий запись и чтение могут попасть на разные
+@Component
+public class ReadYourWrites {
+
+    private static final ThreadLocal<Boolean> FORCE_PRIMARY = new ThreadLocal<>();
+
+    private final boolean enabled;
+    private final long stickyNanos;
+    private final LongSupplier clock;
+
+    // пользователь -> до какого момента (System.nanoTime) читать с основной БД
+    private final Map<String, Long> stickyUntil = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ReadYourWrites(@Value("${forum.replicas.enabled:false}") boolean enabled,
+                          @Value("${forum.replicas.sticky-ms:5000}") long stickyMillis) {
+        this(enabled, TimeUnit.MILLISECONDS.toNanos(stickyMillis), System::nanoTime);
+    }
+
+    ReadYourWrites(boolean enabled, long stickyNanos, LongSupplier clock) {
+        this.enabled = enabled;
+        this.stickyNanos = stickyNanos;
+        this.clock = clock;
+    }
+
+    // Вызывается сервисами после записи от имени текущего пользователя
+    public void markWrite() {
+        if (!enabled) {
+            return;
+        }
+        String username = currentUsername();
+        if (username != null) {
+            stickyUntil.put(username, clock.getAsLong() + stickyNanos);
+        }
+    }
+
+    public boolean mustReadPrimary() {
+        if (Boolean.TRUE.equals(FORCE_PRIMARY.get())) {
+            return true;
+        }
+        if (stickyUntil.isEmpty()) {
+            return false;
+        }
+        String username = currentUsername();
+        if (username == null) {
+            return false;
+        }
+        Long until = stickyUntil.get(username);
+        if (until == null) {
+            return false;
+        }
+        if (clock.getAsLong() - until >= 0) {
+            stickyUntil.remove(username, until);
+            return false;
+        }
+        return true;
+    }
+
+    public void purgeExpired() {
+        long now = clock.getAsLong();
+        stickyUntil.values().removeIf(until -> now - until >= 0);
+    }
+
+    // Читать с основной БД независимо от пользователя: например, то, что попадёт в общий кэш
+    public static <T> T onPrimary(Supplier<T> action) {
+        Boolean previous = FORCE_PRIMARY.get();
+        FORCE_PRIMARY.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                FORCE_PRIMARY.remove();
+            }
+        }
+    }
+
+    private static String currentUsername() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.securing_web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Выбор БД для соединения: транзакции readOnly - на исправную реплику по кругу, остальное - на основную.
+// Решение принимается при первом запросе в транзакции (DataSource оборачивается LazyConnectionDataSourceProxy,
+// см. ReplicaRoutingConfig), когда признак readOnly уже выставлен. Реплика исправна, если запрос отставания
+// выполнился и отставание не больше max-lag-ms; неисправные и недоступные пропускаются, без реплик - основная БД
+public class ReplicaRouter implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRouter.class);
+
+    public static final class Replica {
+
+        final String name;
+        final DataSource dataSource;
+        // до первой успешной проверки реплика не используется
+        volatile boolean healthy;
+        volatile long lagMillis = -1;
+
+        public Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        public long getLagMillis() {
+            return lagMillis;
+        }
+    }
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final ReadYourWrites readYourWrites;
+    private final String lagQuery;
+    private final long maxLagMillis;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final LongAdder primaryConnections = new LongAdder();
+    private final LongAdder replicaConnections = new LongAdder();
+    private final LongAdder failovers = new LongAdder();
+
+    private final DataSource routingDataSource = new AbstractDataSource() {
+        @Override
+        public Connection getConnection() throws SQLException {
+            return route();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            throw new SQLFeatureNotSupportedException("Учётные данные задаются для каждой БД отдельно");
+        }
+    };
+
+    public ReplicaRouter(DataSource primary, List<Replica> replicas, ReadYourWrites readYourWrites,
+                         String lagQuery, long maxLagMillis) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.readYourWrites = readYourWrites;
+        this.lagQuery = lagQuery;
+        this.maxLagMillis = maxLagMillis;
+    }
+
+    public DataSource getDataSource() {
+        return routingDataSource;
+    }
+
+    private Connection route() throws SQLException {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !readYourWrites.mustReadPrimary()) {
+            int start = Math.floorMod(next.getAndIncrement(), Math.max(1, replicas.size()));
+            for (int i = 0; i < replicas.size(); i++) {
+                Replica replica = replicas.get((start + i) % replicas.size());
+                if (!replica.healthy) {
+                    continue;
+                }
+                try {
+                    Connection connection = replica.dataSource.getConnection();
+                    replicaConnections.increment();
+                    return connection;
+                } catch (SQLException e) {
+                    replica.healthy = false;
+                    failovers.increment();
+                    logger.warn("Реплика {} недоступна, исключена до следующей проверки: {}", replica.name, e.toString());
+                }
+            }
+        }
+        primaryConnections.increment();
+        return primary.getConnection();
+    }
+
+    @Scheduled(fixedDelayString = "${forum.replicas.check-ms:1000}")
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            boolean wasHealthy = replica.healthy;
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(1);
+                try (ResultSet resultSet = statement.executeQuery(lagQuery)) {
+                    replica.lagMillis = resultSet.next() ? resultSet.getLong(1) : 0;
+                }
+                replica.healthy = replica.lagMillis <= maxLagMillis;
+                if (wasHealthy && !replica.healthy) {
+                    failovers.increment();
+                    logger.warn("Реплика {} отстаёт на {} мс (допустимо {}), чтение уходит на другие БД",
+                            replica.name, replica.lagMillis, maxLagMillis);
+                }
+            } catch (SQLException | RuntimeException e) {
+                replica.healthy = false;
+                replica.lagMillis = -1;
+                if (wasHealthy) {
+                    failovers.increment();
+                    logger.warn("Проверка реплики {} не удалась: {}", replica.name, e.toString());
+                }
+            }
+            if (!wasHealthy && replica.healthy) {
+                logger.info("Реплика {} исправна, отставание {} мс", replica.name, replica.lagMillis);
+            }
+        }
+        readYourWrites.purgeExpired();
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    public long getPrimaryConnections() {
+        return primaryConnections.sum();
+    }
+
+    public long getReplicaConnections() {
+        return replicaConnections.sum();
+    }
+
+    public long getFailovers() {
+        return failovers.sum();
+    }
+
+    // Закрывает пулы реплик и основной БД; ошибка одного не мешает закрыть остальные
+    @Override
+    public void close() {
+        for (Replica replica : replicas) {
+            close(replica.name, replica.dataSource);
+        }
+        close("primary", primary);
+    }
+
+    private static void close(String name, DataSource dataSource) {
+        if (dataSource instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                logger.warn("Не удалось закрыть пул {}: {}", name, e.toString());
+            }
+        }
+    }
+}
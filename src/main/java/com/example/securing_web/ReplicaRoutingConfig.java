@@ -0,0 +1,67 @@
+package com.example.securing_web;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+// Реплики для чтения (forum.replicas.enabled=true): вместо одного пула spring.datasource - основная БД
+// и пулы реплик из forum.replicas.urls за ReplicaRouter. Настройки spring.datasource.hikari.* действуют на все пулы.
+// Пулы не бины: иначе каждый обернул бы SqlTracingDataSourcePostProcessor, и запросы считались бы дважды
+@Configuration
+@ConditionalOnProperty(name = "forum.replicas.enabled", havingValue = "true")
+public class ReplicaRoutingConfig {
+
+    @Bean
+    public ReplicaRouter replicaRouter(DataSourceProperties properties,
+                                       Environment environment,
+                                       ReadYourWrites readYourWrites,
+                                       @Value("${forum.replicas.urls}") List<String> urls,
+                                       @Value("${forum.replicas.username:${spring.datasource.username:}}") String username,
+                                       @Value("${forum.replicas.password:${spring.datasource.password:}}") String password,
+                                       @Value("${forum.replicas.lag-query}") String lagQuery,
+                                       @Value("${forum.replicas.max-lag-ms:2000}") long maxLagMillis) {
+        Binder binder = Binder.get(environment);
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setPoolName("primary");
+
+        List<ReplicaRouter.Replica> replicas = new ArrayList<>();
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(urls.get(i).trim())
+                    .username(username)
+                    .password(password)
+                    .build();
+            binder.bind("spring.datasource.hikari", Bindable.ofInstance(replica));
+            replica.setPoolName("replica-" + (i + 1));
+            // защита от случайной записи мимо ReplicaRouter
+            replica.setReadOnly(true);
+            replicas.add(new ReplicaRouter.Replica(replica.getPoolName(), replica));
+        }
+        ReplicaRouter router = new ReplicaRouter(primary, replicas, readYourWrites, lagQuery, maxLagMillis);
+        // первая проверка сразу, чтобы реплики не простаивали до первого запуска по расписанию
+        router.checkReplicas();
+        return router;
+    }
+
+    // Lazy: соединение берётся при первом запросе, когда транзакция уже помечена readOnly или нет
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRouter router) {
+        return new LazyConnectionDataSourceProxy(router.getDataSource());
+    }
+}
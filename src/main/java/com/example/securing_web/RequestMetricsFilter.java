@@ -0,0 +1,82 @@
+package com.example.securing_web;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// SQL на HTTP-запрос: сколько запросов и сколько времени в БД (метрики forum.http.sql.*, тег uri - шаблон пути).
+// Запросы дольше slow-request-ms пишутся в лог вместе с выполненным SQL.
+// Время самих контроллеров - стандартная метрика http.server.requests (см. application.properties).
+// Стоит раньше Spring Security, чтобы учитывать и запросы при входе
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class RequestMetricsFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestMetricsFilter.class);
+
+    private final MeterRegistry meterRegistry;
+    private final long slowRequestNanos;
+    private final int maxCapturedStatements;
+
+    public RequestMetricsFilter(MeterRegistry meterRegistry,
+                                @Value("${forum.metrics.slow-request-ms:500}") long slowRequestMillis,
+                                @Value("${forum.metrics.slow-request-max-sql:50}") int maxCapturedStatements) {
+        this.meterRegistry = meterRegistry;
+        this.slowRequestNanos = TimeUnit.MILLISECONDS.toNanos(slowRequestMillis);
+        this.maxCapturedStatements = maxCapturedStatements;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long started = System.nanoTime();
+        SqlStatementTracker.begin(maxCapturedStatements);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            SqlStatementTracker.RequestSql sql = SqlStatementTracker.end();
+            long elapsed = System.nanoTime() - started;
+            String uri = uriTag(request);
+
+            DistributionSummary.builder("forum.http.sql.statements")
+                    .description("SQL-запросов на HTTP-запрос")
+                    .tag("uri", uri)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(sql.getCount());
+            Timer.builder("forum.http.sql.time")
+                    .description("Время в БД на HTTP-запрос")
+                    .tag("uri", uri)
+                    .register(meterRegistry)
+                    .record(sql.getNanos(), TimeUnit.NANOSECONDS);
+
+            if (elapsed > slowRequestNanos) {
+                logger.warn("Медленный запрос {} {} ({}): {} мс, SQL: {} запросов, {} мс\n  {}",
+                        request.getMethod(), request.getRequestURI(), response.getStatus(),
+                        TimeUnit.NANOSECONDS.toMillis(elapsed), sql.getCount(),
+                        TimeUnit.NANOSECONDS.toMillis(sql.getNanos()), String.join("\n  ", sql.getCaptured()));
+            }
+        }
+    }
+
+    // Шаблон пути (/posts/{id}/like), а не сам путь: иначе число временных рядов не ограничено
+    private static String uriTag(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern != null ? pattern.toString() : "UNKNOWN";
+    }
+}
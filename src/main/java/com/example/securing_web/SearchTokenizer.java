@@ -0,0 +1,25 @@
+package com.example.securing_web;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Разбивает текст на нормализованные термы: буквы и цифры, нижний регистр, ё -> е
+final class SearchTokenizer {
+
+    private SearchTokenizer() {
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        for (String token : text.toLowerCase(Locale.ROOT).replace('ё', 'е').split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
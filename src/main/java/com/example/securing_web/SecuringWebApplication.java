@@ -2,8 +2,10 @@ package com.example.securing_web;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class SecuringWebApplication {
 
 	public static void main(String[] args) throws Throwable {
@@ -0,0 +1,37 @@
+package com.example.securing_web;
+
+import java.util.function.LongSupplier;
+
+// Общий для всех узлов лимит поверх внешнего счётчика (Redis INCR + PEXPIRE и т.п.).
+// Ведро токенов за один атомарный вызов во внешнем хранилище не выразить, поэтому здесь
+// фиксированное окно длиной period: в окне не больше capacity запросов
+public class SharedRateLimitStore implements RateLimitStore {
+
+    // Внешний счётчик; реализацию даёт приложение бином, в тестах - словарь в памяти
+    public interface CounterClient {
+
+        // Увеличить счётчик на 1 и вернуть новое значение; ключ должен жить не меньше ttlMillis
+        long increment(String key, long ttlMillis);
+    }
+
+    private final CounterClient client;
+    private final LongSupplier clock;
+
+    public SharedRateLimitStore(CounterClient client, LongSupplier clock) {
+        this.client = client;
+        this.clock = clock;
+    }
+
+    @Override
+    public long tryAcquire(String key, RateLimitRule rule) {
+        long now = clock.getAsLong();
+        long period = rule.periodNanos();
+        long window = now / period;
+        long ttlMillis = period / 1_000_000 * 2;
+        long count = client.increment(key + "@" + window, ttlMillis);
+        if (count <= rule.capacity()) {
+            return 0;
+        }
+        return (window + 1) * period - now;
+    }
+}
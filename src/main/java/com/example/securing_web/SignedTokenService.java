@@ -0,0 +1,184 @@
+package com.example.securing_web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+
+// Подписанные токены входа для режима forum.auth.mode=token: HMAC-SHA256, проверка без БД и сессии.
+// Токен: base64url(полезная нагрузка).ключ.base64url(подпись), нагрузка - срок, id токена, роли,
+// id и полное имя пользователя (ForumUserPrincipal восстанавливается без чтения users) и имя.
+// Ключи в forum.auth.token.keys: "id:base64,id:base64"; первым подписываются новые токены, остальные
+// только проверяются - так ключ меняется без выхода всех пользователей: новый ставится первым,
+// старый убирается, когда истекут выданные им токены
+@Component
+public class SignedTokenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SignedTokenService.class);
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    public record Claims(Long userId, String username, String fullName, List<GrantedAuthority> authorities,
+                         String tokenId, long expiresAt) {
+
+        public ForumUserPrincipal toPrincipal() {
+            return new ForumUserPrincipal(userId, username, fullName, null, authorities);
+        }
+    }
+
+    private final Map<String, SigningKey> keys;
+    private final String signingKeyId;
+    private final long ttlSeconds;
+    private final Clock clock;
+    private final SecureRandom random = new SecureRandom();
+
+    @Autowired
+    public SignedTokenService(@Value("${forum.auth.token.keys:}") String keys,
+                              @Value("${forum.auth.token.ttl:12h}") Duration ttl) {
+        this(parseKeys(keys), ttl.toSeconds(), Clock.systemUTC());
+    }
+
+    SignedTokenService(Map<String, byte[]> keys, long ttlSeconds, Clock clock) {
+        if (keys.isEmpty()) {
+            // годится для одного узла: после перезапуска все токены недействительны
+            logger.warn("forum.auth.token.keys не задан, токены подписываются случайным ключом");
+            byte[] secret = new byte[32];
+            random.nextBytes(secret);
+            keys = Map.of("local", secret);
+        }
+        this.keys = new LinkedHashMap<>();
+        keys.forEach((id, secret) -> this.keys.put(id, new SigningKey(secret)));
+        this.signingKeyId = keys.keySet().iterator().next();
+        this.ttlSeconds = ttlSeconds;
+        this.clock = clock;
+    }
+
+    public String issue(ForumUserPrincipal user) {
+        byte[] tokenId = new byte[12];
+        random.nextBytes(tokenId);
+        long expiresAt = clock.instant().getEpochSecond() + ttlSeconds;
+        // имя последним: в нём может оказаться любой символ, включая разделитель; полное имя - в base64
+        String fullName = user.getFullName() == null ? "" : user.getFullName();
+        String payload = expiresAt + "\n" + ENCODER.encodeToString(tokenId) + "\n"
+                + user.getAuthorities().stream().map(GrantedAuthority::getAuthority).collect(Collectors.joining(","))
+                + "\n" + user.getId()
+                + "\n" + ENCODER.encodeToString(fullName.getBytes(StandardCharsets.UTF_8))
+                + "\n" + user.getUsername();
+        String body = ENCODER.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + "." + signingKeyId;
+        return body + "." + ENCODER.encodeToString(sign(signingKeyId, body));
+    }
+
+    // null - подпись не сошлась, ключ неизвестен или срок истёк
+    public Claims verify(String token) {
+        int signatureAt = token.lastIndexOf('.');
+        int keyAt = signatureAt > 0 ? token.lastIndexOf('.', signatureAt - 1) : -1;
+        if (keyAt <= 0) {
+            return null;
+        }
+        String body = token.substring(0, signatureAt);
+        String keyId = token.substring(keyAt + 1, signatureAt);
+        if (!keys.containsKey(keyId)) {
+            return null;
+        }
+        try {
+            if (!MessageDigest.isEqual(sign(keyId, body), DECODER.decode(token.substring(signatureAt + 1)))) {
+                return null;
+            }
+            String[] fields = new String(DECODER.decode(token.substring(0, keyAt)), StandardCharsets.UTF_8)
+                    .split("\n", 6);
+            long expiresAt = Long.parseLong(fields[0]);
+            if (expiresAt <= clock.instant().getEpochSecond()) {
+                return null;
+            }
+            List<GrantedAuthority> authorities = fields[2].isEmpty()
+                    ? List.of() : AuthorityUtils.commaSeparatedStringToAuthorityList(fields[2]);
+            Long userId = "null".equals(fields[3]) ? null : Long.valueOf(fields[3]);
+            String fullName = new String(DECODER.decode(fields[4]), StandardCharsets.UTF_8);
+            return new Claims(userId, fields[5], fullName.isEmpty() ? null : fullName, authorities, fields[1],
+                    expiresAt);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    private byte[] sign(String keyId, String body) {
+        return keys.get(keyId).sign(body.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // Mac не потокобезопасен, а getInstance и init на каждый запрос дороже самой подписи.
+    // Пул, а не ThreadLocal: в режиме виртуальных потоков у каждого запроса свой поток
+    private static final class SigningKey {
+
+        private final SecretKeySpec secret;
+        private final Queue<Mac> pool = new ConcurrentLinkedQueue<>();
+
+        SigningKey(byte[] secret) {
+            this.secret = new SecretKeySpec(secret, ALGORITHM);
+            pool.offer(newMac());
+        }
+
+        byte[] sign(byte[] data) {
+            Mac mac = pool.poll();
+            if (mac == null) {
+                mac = newMac();
+            }
+            byte[] signature = mac.doFinal(data);
+            pool.offer(mac);
+            return signature;
+        }
+
+        private Mac newMac() {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(secret);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    static Map<String, byte[]> parseKeys(String spec) {
+        Map<String, byte[]> keys = new LinkedHashMap<>();
+        for (String entry : spec.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.trim().split(":", 2);
+            if (parts.length != 2 || parts[0].isEmpty() || parts[0].contains(".")) {
+                throw new IllegalArgumentException("Ожидается \"id:base64\" в forum.auth.token.keys");
+            }
+            byte[] secret = Base64.getDecoder().decode(parts[1]);
+            if (secret.length < 32) {
+                throw new IllegalArgumentException("Ключ " + parts[0] + " короче 256 бит");
+            }
+            keys.put(parts[0], secret);
+        }
+        return keys;
+    }
+}
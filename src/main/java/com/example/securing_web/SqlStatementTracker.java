@@ -0,0 +1,79 @@
+package com.example.securing_web;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+// Учёт SQL-запросов: общие счётчики для метрик и, если поток обрабатывает HTTP-запрос,
+// число, время и текст запросов этого HTTP-запроса (для медленных запросов)
+public final class SqlStatementTracker {
+
+    private static final ThreadLocal<RequestSql> CURRENT = new ThreadLocal<>();
+
+    private static final LongAdder statements = new LongAdder();
+    private static final LongAdder statementNanos = new LongAdder();
+
+    private SqlStatementTracker() {
+    }
+
+    public static void begin(int maxCapturedStatements) {
+        CURRENT.set(new RequestSql(maxCapturedStatements));
+    }
+
+    public static RequestSql end() {
+        RequestSql requestSql = CURRENT.get();
+        CURRENT.remove();
+        return requestSql;
+    }
+
+    static void record(String sql, long nanos) {
+        statements.increment();
+        statementNanos.add(nanos);
+        RequestSql requestSql = CURRENT.get();
+        if (requestSql != null) {
+            requestSql.add(sql, nanos);
+        }
+    }
+
+    public static long getStatements() {
+        return statements.sum();
+    }
+
+    public static long getStatementNanos() {
+        return statementNanos.sum();
+    }
+
+    public static final class RequestSql {
+
+        private final int maxCaptured;
+        private final List<String> captured = new ArrayList<>();
+        private int count;
+        private long nanos;
+
+        RequestSql(int maxCaptured) {
+            this.maxCaptured = maxCaptured;
+        }
+
+        void add(String sql, long statementNanos) {
+            count++;
+            nanos += statementNanos;
+            // строки SQL уже существуют (их держит PreparedStatement), копирования нет
+            if (captured.size() < maxCaptured) {
+                captured.add(statementNanos / 1000 + " мкс: " + sql);
+            }
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public List<String> getCaptured() {
+            return Collections.unmodifiableList(captured);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.securing_web;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+// Оборачивает DataSource, чтобы каждый выполненный запрос попадал в SqlStatementTracker.
+// Заменяет spring.jpa.show-sql: вместо печати всех запросов - счётчики и текст только для медленных HTTP-запросов.
+// Остальные вызовы (в том числе unwrap до PGConnection для COPY) уходят в настоящие объекты без изменений
+@Component
+public class SqlTracingDataSourcePostProcessor implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !Proxy.isProxyClass(bean.getClass())) {
+            return proxy(DataSource.class, dataSource, (target, method, args) -> {
+                Object result = invoke(target, method, args);
+                return result instanceof Connection connection ? tracingConnection(connection) : result;
+            });
+        }
+        return bean;
+    }
+
+    private static Connection tracingConnection(Connection connection) {
+        return proxy(Connection.class, connection, (target, method, args) -> {
+            Object result = invoke(target, method, args);
+            String name = method.getName();
+            if (result instanceof CallableStatement statement) {
+                return tracingStatement(CallableStatement.class, statement, (String) args[0]);
+            }
+            if (result instanceof PreparedStatement statement && name.equals("prepareStatement")) {
+                return tracingStatement(PreparedStatement.class, statement, (String) args[0]);
+            }
+            if (result instanceof Statement statement && name.equals("createStatement")) {
+                return tracingStatement(Statement.class, statement, null);
+            }
+            return result;
+        });
+    }
+
+    private static <S extends Statement> S tracingStatement(Class<S> type, S statement, String preparedSql) {
+        return proxy(type, statement, (target, method, args) -> {
+            if (!method.getName().startsWith("execute")) {
+                return invoke(target, method, args);
+            }
+            long started = System.nanoTime();
+            try {
+                return invoke(target, method, args);
+            } finally {
+                String sql = preparedSql != null ? preparedSql
+                        : args != null && args.length > 0 && args[0] instanceof String text ? text : "?";
+                SqlStatementTracker.record(sql, System.nanoTime() - started);
+            }
+        });
+    }
+
+    private interface Handler<T> {
+        Object handle(T target, Method method, Object[] args) throws Throwable;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, Handler<T> handler) {
+        InvocationHandler invocationHandler = (proxy, method, args) -> {
+            if (method.getName().equals("equals") && args != null && args.length == 1) {
+                return proxy == args[0];
+            }
+            if (method.getName().equals("hashCode") && args == null) {
+                return System.identityHashCode(proxy);
+            }
+            return handler.handle(target, method, args);
+        };
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, invocationHandler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
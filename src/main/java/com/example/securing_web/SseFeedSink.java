@@ -0,0 +1,31 @@
+package com.example.securing_web;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+
+// Подписчик живой ленты поверх SseEmitter
+class SseFeedSink implements FeedEventBroadcaster.Sink {
+
+    private final SseEmitter emitter;
+
+    SseFeedSink(SseEmitter emitter) {
+        this.emitter = emitter;
+    }
+
+    @Override
+    public void send(FeedEvent event) throws IOException {
+        emitter.send(SseEmitter.event().name(event.getName()).data(event.getData(), MediaType.APPLICATION_JSON));
+    }
+
+    @Override
+    public void heartbeat() throws IOException {
+        emitter.send(SseEmitter.event().comment("ping"));
+    }
+
+    @Override
+    public void close() {
+        emitter.complete();
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.securing_web;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// Правка основана на версии, которую уже изменили: повторять её бессмысленно, пользователь должен
+// увидеть новое содержимое и решить сам. В отличие от OptimisticLockingFailureException не повторяется
+@ResponseStatus(HttpStatus.CONFLICT)
+public class StaleEditException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public StaleEditException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.securing_web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+// Настройки старта (профиль fast-start): ленивые бины из forum.startup.lazy-beans и
+// обучающий запуск для архива CDS (forum.startup.exit-on-ready=true) - приложение
+// поднимается целиком, пишет время старта и завершается, JVM сохраняет загруженные классы
+@Configuration
+public class StartupConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupConfig.class);
+
+    // static: постпроцессор фабрики создаётся раньше остальных бинов, @Value здесь ещё не работает
+    @Bean
+    static BeanFactoryPostProcessor lazyBeansPostProcessor(Environment environment) {
+        List<String> names = Binder.get(environment)
+                .bind("forum.startup.lazy-beans", Bindable.listOf(String.class))
+                .orElse(List.of());
+        return beanFactory -> {
+            for (String name : names) {
+                if (beanFactory.containsBeanDefinition(name)) {
+                    beanFactory.getBeanDefinition(name).setLazyInit(true);
+                } else {
+                    logger.warn("forum.startup.lazy-beans: бина {} нет", name);
+                }
+            }
+        };
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reportStartup(ApplicationReadyEvent event) {
+        Environment environment = event.getApplicationContext().getEnvironment();
+        logger.info("Старт за {} мс (от запуска JVM), профили {}",
+                System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime(),
+                List.of(environment.getActiveProfiles()));
+        if (environment.getProperty("forum.startup.exit-on-ready", Boolean.class, false)) {
+            System.exit(SpringApplication.exit(event.getApplicationContext(), () -> 0));
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.securing_web;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+// Вёдра токенов в памяти узла. Ключи разложены по полосам со своим замком, так что запросы
+// разных клиентов почти не конкурируют. Ведро - одно число (GCRA): момент, когда оно снова станет полным.
+// Память ограничена maxEntries: в переполненной полосе вытесняется давно не использованное ведро (LRU),
+// а полные вёдра убирает evictIdle - они ничем не отличаются от отсутствующих
+public class StripedRateLimitStore implements RateLimitStore {
+
+    private final Stripe[] stripes;
+    private final int shift;
+    private final int maxPerStripe;
+    private final LongSupplier clock;
+
+    private final LongAdder forcedEvictions = new LongAdder();
+
+    public StripedRateLimitStore(int stripeCount, int maxEntries, LongSupplier clock) {
+        int count = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.shift = 32 - Integer.numberOfTrailingZeros(count);
+        this.maxPerStripe = Math.max(1, maxEntries / count);
+        this.clock = clock;
+    }
+
+    @Override
+    public long tryAcquire(String key, RateLimitRule rule) {
+        long now = clock.getAsLong();
+        long interval = rule.nanosPerToken();
+        long burst = interval * (rule.capacity() - 1);
+        Stripe stripe = stripes[stripeIndex(key.hashCode())];
+        stripe.lock.lock();
+        try {
+            Bucket bucket = stripe.buckets.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(now);
+                stripe.buckets.put(key, bucket);
+            }
+            long fullAt = Math.max(bucket.fullAt, now);
+            if (fullAt - now > burst) {
+                return fullAt - burst - now;
+            }
+            bucket.fullAt = fullAt + interval;
+            return 0;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public void evictIdle() {
+        long now = clock.getAsLong();
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                Iterator<Bucket> buckets = stripe.buckets.values().iterator();
+                while (buckets.hasNext()) {
+                    if (buckets.next().fullAt <= now) {
+                        buckets.remove();
+                    }
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                size += stripe.buckets.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    // Вытеснено непустых вёдер: такой клиент получает лимит заново, значит maxEntries мал
+    public long getForcedEvictions() {
+        return forcedEvictions.sum();
+    }
+
+    // Старшие биты перемешанного хэша: младшие берёт HashMap внутри полосы, и при общих младших битах
+    // все ключи полосы легли бы в малую часть её таблицы
+    private int stripeIndex(int hash) {
+        return shift == 32 ? 0 : (hash * 0x9E3779B9) >>> shift;
+    }
+
+    private static final class Bucket {
+
+        long fullAt;
+
+        Bucket(long fullAt) {
+            this.fullAt = fullAt;
+        }
+    }
+
+    private final class Stripe {
+
+        // ReentrantLock, а не synchronized: запросы могут идти из виртуальных потоков
+        final ReentrantLock lock = new ReentrantLock();
+
+        final Map<String, Bucket> buckets = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+                if (size() <= maxPerStripe) {
+                    return false;
+                }
+                if (eldest.getValue().fullAt > clock.getAsLong()) {
+                    forcedEvictions.increment();
+                }
+                return true;
+            }
+        };
+    }
+}
@@ -0,0 +1,353 @@
+package com.example.securing_web;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// Ограниченный кэш с вытеснением W-TinyLFU: новые записи попадают в маленькое окно LRU (~1%),
+// вытесненные из окна - в основную область SLRU (испытательная 20% и защищённая 80%), но только если
+// их частота по count-min sketch выше, чем у жертвы из основной области. Так разовый проход по многим
+// ключам не вымывает популярные, а недавно ставшие популярными быстро получают место.
+// Чтение без блокировки; учёт обращения - под tryLock и при конкуренции пропускается, как в Caffeine.
+// get(key, loader) объединяет одновременные промахи по одному ключу в одну загрузку
+final class TinyLfuCache<K, V> {
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final int maximum;
+    private final int windowMaximum;
+    private final int protectedMaximum;
+
+    private final Map<K, Node<K, V>> data = new ConcurrentHashMap<>();
+    private final Map<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+
+    private final ReentrantLock policyLock = new ReentrantLock();
+    private final FrequencySketch sketch;
+    private final AccessQueue<K, V> window = new AccessQueue<>();
+    private final AccessQueue<K, V> probation = new AccessQueue<>();
+    private final AccessQueue<K, V> protectedQueue = new AccessQueue<>();
+
+    // Растёт при каждой инвалидации: загрузка, начатая до неё, не положит в кэш устаревшее значение
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    TinyLfuCache(int maximum) {
+        if (maximum < 1) {
+            throw new IllegalArgumentException("Размер кэша должен быть положительным: " + maximum);
+        }
+        this.maximum = maximum;
+        this.windowMaximum = Math.max(1, maximum / 100);
+        this.protectedMaximum = (int) ((maximum - windowMaximum) * 0.8);
+        this.sketch = new FrequencySketch(maximum);
+    }
+
+    V getIfPresent(K key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        if (policyLock.tryLock()) {
+            try {
+                onAccess(node);
+            } finally {
+                policyLock.unlock();
+            }
+        }
+        return node.value;
+    }
+
+    // Значение из кэша или из loader; loader, вернувший null, ничего не кэширует
+    V get(K key, Function<K, V> loader) {
+        V value = getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = loading.putIfAbsent(key, future);
+        if (inFlight != null) {
+            coalesced.increment();
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        long stamp = stamp();
+        try {
+            loads.increment();
+            V loaded = loader.apply(key);
+            if (loaded != null) {
+                put(key, loaded, stamp);
+            }
+            future.complete(loaded);
+            return loaded;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    void put(K key, V value) {
+        put(key, value, stamp());
+    }
+
+    // stamp берётся до чтения из БД; если с тех пор была инвалидация, значение не кэшируется
+    void put(K key, V value, long stamp) {
+        Node<K, V> node = new Node<>(key, value);
+        policyLock.lock();
+        try {
+            if (invalidations.get() != stamp) {
+                return;
+            }
+            Node<K, V> previous = data.put(key, node);
+            if (previous != null) {
+                unlink(previous);
+            }
+            sketch.increment(key.hashCode());
+            window.addLast(node, WINDOW);
+            Node<K, V> candidate = null;
+            if (window.size > windowMaximum) {
+                candidate = window.head;
+                window.remove(candidate);
+                probation.addLast(candidate, PROBATION);
+            }
+            evict(candidate);
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    void invalidate(K key) {
+        policyLock.lock();
+        try {
+            invalidations.incrementAndGet();
+            loading.remove(key);
+            Node<K, V> node = data.remove(key);
+            if (node != null) {
+                unlink(node);
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    // Полный проход по кэшу - для редких событий вроде удаления поста
+    void invalidateIf(Predicate<K> predicate) {
+        policyLock.lock();
+        try {
+            invalidations.incrementAndGet();
+            loading.keySet().removeIf(predicate);
+            data.values().removeIf(node -> {
+                if (predicate.test(node.key)) {
+                    unlink(node);
+                    return true;
+                }
+                return false;
+            });
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    long stamp() {
+        return invalidations.get();
+    }
+
+    int size() {
+        return data.size();
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    // Обращения к источнику данных: промахи минус объединённые с чужой загрузкой
+    long getLoads() {
+        return loads.sum();
+    }
+
+    long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    long getEvictions() {
+        return evictions.sum();
+    }
+
+    private void onAccess(Node<K, V> node) {
+        if (node.queue < 0) {
+            return; // уже вытеснен
+        }
+        sketch.increment(node.key.hashCode());
+        switch (node.queue) {
+            case WINDOW -> window.moveToEnd(node);
+            case PROBATION -> {
+                probation.remove(node);
+                protectedQueue.addLast(node, PROTECTED);
+                if (protectedQueue.size > protectedMaximum) {
+                    Node<K, V> demoted = protectedQueue.head;
+                    protectedQueue.remove(demoted);
+                    probation.addLast(demoted, PROBATION);
+                }
+            }
+            default -> protectedQueue.moveToEnd(node);
+        }
+    }
+
+    // Кандидат из окна против жертвы из начала испытательной очереди: остаётся более частый
+    private void evict(Node<K, V> candidate) {
+        while (data.size() > maximum) {
+            Node<K, V> victim = probation.head != null ? probation.head : protectedQueue.head;
+            if (candidate != null && candidate != victim
+                    && sketch.frequency(candidate.key.hashCode()) <= sketch.frequency(victim.key.hashCode())) {
+                victim = candidate;
+            }
+            if (victim == candidate) {
+                candidate = null;
+            }
+            data.remove(victim.key, victim);
+            unlink(victim);
+            evictions.increment();
+        }
+    }
+
+    private void unlink(Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW -> window.remove(node);
+            case PROBATION -> probation.remove(node);
+            case PROTECTED -> protectedQueue.remove(node);
+            default -> {
+            }
+        }
+        node.queue = -1;
+    }
+
+    private static final class Node<K, V> {
+        final K key;
+        final V value;
+        Node<K, V> prev;
+        Node<K, V> next;
+        int queue = -1;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    // Двусвязный список в порядке обращений; меняется только под policyLock
+    private static final class AccessQueue<K, V> {
+        Node<K, V> head;
+        Node<K, V> tail;
+        int size;
+
+        void addLast(Node<K, V> node, int queue) {
+            node.queue = queue;
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            size++;
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            size--;
+        }
+
+        void moveToEnd(Node<K, V> node) {
+            if (node != tail) {
+                int queue = node.queue;
+                remove(node);
+                addLast(node, queue);
+            }
+        }
+    }
+
+    // Count-min sketch: 4 строки счётчиков до 15; после 10 * maximum отсчётов все счётчики делятся пополам,
+    // чтобы старая популярность забывалась
+    private static final class FrequencySketch {
+
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+        private final byte[][] rows;
+        private final int shift;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int maximum) {
+            int width = Integer.highestOneBit(Math.max(16, maximum - 1) << 1);
+            this.rows = new byte[SEEDS.length][width];
+            this.shift = 32 - Integer.numberOfTrailingZeros(width);
+            this.sampleSize = 10 * maximum;
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int i = 0; i < rows.length; i++) {
+                int index = index(hash, i);
+                if (rows[i][index] < 15) {
+                    rows[i][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (byte[] row : rows) {
+                    for (int j = 0; j < row.length; j++) {
+                        row[j] >>= 1;
+                    }
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(int hash) {
+            int frequency = 15;
+            for (int i = 0; i < rows.length; i++) {
+                frequency = Math.min(frequency, rows[i][index(hash, i)]);
+            }
+            return frequency;
+        }
+
+        private int index(int hash, int row) {
+            int spread = hash ^ (hash >>> 16);
+            return (spread * SEEDS[row]) >>> shift;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.securing_web;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+// Режим forum.auth.mode=token: пользователь восстанавливается из подписанной cookie,
+// без сессии и без обращения к БД. Неверный, просроченный или отозванный токен - просто аноним.
+// Не бин, как и RateLimitFilter: создаётся в WebSecurityConfig
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+    private final SignedTokenService tokenService;
+    private final TokenRevocationList revocationList;
+    private final String cookieName;
+
+    public TokenAuthenticationFilter(SignedTokenService tokenService, TokenRevocationList revocationList,
+                                     String cookieName) {
+        this.tokenService = tokenService;
+        this.revocationList = revocationList;
+        this.cookieName = cookieName;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        SignedTokenService.Claims claims = readClaims(request);
+        if (claims != null) {
+            // тот же ForumUserPrincipal, что и при сессии, - @AuthenticationPrincipal работает одинаково
+            ForumUserPrincipal principal = claims.toPrincipal();
+            Authentication authentication =
+                    UsernamePasswordAuthenticationToken.authenticated(principal, null, claims.authorities());
+            SecurityContext context = SecurityContextHolder.createEmptyContext();
+            context.setAuthentication(authentication);
+            SecurityContextHolder.setContext(context);
+        }
+        chain.doFilter(request, response);
+    }
+
+    SignedTokenService.Claims readClaims(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie cookie : cookies) {
+            if (cookieName.equals(cookie.getName())) {
+                SignedTokenService.Claims claims = tokenService.verify(cookie.getValue());
+                return claims == null || revocationList.isRevoked(claims.tokenId()) ? null : claims;
+            }
+        }
+        return null;
+    }
+}
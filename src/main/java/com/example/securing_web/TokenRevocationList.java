@@ -0,0 +1,54 @@
+package com.example.securing_web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Отозванные при выходе токены. Хранятся только до истечения их срока, поэтому список мал:
+// число выходов за forum.auth.token.ttl. Локален для узла - на нескольких узлах выход действует
+// на том, где он выполнен, а на остальных токен живёт до своего срока
+@Component
+public class TokenRevocationList {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationList.class);
+
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final Clock clock;
+
+    public TokenRevocationList(@Value("${forum.auth.token.max-revoked:100000}") int maxSize) {
+        this.maxSize = maxSize;
+        this.clock = Clock.systemUTC();
+    }
+
+    public void revoke(SignedTokenService.Claims claims) {
+        if (revoked.size() >= maxSize) {
+            purgeExpired();
+            if (revoked.size() >= maxSize) {
+                logger.warn("Список отозванных токенов переполнен ({}), токен {} не отозван", maxSize, claims.tokenId());
+                return;
+            }
+        }
+        revoked.put(claims.tokenId(), claims.expiresAt());
+    }
+
+    public boolean isRevoked(String tokenId) {
+        return revoked.containsKey(tokenId);
+    }
+
+    @Scheduled(fixedDelayString = "${forum.auth.token.purge-ms:60000}")
+    public void purgeExpired() {
+        long now = clock.instant().getEpochSecond();
+        revoked.values().removeIf(expiresAt -> expiresAt <= now);
+    }
+
+    public int size() {
+        return revoked.size();
+    }
+}
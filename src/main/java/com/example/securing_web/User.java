@@ -3,7 +3,8 @@ package com.example.securing_web;
 import jakarta.persistence.*;
 
 @Entity
-@Table(name = "users")
+// username индексирован ограничением unique; full_name - для сортировки справочника
+@Table(name = "users", indexes = @Index(name = "idx_users_full_name", columnList = "full_name"))
 public class User {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
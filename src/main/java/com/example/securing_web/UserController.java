@@ -3,23 +3,33 @@ package com.example.securing_web;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
-
-import java.util.List;
+import org.springframework.web.bind.annotation.RequestParam;
 
 @Controller
 public class UserController {
 
-    private final UserService userService;
+    private final UserDirectoryService userDirectoryService;
 
-    // Конструктор с внедрением UserService
-    public UserController(UserService userService) {
-        this.userService = userService;
+    // Конструктор с внедрением UserDirectoryService
+    public UserController(UserDirectoryService userDirectoryService) {
+        this.userDirectoryService = userDirectoryService;
     }
+
+    // Постранично: q - начало логина, sort - username|name|id, dir - asc|desc
     @GetMapping("/contact")
-    public String contactPage(Model model) {
-        List<User> users = userService.findAllUsers(); // твой сервис, который возвращает всех пользователей
-        model.addAttribute("users", users);
+    public String contactPage(@RequestParam(required = false) String q,
+                              @RequestParam(defaultValue = UserDirectoryService.DEFAULT_SORT) String sort,
+                              @RequestParam(defaultValue = "asc") String dir,
+                              @RequestParam(defaultValue = "0") int page,
+                              Model model) {
+        UserDirectoryPage directory = userDirectoryService.findPage(q, sort, "desc".equals(dir), page);
+        model.addAttribute("users", directory.getUsers());
+        model.addAttribute("nextPage", directory.getNextPage());
+        model.addAttribute("page", Math.max(0, page));
+        model.addAttribute("q", q);
+        model.addAttribute("sort", sort);
+        model.addAttribute("dir", dir);
         return "contact";
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,124 @@
+package com.example.securing_web;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Ограниченный по размеру (LRU) и времени жизни кэш UserDetails перед UserRepository.
+// Хранит ForumUserPrincipal как есть: он неизменяемый, пароль после входа убирается в копии,
+// так что общий экземпляр можно отдавать каждому входу.
+@Component
+public class UserDetailsCache implements UserCache {
+
+    private final long ttlNanos;
+    private final int maxSize;
+    private final LongSupplier clock;
+
+    private final Map<String, Entry> entries;
+
+    // Растёт при каждой инвалидации: загрузка, начатая до неё, не положит в кэш устаревшие данные
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public UserDetailsCache(@Value("${forum.auth-cache.ttl-seconds:300}") long ttlSeconds,
+                            @Value("${forum.auth-cache.max-size:10000}") int maxSize) {
+        this(TimeUnit.SECONDS.toNanos(ttlSeconds), maxSize, System::nanoTime);
+    }
+
+    UserDetailsCache(long ttlNanos, int maxSize, LongSupplier clock) {
+        this.ttlNanos = ttlNanos;
+        this.maxSize = maxSize;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > UserDetailsCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public UserDetails getUserFromCache(String username) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(username);
+            if (entry != null && clock.getAsLong() - entry.createdAt() > ttlNanos) {
+                entries.remove(username);
+                evictions.increment();
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.principal();
+    }
+
+    @Override
+    public void putUserInCache(UserDetails user) {
+        putUserInCache(user, stamp());
+    }
+
+    // stamp берётся до чтения из БД; если с тех пор была инвалидация, результат не кэшируем.
+    // Кэш наполняет только CustomUserDetailsService, другие реализации UserDetails сюда не попадают
+    public void putUserInCache(UserDetails user, long stamp) {
+        Entry entry = new Entry((ForumUserPrincipal) user, clock.getAsLong());
+        synchronized (entries) {
+            if (invalidations.get() == stamp) {
+                entries.put(entry.principal().getUsername(), entry);
+            }
+        }
+    }
+
+    @Override
+    public void removeUserFromCache(String username) {
+        synchronized (entries) {
+            invalidations.incrementAndGet();
+            entries.remove(username);
+        }
+    }
+
+    public long stamp() {
+        return invalidations.get();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private record Entry(ForumUserPrincipal principal, long createdAt) {
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.securing_web;
+
+import java.util.List;
+
+// Страница справочника пользователей: nextPage - номер следующей страницы (null, если её нет)
+public class UserDirectoryPage {
+
+    private final List<UserSummary> users;
+    private final Integer nextPage;
+
+    public UserDirectoryPage(List<UserSummary> users, Integer nextPage) {
+        this.users = users;
+        this.nextPage = nextPage;
+    }
+
+    public List<UserSummary> getUsers() {
+        return users;
+    }
+
+    public Integer getNextPage() {
+        return nextPage;
+    }
+}
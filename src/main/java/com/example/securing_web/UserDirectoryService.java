@@ -0,0 +1,148 @@
+package com.example.securing_web;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Справочник пользователей для /contact: страницы проекции UserSummary вместо findAll() по всей таблице.
+// Первые cached-pages страниц без поиска кэшируются на cache-ttl-ms и при регистрации не сбрасываются:
+// новый пользователь появится в списке не позже чем через TTL, зато цена /contact не растёт с числом пользователей
+@Service
+public class UserDirectoryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserDirectoryService.class);
+
+    // На PostgreSQL с локалью, отличной от C, уникальный индекс username не годится для LIKE 'префикс%'
+    private static final String CREATE_PREFIX_INDEX =
+            "CREATE INDEX IF NOT EXISTS idx_users_username_prefix ON users (username varchar_pattern_ops)";
+
+    // параметр sort -> поле User; остальные значения не принимаются, чтобы не сортировать по чему угодно
+    private static final Map<String, String> SORTS = Map.of(
+            "username", "username",
+            "name", "fullName",
+            "id", "id");
+
+    public static final String DEFAULT_SORT = "username";
+
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final int pageSize;
+    private final int cachedPages;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+
+    private final Map<CacheKey, CachedPage> cache = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @Autowired
+    public UserDirectoryService(UserRepository userRepository,
+                                JdbcTemplate jdbcTemplate,
+                                @Value("${forum.users.page-size:50}") int pageSize,
+                                @Value("${forum.users.cached-pages:3}") int cachedPages,
+                                @Value("${forum.users.cache-ttl-ms:10000}") long ttlMillis) {
+        this(userRepository, jdbcTemplate, pageSize, cachedPages, TimeUnit.MILLISECONDS.toNanos(ttlMillis), System::nanoTime);
+    }
+
+    UserDirectoryService(UserRepository userRepository, JdbcTemplate jdbcTemplate, int pageSize,
+                         int cachedPages, long ttlNanos, LongSupplier clock) {
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.pageSize = pageSize;
+        this.cachedPages = cachedPages;
+        this.ttlNanos = ttlNanos;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    public void createPrefixIndex() {
+        try {
+            String database = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            if ("PostgreSQL".equals(database)) {
+                jdbcTemplate.execute(CREATE_PREFIX_INDEX);
+            }
+        } catch (DataAccessException e) {
+            // без индекса поиск работает, только медленнее
+            logger.warn("Не удалось создать индекс для поиска по началу имени: {}", e.toString());
+        }
+    }
+
+    // query - начало логина (пусто - все), sort - username|name|id, page с нуля
+    public UserDirectoryPage findPage(String query, String sort, boolean descending, int page) {
+        String prefix = query == null ? "" : query.trim();
+        String sortKey = SORTS.containsKey(sort) ? sort : DEFAULT_SORT;
+        int pageNumber = Math.max(0, page);
+        if (!prefix.isEmpty() || pageNumber >= cachedPages) {
+            return load(prefix, sortKey, descending, pageNumber);
+        }
+
+        CacheKey key = new CacheKey(sortKey, descending, pageNumber);
+        long now = clock.getAsLong();
+        CachedPage cached = cache.get(key);
+        if (cached != null && now - cached.expiresAt < 0) {
+            hits.increment();
+            return cached.page;
+        }
+        misses.increment();
+        UserDirectoryPage loaded = load(prefix, sortKey, descending, pageNumber);
+        cache.put(key, new CachedPage(loaded, now + ttlNanos));
+        return loaded;
+    }
+
+    private UserDirectoryPage load(String prefix, String sortKey, boolean descending, int page) {
+        Sort.Direction direction = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+        // id вторым ключом: у одинаковых full_name порядок между страницами не должен меняться
+        Sort order = Sort.by(direction, SORTS.get(sortKey));
+        if (!"id".equals(sortKey)) {
+            order = order.and(Sort.by(direction, "id"));
+        }
+        PageRequest request = PageRequest.of(page, pageSize, order);
+        Slice<UserSummary> slice = prefix.isEmpty()
+                ? userRepository.findDirectory(request)
+                : userRepository.findDirectoryByPrefix(escapeLike(prefix) + "%", request);
+        return new UserDirectoryPage(slice.getContent(), slice.hasNext() ? page + 1 : null);
+    }
+
+    static String escapeLike(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 4);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '%' || c == '_') {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    public long getCacheHits() {
+        return hits.sum();
+    }
+
+    public long getCacheMisses() {
+        return misses.sum();
+    }
+
+    private record CacheKey(String sort, boolean descending, int page) {
+    }
+
+    private record CachedPage(UserDirectoryPage page, long expiresAt) {
+    }
+}
@@ -2,11 +2,32 @@ package com.example.securing_web;
 
 
 import com.example.securing_web.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
+
+    @Transactional(readOnly = true)
+    @Query("select u.id from User u where u.username = :username")
+    Optional<Long> findIdByUsername(@Param("username") String username);
+
+    // Справочник: только id, username, full_name; порядок задаёт Pageable.
+    // Slice вместо Page: читается size + 1 строка, чтобы узнать о следующей странице, без select count(*)
+    @Transactional(readOnly = true)
+    @Query("select new com.example.securing_web.UserSummary(u.id, u.username, u.fullName) from User u")
+    Slice<UserSummary> findDirectory(Pageable pageable);
+
+    // Префикс уже экранирован и оканчивается на %: LIKE 'abc%' идёт по индексу username
+    @Transactional(readOnly = true)
+    @Query("select new com.example.securing_web.UserSummary(u.id, u.username, u.fullName) from User u " +
+            "where u.username like :prefix escape '\\'")
+    Slice<UserSummary> findDirectoryByPrefix(@Param("prefix") String prefix, Pageable pageable);
 }
\ No newline at end of file
@@ -2,20 +2,27 @@ package com.example.securing_web;
 
 import com.example.securing_web.User;
 import com.example.securing_web.UserRepository;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 @Service
 public class UserService {
 
     private final UserRepository userRepository;
 
-    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    private final PasswordHashingService passwordEncoder;
 
-    public UserService(UserRepository userRepository) {
+    private final UserDetailsCache userCache;
+
+    private final LongAdder registrations = new LongAdder();
+    private final LongAdder registerHashNanos = new LongAdder();
+
+    public UserService(UserRepository userRepository, PasswordHashingService passwordEncoder,
+                       UserDetailsCache userCache) {
         this.userRepository = userRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.userCache = userCache;
     }
 
     public boolean register(String username, String password) {
@@ -24,13 +31,21 @@ public class UserService {
         }
         User user = new User();
         user.setUsername(username);
+        long started = System.nanoTime();
         user.setPassword(passwordEncoder.encode(password));
+        registerHashNanos.add(System.nanoTime() - started);
+        registrations.increment();
         userRepository.save(user);
+        userCache.removeUserFromCache(username);
         return true;
     }
 
-    // Добавляем метод для получения всех пользователей
-    public List<User> findAllUsers() {
-        return userRepository.findAll();
+    public long getRegistrations() {
+        return registrations.sum();
+    }
+
+    // Время BCrypt при регистрации, включая ожидание в очереди пула хэширования
+    public long getRegisterHashNanos() {
+        return registerHashNanos.sum();
     }
 }
\ No newline at end of file
@@ -0,0 +1,32 @@
+package com.example.securing_web;
+
+// Строка справочника пользователей (/contact): без хэша пароля и прочих полей User
+public class UserSummary {
+
+    private final Long id;
+    private final String username;
+    private final String fullName;
+
+    // Для JPQL-проекции
+    public UserSummary(Long id, String username, String fullName) {
+        this.id = id;
+        this.username = username;
+        this.fullName = fullName;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getFullName() {
+        return fullName;
+    }
+
+    public String getDisplayName() {
+        return fullName != null && !fullName.isEmpty() ? fullName : username;
+    }
+}
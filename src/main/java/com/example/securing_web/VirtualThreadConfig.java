@@ -0,0 +1,92 @@
+package com.example.securing_web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Режим виртуальных потоков (forum.threads.virtual=true, нужен Java 21+): запросы Tomcat и
+// асинхронные задачи выполняются на виртуальных потоках. Executors.newVirtualThreadPerTaskExecutor
+// вызывается через reflection, чтобы сборка под Java 17 продолжала компилироваться.
+@Configuration
+@ConditionalOnProperty(name = "forum.threads.virtual", havingValue = "true")
+public class VirtualThreadConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    // В драйвере PostgreSQL до 42.6.0 ввод-вывод шёл внутри synchronized и закреплял виртуальный поток
+    private static final int[] MIN_PINNING_FREE_DRIVER = {42, 6, 0};
+
+    private final ExecutorService virtualThreads = newVirtualThreadPerTaskExecutor();
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreads);
+    }
+
+    @Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(virtualThreads);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reportPinningRisks(ApplicationReadyEvent event) {
+        logger.info("Виртуальные потоки включены (Java {}); пул JDBC: {} соединений",
+                Runtime.version(), event.getApplicationContext().getEnvironment()
+                        .getProperty("spring.datasource.hikari.maximum-pool-size", "10"));
+
+        if (System.getProperty("jdk.tracePinnedThreads") == null) {
+            logger.info("Для отчёта о закреплении потоков запустите JVM с -Djdk.tracePinnedThreads=short");
+        }
+
+        DataSource dataSource = event.getApplicationContext().getBean(DataSource.class);
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String driver = metaData.getDriverName() + " " + metaData.getDriverVersion();
+            if (metaData.getDriverName().contains("PostgreSQL") && isOlder(metaData.getDriverVersion())) {
+                logger.warn("JDBC-драйвер {} выполняет ввод-вывод внутри synchronized: "
+                        + "каждый запрос к БД закрепляет виртуальный поток. Обновите драйвер до 42.6.0+", driver);
+            } else {
+                logger.info("JDBC-драйвер: {}", driver);
+            }
+        } catch (SQLException e) {
+            logger.warn("Не удалось проверить JDBC-драйвер на закрепление потоков", e);
+        }
+    }
+
+    static boolean isOlder(String version) {
+        String[] parts = version.split("[^0-9]+");
+        for (int i = 0; i < MIN_PINNING_FREE_DRIVER.length; i++) {
+            int part = i < parts.length && !parts[i].isEmpty() ? Integer.parseInt(parts[i]) : 0;
+            if (part != MIN_PINNING_FREE_DRIVER[i]) {
+                return part < MIN_PINNING_FREE_DRIVER[i];
+            }
+        }
+        return false;
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("forum.threads.virtual=true требует Java 21 или новее, запущено на "
+                    + Runtime.version(), e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Не удалось создать executor виртуальных потоков", e);
+        }
+    }
+}
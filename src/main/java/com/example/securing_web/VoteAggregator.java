@@ -0,0 +1,318 @@
+package com.example.securing_web;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Накопитель голосов: приращения лайков/дизлайков копятся в LongAdder по каждому посту
+// и периодически сбрасываются в БД пачкой атомарных UPDATE ... SET likes = likes + ?.
+// Запись голоса не берёт блокировок, поэтому горячий пост не упирается в одну строку таблицы.
+// Приращения, не дожившие до flush'а (процесс упал), восстанавливает сверка с post_vote - см. reconcile.
+@Component
+public class VoteAggregator {
+
+    private static final Logger logger = LoggerFactory.getLogger(VoteAggregator.class);
+
+    static final String FLUSH_SQL = "UPDATE post SET likes = likes + ?, dislikes = dislikes + ? WHERE id = ?";
+    static final String SUMMARY_FLUSH_SQL =
+            "UPDATE post_summary SET likes = likes + ?, dislikes = dislikes + ? WHERE post_id = ?";
+    private static final String RECONCILE_SQL = "UPDATE post SET likes = ?, dislikes = ? WHERE id = ?";
+    private static final String SUMMARY_RECONCILE_SQL =
+            "UPDATE post_summary SET likes = ?, dislikes = ? WHERE post_id = ?";
+    private static final String COUNT_VOTES_SQL = "SELECT post_id, vote_type, count(*) FROM post_vote "
+            + "WHERE post_id BETWEEN ? AND ? GROUP BY post_id, vote_type";
+
+    private static final long[] NO_VOTES = new long[2];
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final PostFragmentCache postFragmentCache;
+
+    private final FeedEventBroadcaster feedEventBroadcaster;
+
+    private final Map<Long, Counter> pending = new ConcurrentHashMap<>();
+
+    // Простаивавшие счётчики, убранные из pending прошлым flush'ем: сумма перечитывается уже после
+    // удаления, и в ней есть голос, записанный потоком, взявшим счётчик до удаления. Только под flushLock
+    private final List<Counter> retired = new ArrayList<>();
+
+    // Счётчики, в которые голос попал, когда их уже не было в pending (см. record)
+    private final Queue<Counter> detached = new ConcurrentLinkedQueue<>();
+
+    // ReentrantLock, а не synchronized: flush ходит в БД и не должен закреплять виртуальный поток за носителем
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final boolean reconcileOnStartup;
+
+    private final AtomicBoolean reconciling = new AtomicBoolean();
+
+    public VoteAggregator(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                          PostFragmentCache postFragmentCache, FeedEventBroadcaster feedEventBroadcaster,
+                          @Value("${forum.votes.reconcile-on-startup:true}") boolean reconcileOnStartup) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.postFragmentCache = postFragmentCache;
+        this.feedEventBroadcaster = feedEventBroadcaster;
+        this.reconcileOnStartup = reconcileOnStartup;
+    }
+
+    public void record(Long postId, VoteType type) {
+        Counter counter = pending.get(postId);
+        if (counter == null) {
+            counter = pending.computeIfAbsent(postId, Counter::new);
+        }
+        counter.add(type, 1);
+        // счётчик успели убрать как простаивающий, а голос мог лечь уже после его перечитывания -
+        // отдаём счётчик flush'у отдельно. Обычный путь - одно чтение карты, без CAS на общем счётчике
+        if (pending.get(postId) != counter) {
+            detached.add(counter);
+        }
+    }
+
+    // Ещё не сброшенные в БД приращения (для отображения и тестов)
+    public long pendingLikes(Long postId) {
+        Counter counter = pending.get(postId);
+        return counter == null ? 0 : counter.likes.sum();
+    }
+
+    public long pendingDislikes(Long postId) {
+        Counter counter = pending.get(postId);
+        return counter == null ? 0 : counter.dislikes.sum();
+    }
+
+    @Scheduled(fixedDelayString = "${forum.votes.flush-interval-ms:1000}")
+    public int flush() {
+        flushLock.lock();
+        try {
+            return flushLocked();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private int flushLocked() {
+        List<Object[]> batch = new ArrayList<>();
+        List<Counter> counters = new ArrayList<>();
+        List<long[]> deltas = new ArrayList<>();
+        int flushed = 0;
+
+        Set<Counter> draining = Collections.newSetFromMap(new IdentityHashMap<>());
+        draining.addAll(retired);
+        retired.clear();
+        for (Counter counter = detached.poll(); counter != null; counter = detached.poll()) {
+            draining.add(counter);
+        }
+
+        for (Counter counter : pending.values()) {
+            long likes = counter.likes.sum();
+            long dislikes = counter.dislikes.sum();
+            if (likes == 0 && dislikes == 0) {
+                if (pending.remove(counter.postId, counter)) {
+                    retired.add(counter);
+                }
+                continue;
+            }
+            flushed += add(batch, counters, deltas, counter, likes, dislikes);
+        }
+        for (Counter counter : draining) {
+            long likes = counter.likes.sum();
+            long dislikes = counter.dislikes.sum();
+            if (likes == 0 && dislikes == 0) {
+                continue;
+            }
+            // остаётся ещё на цикл: при ошибке записи приращения не потеряются
+            retired.add(counter);
+            flushed += add(batch, counters, deltas, counter, likes, dislikes);
+        }
+        if (!batch.isEmpty()) {
+            flushed += write(batch, counters, deltas);
+        }
+        return flushed;
+    }
+
+    private int add(List<Object[]> batch, List<Counter> counters, List<long[]> deltas, Counter counter,
+                    long likes, long dislikes) {
+        batch.add(new Object[]{likes, dislikes, counter.postId});
+        counters.add(counter);
+        deltas.add(new long[]{likes, dislikes});
+        return batch.size() == BATCH_SIZE ? write(batch, counters, deltas) : 0;
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    // После падения в post.likes / post.dislikes нет приращений, не успевших уйти flush'ем
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        if (reconcileOnStartup) {
+            Thread thread = new Thread(this::reconcile, "vote-reconcile");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    // Сверка счётчиков постов с post_vote кусками по id, каждый кусок под flushLock (flush на это время
+    // ждёт). Ожидаемое значение - count(*) по post_vote минус приращения, ещё не сброшенные в БД.
+    // Пост, за который проголосовали во время чтения куска, пропускается до следующей сверки.
+    // Голос, уже вставленный, но ещё не попавший в счётчик, может сдвинуть результат на единицу -
+    // это исправит следующая сверка. Возвращает число исправленных постов
+    @Scheduled(cron = "${forum.votes.reconcile-cron:0 45 4 * * *}")
+    public int reconcile() {
+        if (!reconciling.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            int fixed = 0;
+            long after = 0;
+            while (true) {
+                List<Long> ids = jdbcTemplate.queryForList(
+                        "SELECT id FROM post WHERE id > ? ORDER BY id LIMIT ?", Long.class, after, BATCH_SIZE);
+                if (ids.isEmpty()) {
+                    break;
+                }
+                long from = ids.get(0);
+                long to = ids.get(ids.size() - 1);
+                flushLock.lock();
+                try {
+                    fixed += reconcileRange(from, to);
+                } finally {
+                    flushLock.unlock();
+                }
+                after = to;
+            }
+            if (fixed > 0) {
+                logger.info("Сверка голосов с post_vote: исправлено постов {}", fixed);
+            }
+            return fixed;
+        } finally {
+            reconciling.set(false);
+        }
+    }
+
+    private int reconcileRange(long from, long to) {
+        Map<Long, long[]> unflushed = unflushed(from, to);
+        Map<Long, long[]> stored = new HashMap<>();
+        jdbcTemplate.query("SELECT id, likes, dislikes FROM post WHERE id BETWEEN ? AND ?", rs -> {
+            stored.put(rs.getLong(1), new long[]{rs.getLong(2), rs.getLong(3)});
+        }, from, to);
+        Map<Long, long[]> counted = new HashMap<>();
+        jdbcTemplate.query(COUNT_VOTES_SQL, rs -> {
+            long[] votes = counted.computeIfAbsent(rs.getLong(1), id -> new long[2]);
+            votes[VoteType.valueOf(rs.getString(2)) == VoteType.LIKE ? 0 : 1] = rs.getLong(3);
+        }, from, to);
+        Map<Long, long[]> unflushedAfter = unflushed(from, to);
+
+        List<Object[]> updates = new ArrayList<>();
+        for (Map.Entry<Long, long[]> entry : stored.entrySet()) {
+            Long postId = entry.getKey();
+            long[] pendingVotes = unflushed.getOrDefault(postId, NO_VOTES);
+            if (!Arrays.equals(pendingVotes, unflushedAfter.getOrDefault(postId, NO_VOTES))) {
+                continue;
+            }
+            long[] votes = counted.getOrDefault(postId, NO_VOTES);
+            long likes = votes[0] - pendingVotes[0];
+            long dislikes = votes[1] - pendingVotes[1];
+            if (likes != entry.getValue()[0] || dislikes != entry.getValue()[1]) {
+                updates.add(new Object[]{likes, dislikes, postId});
+            }
+        }
+        if (updates.isEmpty()) {
+            return 0;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(RECONCILE_SQL, updates);
+            jdbcTemplate.batchUpdate(SUMMARY_RECONCILE_SQL, updates);
+        });
+        for (Object[] update : updates) {
+            postFragmentCache.invalidate((Long) update[2]);
+        }
+        return updates.size();
+    }
+
+    // Несброшенные приращения постов из [from, to] по всем счётчикам, включая убранные из pending
+    private Map<Long, long[]> unflushed(long from, long to) {
+        Set<Counter> counters = Collections.newSetFromMap(new IdentityHashMap<>());
+        counters.addAll(pending.values());
+        counters.addAll(retired);
+        counters.addAll(detached);
+        Map<Long, long[]> result = new HashMap<>();
+        for (Counter counter : counters) {
+            if (counter.postId >= from && counter.postId <= to) {
+                long[] votes = result.computeIfAbsent(counter.postId, id -> new long[2]);
+                votes[0] += counter.likes.sum();
+                votes[1] += counter.dislikes.sum();
+            }
+        }
+        return result;
+    }
+
+    // Вычитаем ровно то, что записали: голоса, пришедшие во время записи, уйдут следующим flush'ем.
+    // При ошибке БД ничего не вычитается, и приращения будут записаны повторно.
+    private int write(List<Object[]> batch, List<Counter> counters, List<long[]> deltas) {
+        int size = batch.size();
+        try {
+            // post и post_summary - одной транзакцией, иначе при повторе после сбоя сводка получила бы голоса дважды
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(FLUSH_SQL, batch);
+                jdbcTemplate.batchUpdate(SUMMARY_FLUSH_SQL, batch);
+            });
+            for (int i = 0; i < size; i++) {
+                counters.get(i).likes.add(-deltas.get(i)[0]);
+                counters.get(i).dislikes.add(-deltas.get(i)[1]);
+                postFragmentCache.invalidate((Long) batch.get(i)[2]);
+                // приращения за интервал flush'а - одно событие на пост, а не на голос
+                feedEventBroadcaster.publishVotes((Long) batch.get(i)[2], deltas.get(i)[0], deltas.get(i)[1]);
+            }
+            return size;
+        } catch (RuntimeException e) {
+            logger.warn("Не удалось сбросить голоса ({} постов), повторим позже", size, e);
+            return 0;
+        } finally {
+            batch.clear();
+            counters.clear();
+            deltas.clear();
+        }
+    }
+
+    private static final class Counter {
+        final Long postId;
+        final LongAdder likes = new LongAdder();
+        final LongAdder dislikes = new LongAdder();
+
+        Counter(Long postId) {
+            this.postId = postId;
+        }
+
+        void add(VoteType type, long delta) {
+            (type == VoteType.LIKE ? likes : dislikes).add(delta);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.securing_web;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Сжатое множество неотрицательных int по схеме Roaring: число делится на старшие 16 бит (ключ контейнера)
+// и младшие 16 бит (значение в контейнере). Контейнер до 4096 значений - отсортированный char[] (2 байта
+// на значение, в [0] - число значений, чтобы не держать отдельный объект на каждый из миллионов мелких
+// контейнеров), больше - битовая карта на 65536 бит (8 КБ), что при такой плотности уже не хуже массива.
+// Голоса поста - это немного id из большого диапазона, так что обычно это один-два контейнера-массива.
+// Не потокобезопасно: синхронизирует VoteLedger
+final class VoteBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1 << 10;
+
+    private char[] keys = new char[0];
+    private Object[] containers = new Object[0];
+    private int size;
+    private int cardinality;
+
+    // true, если значения ещё не было
+    boolean add(int value) {
+        checkValue(value);
+        char key = (char) (value >>> 16);
+        char low = (char) value;
+        int index = Arrays.binarySearch(keys, 0, size, key);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, key, new char[]{1, low});
+            cardinality++;
+            return true;
+        }
+        Object container = containers[index];
+        if (container instanceof long[] words) {
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) != 0) {
+                return false;
+            }
+            words[low >>> 6] |= bit;
+        } else {
+            char[] values = (char[]) container;
+            int position = Arrays.binarySearch(values, 1, values[0] + 1, low);
+            if (position >= 0) {
+                return false;
+            }
+            containers[index] = values[0] == ARRAY_MAX ? toBitmap(values, low) : insert(values, -position - 1, low);
+        }
+        cardinality++;
+        return true;
+    }
+
+    boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int index = Arrays.binarySearch(keys, 0, size, (char) (value >>> 16));
+        if (index < 0) {
+            return false;
+        }
+        char low = (char) value;
+        Object container = containers[index];
+        if (container instanceof long[] words) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+        char[] values = (char[]) container;
+        return Arrays.binarySearch(values, 1, values[0] + 1, low) >= 0;
+    }
+
+    int cardinality() {
+        return cardinality;
+    }
+
+    // Оценка занимаемой памяти: массивы контейнеров с заголовками, без учёта выравнивания
+    long sizeInBytes() {
+        long bytes = 16 + 16 + keys.length * 2L + 16 + containers.length * 4L;
+        for (int i = 0; i < size; i++) {
+            bytes += containers[i] instanceof char[] values ? 16 + values.length * 2L : 16 + BITMAP_WORDS * 8L;
+        }
+        return bytes;
+    }
+
+    // Независимая копия: контейнеры меняются на месте, поэтому копируются и они
+    VoteBitmap copy() {
+        VoteBitmap copy = new VoteBitmap();
+        copy.keys = Arrays.copyOf(keys, size);
+        copy.containers = new Object[size];
+        for (int i = 0; i < size; i++) {
+            copy.containers[i] = containers[i] instanceof long[] words ? words.clone() : ((char[]) containers[i]).clone();
+        }
+        copy.size = size;
+        copy.cardinality = cardinality;
+        return copy;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeChar(keys[i]);
+            if (containers[i] instanceof long[] words) {
+                out.writeInt(-1);
+                for (long word : words) {
+                    out.writeLong(word);
+                }
+            } else {
+                char[] values = (char[]) containers[i];
+                out.writeInt(values[0]);
+                for (int j = 1; j <= values[0]; j++) {
+                    out.writeChar(values[j]);
+                }
+            }
+        }
+    }
+
+    static VoteBitmap readFrom(DataInput in) throws IOException {
+        VoteBitmap bitmap = new VoteBitmap();
+        int size = in.readInt();
+        bitmap.keys = new char[size];
+        bitmap.containers = new Object[size];
+        for (int i = 0; i < size; i++) {
+            bitmap.keys[i] = in.readChar();
+            int length = in.readInt();
+            if (length < 0) {
+                long[] words = new long[BITMAP_WORDS];
+                for (int j = 0; j < BITMAP_WORDS; j++) {
+                    words[j] = in.readLong();
+                    bitmap.cardinality += Long.bitCount(words[j]);
+                }
+                bitmap.containers[i] = words;
+            } else {
+                char[] values = new char[length + 1];
+                values[0] = (char) length;
+                for (int j = 1; j <= length; j++) {
+                    values[j] = in.readChar();
+                }
+                bitmap.containers[i] = values;
+                bitmap.cardinality += length;
+            }
+        }
+        bitmap.size = size;
+        return bitmap;
+    }
+
+    private void insertContainer(int index, char key, Object container) {
+        if (size == keys.length) {
+            int capacity = Math.max(1, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    // position - индекс в массиве (значения с [1]); массив растёт в 1.5 раза
+    private static char[] insert(char[] values, int position, char low) {
+        int length = values[0];
+        char[] target = values;
+        if (length + 1 == values.length) {
+            target = Arrays.copyOf(values, Math.min(ARRAY_MAX + 1, Math.max(4, length + 1 + (length >> 1))));
+        }
+        System.arraycopy(values, position, target, position + 1, length + 1 - position);
+        target[position] = low;
+        target[0] = (char) (length + 1);
+        return target;
+    }
+
+    private static long[] toBitmap(char[] values, char low) {
+        long[] words = new long[BITMAP_WORDS];
+        for (int i = 1; i <= values[0]; i++) {
+            words[values[i] >>> 6] |= 1L << values[i];
+        }
+        words[low >>> 6] |= 1L << low;
+        return words;
+    }
+
+    private static void checkValue(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Отрицательный id в битовой карте: " + value);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.example.securing_web;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+// Компактный режим хранения голосов (forum.votes.storage=compact): строка post_vote хранит числовой user_id
+// без username, а для каждого поста в памяти лежат две битовые карты id пользователей (VoteBitmap) -
+// лайкнувшие и дизлайкнувшие. "Голосовал ли уже" проверяется по ним без запроса к БД, в том числе для постов
+// и пользователей, которых нет ни в каком кэше. Уникальный индекс (user_id, post_id) остаётся последней защитой.
+// Для быстрого старта карты периодически сохраняются в файл вместе с максимальным id голоса на момент снимка;
+// при запуске читается снимок и догружаются только голоса с большим id
+@Component
+public class VoteLedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(VoteLedger.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x564C4731;
+    private static final int REPLAY_PAGE = 10_000;
+
+    // rows-режим голосует по username: в догрузку берём id по таблице users
+    private static final String REPLAY_SQL = "SELECT v.id, COALESCE(v.user_id, u.id), v.post_id, v.vote_type "
+            + "FROM post_vote v LEFT JOIN users u ON u.username = v.username "
+            + "WHERE v.id > ? ORDER BY v.id LIMIT " + REPLAY_PAGE;
+
+    // Голоса одного поста. Горячий пост проверяют и голосуют из многих потоков сразу: проверки идут
+    // параллельно под блокировкой чтения. StampedLock, а не synchronized: запросы могут идти из виртуальных
+    // потоков, а блокировка - один небольшой объект на пост
+    private static final class PostVotes {
+        final VoteBitmap likes;
+        final VoteBitmap dislikes;
+        final StampedLock lock = new StampedLock();
+
+        PostVotes() {
+            this(new VoteBitmap(), new VoteBitmap());
+        }
+
+        PostVotes(VoteBitmap likes, VoteBitmap dislikes) {
+            this.likes = likes;
+            this.dislikes = dislikes;
+        }
+
+        boolean contains(int userId) {
+            long stamp = lock.readLock();
+            try {
+                return likes.contains(userId) || dislikes.contains(userId);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        void add(int userId, VoteType type) {
+            long stamp = lock.writeLock();
+            try {
+                (type == VoteType.LIKE ? likes : dislikes).add(userId);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        long sizeInBytes() {
+            long stamp = lock.readLock();
+            try {
+                return 16 + 32 + likes.sizeInBytes() + dislikes.sizeInBytes();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        // Для снимка: файл пишется из копии, уже без блокировки
+        PostVotes copy() {
+            long stamp = lock.readLock();
+            try {
+                return new PostVotes(likes.copy(), dislikes.copy());
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            likes.writeTo(out);
+            dislikes.writeTo(out);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserRepository userRepository;
+    private final boolean enabled;
+    private final Path snapshotPath;
+    private final LongSupplier clock;
+
+    private final Map<Long, PostVotes> posts = new ConcurrentHashMap<>();
+    // username не меняется и не переиспользуется, так что id из кэша не устаревает
+    private final TinyLfuCache<String, Long> userIds;
+
+    // голос (вставка + запись в карту) - read, фиксация id для снимка - write: в этот момент
+    // все вставленные голоса уже есть в картах, а новые получат id больше зафиксированного
+    private final ReentrantReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+    private volatile long snapshotVoteId;
+
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder snapshots = new LongAdder();
+    private volatile long snapshotNanos;
+
+    @Autowired
+    public VoteLedger(JdbcTemplate jdbcTemplate,
+                      UserRepository userRepository,
+                      @Value("${forum.votes.storage:rows}") String storage,
+                      @Value("${forum.votes.snapshot-path:}") String snapshotPath,
+                      @Value("${forum.votes.max-cached-users:100000}") int maxCachedUsers) {
+        this(jdbcTemplate, userRepository, "compact".equals(storage),
+                snapshotPath.isBlank() ? null : Path.of(snapshotPath), maxCachedUsers, System::nanoTime);
+    }
+
+    VoteLedger(JdbcTemplate jdbcTemplate, UserRepository userRepository, boolean enabled, Path snapshotPath,
+               int maxCachedUsers, LongSupplier clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userRepository = userRepository;
+        this.enabled = enabled;
+        this.snapshotPath = snapshotPath;
+        this.clock = clock;
+        this.userIds = new TinyLfuCache<>(maxCachedUsers);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long userId(String username) {
+        Long id = userIds.get(username, name -> userRepository.findIdByUsername(name).orElse(null));
+        if (id == null) {
+            throw new IllegalArgumentException("Пользователь " + username + " не найден");
+        }
+        return id;
+    }
+
+    public boolean hasVoted(Long postId, long userId) {
+        PostVotes votes = posts.get(postId);
+        if (votes != null && votes.contains(toInt(userId))) {
+            deduplicated.increment();
+            return true;
+        }
+        return false;
+    }
+
+    // insert пишет голос в БД и возвращает true, если строка вставлена; тогда голос попадает и в карту
+    public boolean record(Long postId, long userId, VoteType type, BooleanSupplier insert) {
+        int id = toInt(userId);
+        snapshotLock.readLock().lock();
+        try {
+            if (!insert.getAsBoolean()) {
+                return false;
+            }
+            posts.computeIfAbsent(postId, key -> new PostVotes()).add(id, type);
+            recorded.increment();
+            return true;
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    // После коммита удаления поста (голоса всё равно удалит PostPurgeJob)
+    public void remove(Long postId) {
+        posts.remove(postId);
+    }
+
+    @PostConstruct
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        long started = clock.getAsLong();
+        long after = readSnapshot();
+        long replayed = 0;
+        List<Object[]> rows;
+        do {
+            rows = jdbcTemplate.query(REPLAY_SQL, (rs, n) -> new Object[]{
+                    rs.getLong(1), rs.getObject(2), rs.getLong(3), rs.getString(4)}, after);
+            for (Object[] row : rows) {
+                after = (Long) row[0];
+                // голос пользователя, которого уже нет в users, не повторится
+                if (row[1] != null) {
+                    posts.computeIfAbsent((Long) row[2], key -> new PostVotes())
+                            .add(toInt(((Number) row[1]).longValue()), VoteType.valueOf((String) row[3]));
+                    replayed++;
+                }
+            }
+        } while (rows.size() == REPLAY_PAGE);
+        logger.info("Голоса загружены: {} постов, {} голосов догружено из БД, {} байт, {} мс", posts.size(),
+                replayed, getSizeInBytes(), TimeUnit.NANOSECONDS.toMillis(clock.getAsLong() - started));
+    }
+
+    // Снимок пишется во временный файл и заменяет старый одним переименованием
+    @Scheduled(fixedDelayString = "${forum.votes.snapshot-ms:300000}")
+    @PreDestroy
+    public void snapshot() {
+        if (!enabled || snapshotPath == null) {
+            return;
+        }
+        long started = clock.getAsLong();
+        long markVoteId;
+        snapshotLock.writeLock().lock();
+        try {
+            markVoteId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM post_vote", Long.class);
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+        // голоса после отметки тоже могут попасть в снимок - при догрузке они добавятся повторно, это безвредно
+        List<Map.Entry<Long, PostVotes>> entries = new ArrayList<>(posts.entrySet());
+        try {
+            Path parent = snapshotPath.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, snapshotPath.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeLong(markVoteId);
+                out.writeInt(entries.size());
+                for (Map.Entry<Long, PostVotes> entry : entries) {
+                    out.writeLong(entry.getKey());
+                    entry.getValue().copy().writeTo(out);
+                }
+            }
+            Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось сохранить снимок голосов в " + snapshotPath, e);
+        }
+        snapshotVoteId = markVoteId;
+        snapshots.increment();
+        snapshotNanos = clock.getAsLong() - started;
+    }
+
+    // Возвращает id голоса, с которого продолжать догрузку; без снимка или с повреждённым - с начала
+    private long readSnapshot() {
+        if (snapshotPath == null || !Files.exists(snapshotPath)) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("неизвестный формат");
+            }
+            long markVoteId = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long postId = in.readLong();
+                posts.put(postId, new PostVotes(VoteBitmap.readFrom(in), VoteBitmap.readFrom(in)));
+            }
+            snapshotVoteId = markVoteId;
+            return markVoteId;
+        } catch (IOException e) {
+            logger.warn("Снимок голосов {} не прочитан, загружаем из БД целиком", snapshotPath, e);
+            posts.clear();
+            return 0;
+        }
+    }
+
+    private static int toInt(long userId) {
+        if (userId < 0 || userId > Integer.MAX_VALUE) {
+            throw new IllegalStateException("id пользователя вне диапазона битовой карты: " + userId);
+        }
+        return (int) userId;
+    }
+
+    public int getPostCount() {
+        return posts.size();
+    }
+
+    public long getSizeInBytes() {
+        long bytes = 0;
+        for (PostVotes votes : posts.values()) {
+            // ключ Long и узел ConcurrentHashMap
+            bytes += 16 + 32 + votes.sizeInBytes();
+        }
+        return bytes;
+    }
+
+    public long getDeduplicated() {
+        return deduplicated.sum();
+    }
+
+    public long getRecorded() {
+        return recorded.sum();
+    }
+
+    public long getSnapshots() {
+        return snapshots.sum();
+    }
+
+    public long getSnapshotNanos() {
+        return snapshotNanos;
+    }
+
+    // Максимальный id голоса в последнем сохранённом или прочитанном снимке
+    public long getSnapshotVoteId() {
+        return snapshotVoteId;
+    }
+}
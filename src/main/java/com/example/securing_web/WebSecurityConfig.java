@@ -1,14 +1,30 @@
 package com.example.securing_web;
 
 import com.example.securing_web.CustomUserDetailsService;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.actuate.metrics.export.prometheus.PrometheusScrapeEndpoint;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseCookie;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.AuthenticationFailureHandler;
+import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationSuccessHandler;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+import org.springframework.security.web.savedrequest.NullRequestCache;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 
 @Configuration
@@ -16,22 +32,60 @@ public class WebSecurityConfig {
 
     private final CustomUserDetailsService userDetailsService;
 
-    public WebSecurityConfig(CustomUserDetailsService userDetailsService){
+    private final PasswordHashingService passwordHashingService;
+
+    private final RateLimiter rateLimiter;
+
+    private final SignedTokenService tokenService;
+
+    private final TokenRevocationList revocationList;
+
+    // session - контекст безопасности в HttpSession; token - в подписанной cookie, без сессии
+    private final boolean tokenMode;
+
+    private final String tokenCookie;
+
+    private final boolean secureCookie;
+
+    public WebSecurityConfig(CustomUserDetailsService userDetailsService,
+                             PasswordHashingService passwordHashingService,
+                             RateLimiter rateLimiter,
+                             SignedTokenService tokenService,
+                             TokenRevocationList revocationList,
+                             @Value("${forum.auth.mode:session}") String authMode,
+                             @Value("${forum.auth.token.cookie:FORUM_TOKEN}") String tokenCookie,
+                             @Value("${forum.auth.token.secure-cookie:true}") boolean secureCookie){
         this.userDetailsService = userDetailsService;
+        this.passwordHashingService = passwordHashingService;
+        this.rateLimiter = rateLimiter;
+        this.tokenService = tokenService;
+        this.revocationList = revocationList;
+        this.tokenMode = switch (authMode) {
+            case "session" -> false;
+            case "token" -> true;
+            default -> throw new IllegalArgumentException("Неизвестный forum.auth.mode: " + authMode);
+        };
+        this.tokenCookie = tokenCookie;
+        this.secureCookie = secureCookie;
     }
 
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         http
                 .csrf().disable()
+                .addFilterBefore(new RateLimitFilter(rateLimiter), UsernamePasswordAuthenticationFilter.class)
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/register", "/login", "/css/**").permitAll()
+                        // health и prometheus доступны без входа; actuator слушает отдельный порт,
+                        // закрытый снаружи (management.server.port)
+                        .requestMatchers(EndpointRequest.to(HealthEndpoint.class, PrometheusScrapeEndpoint.class)).permitAll()
                         .anyRequest().authenticated()
                 )
                 .formLogin(form -> form
                         .loginPage("/login")
                         .loginProcessingUrl("/login")
                         .defaultSuccessUrl("/", true)
+                        .failureHandler(loginFailureHandler())
                         .permitAll()
                 )
                 .logout(logout -> logout
@@ -40,19 +94,74 @@ public class WebSecurityConfig {
                         .permitAll()
                 );
 
+        if (tokenMode) {
+            TokenAuthenticationFilter tokenFilter = new TokenAuthenticationFilter(tokenService, revocationList, tokenCookie);
+            http
+                    // раньше ограничителя частоты: его правила с ключом user должны видеть пользователя
+                    .addFilterBefore(tokenFilter, RateLimitFilter.class)
+                    .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                    // контекст живёт только в запросе; сохранённый запрос до входа тоже держался бы в сессии
+                    .securityContext(context -> context.securityContextRepository(new RequestAttributeSecurityContextRepository()))
+                    .requestCache(cache -> cache.requestCache(new NullRequestCache()))
+                    .formLogin(form -> form.successHandler(tokenIssuingSuccessHandler()))
+                    .logout(logout -> logout
+                            .addLogoutHandler((request, response, authentication) -> {
+                                SignedTokenService.Claims claims = tokenFilter.readClaims(request);
+                                if (claims != null) {
+                                    revocationList.revoke(claims);
+                                }
+                            })
+                            .deleteCookies(tokenCookie));
+        }
+
         return http.build();
     }
 
-    @Bean
-    public BCryptPasswordEncoder passwordEncoder(){
-        return new BCryptPasswordEncoder();
+    // Cookie с токеном вместо сессии; SameSite=Lax не даёт чужим сайтам слать POST от имени пользователя
+    private AuthenticationSuccessHandler tokenIssuingSuccessHandler() {
+        SimpleUrlAuthenticationSuccessHandler redirect = new SimpleUrlAuthenticationSuccessHandler("/");
+        redirect.setAlwaysUseDefaultTargetUrl(true);
+        return (request, response, authentication) -> {
+            ResponseCookie cookie = ResponseCookie.from(tokenCookie, tokenService.issue((ForumUserPrincipal) authentication.getPrincipal()))
+                    .httpOnly(true)
+                    .secure(secureCookie)
+                    .sameSite("Lax")
+                    .path("/")
+                    .maxAge(tokenService.getTtlSeconds())
+                    .build();
+            response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+            redirect.onAuthenticationSuccess(request, response, authentication);
+        };
+    }
+
+    // Переполненный пул BCrypt - это 503, а не "неверный пароль"
+    private AuthenticationFailureHandler loginFailureHandler() {
+        SimpleUrlAuthenticationFailureHandler defaultHandler = new SimpleUrlAuthenticationFailureHandler("/login?error");
+        return (request, response, exception) -> {
+            if (exception instanceof PasswordHashingBusyException) {
+                response.setHeader("Retry-After", "1");
+                response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+                return;
+            }
+            defaultHandler.onAuthenticationFailure(request, response, exception);
+        };
     }
 
+    // В SecurityContext (и в сессию) попадает ForumUserPrincipal без хэша пароля;
+    // экземпляр с хэшем остаётся только в UserDetailsCache
     @Bean
     public DaoAuthenticationProvider authenticationProvider() {
-        DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
+        DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider() {
+            @Override
+            protected Authentication createSuccessAuthentication(Object principal, Authentication authentication,
+                                                                 UserDetails user) {
+                Object slim = principal instanceof ForumUserPrincipal forumUser ? forumUser.withoutPassword() : principal;
+                return super.createSuccessAuthentication(slim, authentication, user);
+            }
+        };
         authProvider.setUserDetailsService(userDetailsService);
-        authProvider.setPasswordEncoder(passwordEncoder());
+        authProvider.setPasswordEncoder(passwordHashingService);
+        authProvider.setUserDetailsPasswordService(userDetailsService);
         return authProvider;
     }
 
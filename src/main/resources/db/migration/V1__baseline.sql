@@ -0,0 +1,64 @@
+-- Схема на момент перехода с ddl-auto на миграции: то же, что создавал Hibernate, с теми же именами ограничений.
+-- На существующей БД эта версия не выполняется, а отмечается как базовая (spring.flyway.baseline-on-migrate).
+-- Индексы post_search_idx и idx_users_username_prefix по-прежнему создаются приложением только на PostgreSQL
+
+create sequence comment_seq start with 1 increment by 50;
+
+create table comment (
+    id bigint not null,
+    author varchar(255),
+    content varchar(1000),
+    post_id bigint not null,
+    primary key (id)
+);
+
+create table post (
+    id bigserial not null,
+    author varchar(255),
+    content varchar(5000),
+    created_at timestamp(6) with time zone,
+    deleted_at timestamp(6) with time zone,
+    dislikes integer not null,
+    likes integer not null,
+    title varchar(255),
+    primary key (id)
+);
+
+create table post_summary (
+    post_id bigint not null,
+    comment_count bigint not null,
+    dislikes bigint not null,
+    latest_comments varchar(20000) not null,
+    likes bigint not null,
+    primary key (post_id)
+);
+
+create table post_vote (
+    id bigserial not null,
+    user_id bigint,
+    username varchar(255),
+    vote_type varchar(255),
+    post_id bigint,
+    primary key (id)
+);
+
+create table users (
+    id bigserial not null,
+    full_name varchar(255),
+    password varchar(255) not null,
+    username varchar(255) not null,
+    primary key (id)
+);
+
+create index idx_comment_post_id_id on comment (post_id, id);
+create index idx_post_created_at on post (created_at);
+create index idx_post_deleted_at on post (deleted_at);
+create index idx_post_vote_post_id on post_vote (post_id);
+create index idx_users_full_name on users (full_name);
+
+alter table post_vote add constraint uk_post_vote_username_post unique (username, post_id);
+alter table post_vote add constraint uk_post_vote_user_post unique (user_id, post_id);
+alter table users add constraint UK_r43af9ap4edm43mmtq01oddj6 unique (username);
+
+alter table comment add constraint FKs1slvnkuemjsq2kj4h3vhx7i1 foreign key (post_id) references post;
+alter table post_vote add constraint FK8ph7fgq4u0fto1tjxjrv8108o foreign key (post_id) references post;
@@ -0,0 +1,3 @@
+-- Версии для оптимистичной блокировки Post и Comment (@Version)
+alter table post add column version bigint default 0 not null;
+alter table comment add column version bigint default 0 not null;
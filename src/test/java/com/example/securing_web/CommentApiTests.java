@@ -0,0 +1,102 @@
+package com.example.securing_web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "forum.comments.export-chunk-size=2")
+@AutoConfigureMockMvc
+@WithMockUser("reader")
+class CommentApiTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private CommentService commentService;
+
+    @Test
+    void pagesByCursorAndExportsNdjson() throws Exception {
+        Post post = postService.createPost(new Post("Тема", "Текст", null), "author");
+        for (int i = 0; i < 5; i++) {
+            commentService.addComment(post.getId(), "user" + i, "Комментарий " + i);
+        }
+        String url = "/api/comments/post/" + post.getId();
+
+        MvcResult first = mockMvc.perform(get(url).param("limit", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].content").value("Комментарий 0"))
+                .andExpect(jsonPath("$[0].postId").value(post.getId()))
+                .andReturn();
+        String cursor = first.getResponse().getHeader(CommentController.NEXT_CURSOR_HEADER);
+        assertThat(cursor).isNotNull();
+
+        mockMvc.perform(get(url).param("limit", "3").param("after", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[1].content").value("Комментарий 4"))
+                .andExpect(header().doesNotExist(CommentController.NEXT_CURSOR_HEADER));
+
+        MvcResult export = mockMvc.perform(get(url + "/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(export))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        String[] lines = body.strip().split("\n");
+        assertThat(lines).hasSize(5);
+        assertThat(lines[4]).contains("Комментарий 4");
+    }
+
+    @Test
+    void emptyThreadIsNoContent() throws Exception {
+        Post post = postService.createPost(new Post("Пусто", "Текст", null), "author");
+        mockMvc.perform(get("/api/comments/post/" + post.getId()))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    void onlyAuthorEditsAndDeletesComment() throws Exception {
+        Post post = postService.createPost(new Post("Чужое", "Текст", null), "author");
+        Long commentId = commentService.addComment(post.getId(), "owner", "Исходный текст").getId();
+        String url = "/api/comments/" + commentId;
+        ForumUserPrincipal owner = new ForumUserPrincipal(1L, "owner", null, null, List.of());
+        ForumUserPrincipal intruder = new ForumUserPrincipal(2L, "intruder", null, null, List.of());
+
+        mockMvc.perform(put(url).param("content", "Подменённый").with(user(intruder)))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(delete(url).with(user(intruder)))
+                .andExpect(status().isForbidden());
+        assertThat(commentService.getCommentPage(post.getId(), null, 10).getComments())
+                .extracting(CommentDto::getContent).containsExactly("Исходный текст");
+
+        mockMvc.perform(put(url).param("content", "Поправленный").with(user(owner)))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(delete(url).with(user(owner)))
+                .andExpect(status().isNoContent());
+        assertThat(commentService.getCommentPage(post.getId(), null, 10).getComments()).isEmpty();
+    }
+}
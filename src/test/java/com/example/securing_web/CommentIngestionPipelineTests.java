@@ -0,0 +1,127 @@
+package com.example.securing_web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class CommentIngestionPipelineTests {
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private PostLookupCache postLookupCache;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PostSummaryService postSummaryService;
+
+    @Autowired
+    private FeedEventBroadcaster feedEventBroadcaster;
+
+    @Test
+    void acknowledgedSyncCommentsSurviveAbruptStop() throws Exception {
+        Long postId = postRepository.save(new Post("title", "content", "author")).getId();
+        CommentIngestionPipeline pipeline = new CommentIngestionPipeline(commentRepository, postRepository, postLookupCache,
+                transactionTemplate, jdbcTemplate, new PostFragmentCache(100), postSummaryService, feedEventBroadcaster, 1000, 50, 10, 1000);
+        pipeline.start();
+
+        Set<Long> acknowledged = ConcurrentHashMap.newKeySet();
+        ExecutorService writers = Executors.newFixedThreadPool(16);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            results.add(writers.submit(() -> {
+                for (int j = 0; j < 50; j++) {
+                    Comment comment;
+                    try {
+                        comment = pipeline.submit(postId, "author", "text").get(5, TimeUnit.SECONDS);
+                    } catch (IllegalStateException stopped) {
+                        return null; // конвейер остановлен, новые комментарии не принимаются
+                    }
+                    // подтверждение означает коммит: строка видна из другого соединения сразу же
+                    assertThat(jdbcTemplate.queryForObject(
+                            "SELECT count(*) FROM comment WHERE id = ?", Integer.class, comment.getId())).isEqualTo(1);
+                    acknowledged.add(comment.getId());
+                }
+                return null;
+            }));
+        }
+
+        // остановка посреди записи: писатели ещё работают, часть комментариев остаётся без подтверждения
+        Thread.sleep(20);
+        pipeline.stop();
+        writers.shutdown();
+        for (Future<?> result : results) {
+            result.get(10, TimeUnit.SECONDS);
+        }
+
+        List<Long> stored = jdbcTemplate.queryForList("SELECT id FROM comment WHERE post_id = ?", Long.class, postId);
+        assertThat(stored).containsAll(acknowledged);
+        assertThat(acknowledged).isNotEmpty();
+    }
+
+    @Test
+    void batchWithDeletedPostOnlyFailsOffendingComment() throws Exception {
+        Long livePost = postRepository.save(new Post("live", "content", "author")).getId();
+        Long doomedPost = postRepository.save(new Post("doomed", "content", "author")).getId();
+        CommentIngestionPipeline pipeline = new CommentIngestionPipeline(commentRepository, postRepository, postLookupCache,
+                transactionTemplate, jdbcTemplate, new PostFragmentCache(100), postSummaryService, feedEventBroadcaster, 1000, 50, 200, 1000);
+
+        // оба поста уже в кэше проверенных id; второй удаляется, пока его комментарий ждёт в очереди
+        pipeline.start();
+        pipeline.submit(livePost, "a", "warm-up").get(5, TimeUnit.SECONDS);
+        pipeline.submit(doomedPost, "a", "warm-up").get(5, TimeUnit.SECONDS);
+        jdbcTemplate.update("DELETE FROM comment WHERE post_id = ?", doomedPost);
+        var live = pipeline.submit(livePost, "a", "kept");
+        var doomed = pipeline.submit(doomedPost, "a", "lost");
+        jdbcTemplate.update("DELETE FROM post WHERE id = ?", doomedPost);
+
+        assertThat(live.get(5, TimeUnit.SECONDS).getId()).isNotNull();
+        assertThatThrownBy(() -> doomed.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(RuntimeException.class);
+        pipeline.stop();
+    }
+
+    @Test
+    void cancelledCommentIsNotWrittenAndAcknowledgedOneCannotBeCancelled() throws Exception {
+        Long postId = postRepository.save(new Post("cancel", "content", "author")).getId();
+        // пачка копится 500 мс: комментарий успевает побыть в ней отменённым
+        CommentIngestionPipeline pipeline = new CommentIngestionPipeline(commentRepository, postRepository, postLookupCache,
+                transactionTemplate, jdbcTemplate, new PostFragmentCache(100), postSummaryService, feedEventBroadcaster, 1000, 50, 500, 1000);
+        pipeline.start();
+
+        var cancelled = pipeline.submit(postId, "a", "cancelled");
+        var kept = pipeline.submit(postId, "a", "kept");
+        assertThat(cancelled.cancel(false)).isTrue();
+
+        Comment saved = kept.get(5, TimeUnit.SECONDS);
+        assertThat(kept.cancel(false)).isFalse();
+        pipeline.stop();
+
+        assertThat(jdbcTemplate.queryForList("SELECT content FROM comment WHERE post_id = ?", String.class, postId))
+                .containsExactly("kept");
+        assertThat(saved.getId()).isNotNull();
+    }
+}
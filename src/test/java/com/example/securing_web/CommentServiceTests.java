@@ -0,0 +1,81 @@
+package com.example.securing_web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CommentServiceTests {
+
+    private static final long POST_ID = 7L;
+
+    private final CommentIngestionPipeline pipeline = mock(CommentIngestionPipeline.class);
+    private final HotRanking hotRanking = mock(HotRanking.class);
+    private final PostLookupCache postLookupCache = mock(PostLookupCache.class);
+    private final CommentService commentService = new CommentService(mock(CommentRepository.class), pipeline,
+            mock(PostSummaryService.class), new PostFragmentCache(100), CommentIngestionPipeline.Durability.SYNC, 50,
+            mock(ReadYourWrites.class), hotRanking, postLookupCache, mock(ConflictRetryExecutor.class),
+            mock(PlatformTransactionManager.class));
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor();
+
+    @Test
+    void timedOutSyncCommentAlreadyTakenByWriterWaitsForCommit() {
+        CompletableFuture<Comment> inFlight = takenByWriter();
+        Comment committed = new Comment();
+        committed.setId(1L);
+        writer.schedule(() -> inFlight.complete(committed), 300, TimeUnit.MILLISECONDS);
+
+        assertThat(commentService.addComment(POST_ID, "a", "текст")).isSameAs(committed);
+        writer.shutdown();
+    }
+
+    @Test
+    void timedOutSyncCommentFailsWhenWritersTransactionRollsBack() {
+        CompletableFuture<Comment> inFlight = takenByWriter();
+        writer.schedule(() -> inFlight.completeExceptionally(new IllegalArgumentException("пост удалён")),
+                300, TimeUnit.MILLISECONDS);
+
+        assertThatThrownBy(() -> commentService.addComment(POST_ID, "a", "текст"))
+                .isInstanceOf(IllegalArgumentException.class);
+        writer.shutdown();
+    }
+
+    @Test
+    void commentSavedAfterPostDeletionDoesNotReturnPostToHotRanking() {
+        CompletableFuture<Comment> inFlight = takenByWriter();
+        Comment committed = new Comment();
+        committed.setId(2L);
+        // пост удалили, пока комментарий стоял в очереди
+        when(postLookupCache.exists(POST_ID)).thenReturn(false);
+        inFlight.complete(committed);
+
+        commentService.addComment(POST_ID, "a", "текст");
+        verify(hotRanking, never()).commented(POST_ID);
+
+        when(postLookupCache.exists(POST_ID)).thenReturn(true);
+        commentService.addComment(POST_ID, "a", "текст");
+        verify(hotRanking).commented(POST_ID);
+    }
+
+    // Как future конвейера, когда поток записи уже взял комментарий: отменить его нельзя
+    private CompletableFuture<Comment> takenByWriter() {
+        CompletableFuture<Comment> future = new CompletableFuture<>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                return false;
+            }
+        };
+        when(pipeline.submit(POST_ID, "a", "текст")).thenReturn(future);
+        return future;
+    }
+}
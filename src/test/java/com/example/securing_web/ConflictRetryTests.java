@@ -0,0 +1,170 @@
+package com.example.securing_web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+// Сколько бы ни было конфликтов, за 100 попыток правка проходит: проверяется итог, а не везение
+@SpringBootTest(properties = {"forum.retry.max-attempts=100", "forum.retry.max-delay-ms=20"})
+class ConflictRetryTests {
+
+    private static final int THREADS = 64;
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private CommentService commentService;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private VoteAggregator voteAggregator;
+
+    @Autowired
+    private ConflictRetryExecutor conflictRetry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void retriesOnlyConflictsAndGivesUpAfterMaxAttempts() {
+        ConflictRetryExecutor executor = new ConflictRetryExecutor(
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), 3, 1, 2);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = executor.execute("flaky", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException(Post.class, 1L);
+            }
+            return "ok";
+        });
+        assertThatThrownBy(() -> executor.executeWithoutResult("hopeless", () -> {
+            throw new ObjectOptimisticLockingFailureException(Post.class, 1L);
+        })).isInstanceOf(OptimisticLockingFailureException.class);
+        assertThatThrownBy(() -> executor.executeWithoutResult("stale", () -> {
+            throw new StaleEditException("устарело");
+        })).isInstanceOf(StaleEditException.class);
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(executor.stats("flaky").getConflicts()).isEqualTo(2);
+        assertThat(executor.stats("flaky").getRetries()).isEqualTo(2);
+        assertThat(executor.stats("hopeless").getConflicts()).isEqualTo(3);
+        assertThat(executor.stats("hopeless").getExhausted()).isEqualTo(1);
+        assertThat(executor.stats("stale").getConflicts()).isZero();
+    }
+
+    @Test
+    void concurrentEditsOfOnePostAreAllAppliedWithoutLosingVotes() throws Exception {
+        Long postId = postService.createPost(new Post("Спорный", "Исходный текст", null), "editor").getId();
+        ConflictRetryExecutor.OperationStats stats = conflictRetry.stats(PostService.EDIT_OPERATION);
+        long callsBefore = stats.getCalls();
+        long exhaustedBefore = stats.getExhausted();
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            int thread = i;
+            results.add(pool.submit(() -> {
+                start.await();
+                // голоса идут мимо сущности, атомарным UPDATE - правка по старой копии не должна их затереть
+                postService.likePost(postId, "voter" + thread);
+                voteAggregator.flush();
+                postService.editPost(postId, "editor", "Правка " + thread, "Текст " + thread, null);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get();
+        }
+        pool.shutdown();
+        voteAggregator.flush();
+
+        Map<String, Object> row = jdbcTemplate.queryForMap(
+                "SELECT version, likes, title, content FROM post WHERE id = ?", postId);
+        // каждая правка увеличила версию ровно один раз: ни одна не потерялась и не записалась дважды
+        assertThat(((Number) row.get("version")).longValue()).isEqualTo(THREADS);
+        assertThat(((Number) row.get("likes")).intValue()).isEqualTo(THREADS);
+        assertThat((String) row.get("content")).isEqualTo(((String) row.get("title")).replace("Правка", "Текст"));
+        assertThat(stats.getCalls() - callsBefore).isEqualTo(THREADS);
+        assertThat(stats.getExhausted()).isEqualTo(exhaustedBefore);
+    }
+
+    @Test
+    void staleOrDeletedEditIsRejectedWithoutRetry() {
+        Post post = postService.createPost(new Post("Версии", "Текст", null), "editor");
+        Long seen = post.getVersion();
+        postService.editPost(post.getId(), "editor", "Версии", "Новый текст", seen);
+        long retries = conflictRetry.stats(PostService.EDIT_OPERATION).getRetries();
+
+        assertThatThrownBy(() -> postService.editPost(post.getId(), "editor", "Версии", "Старый текст", seen))
+                .isInstanceOf(StaleEditException.class);
+        assertThat(postRepository.findById(post.getId()).orElseThrow().getContent()).isEqualTo("Новый текст");
+        // после удаления строку может сразу забрать PostPurgeJob: тогда правка получит "не найден"
+        postService.deletePost(post.getId());
+        assertThatThrownBy(() -> postService.editPost(post.getId(), "editor", "Версии", "После удаления", null))
+                .isInstanceOfAny(StaleEditException.class, IllegalArgumentException.class);
+
+        assertThat(conflictRetry.stats(PostService.EDIT_OPERATION).getRetries()).isEqualTo(retries);
+    }
+
+    @Test
+    void commentDeleteWinsOverConcurrentEdits() throws Exception {
+        Long postId = postService.createPost(new Post("Комментарии", "Текст", null), "author").getId();
+        Long commentId = commentService.addComment(postId, "reader", "Первый вариант",
+                CommentIngestionPipeline.Durability.SYNC).getId();
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            int thread = i;
+            results.add(pool.submit(() -> {
+                start.await();
+                if (thread == THREADS / 2) {
+                    commentService.deleteComment(commentId, "reader");
+                } else {
+                    try {
+                        commentService.editComment(commentId, "reader", "Вариант " + thread, null);
+                    } catch (IllegalArgumentException e) {
+                        // уже удалён
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get();
+        }
+        pool.shutdown();
+
+        assertThat(commentRepository.existsById(commentId)).isFalse();
+        assertThat(jdbcTemplate.queryForObject("SELECT comment_count FROM post_summary WHERE post_id = ?",
+                Long.class, postId)).isZero();
+    }
+}
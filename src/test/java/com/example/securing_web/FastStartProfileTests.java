@@ -0,0 +1,68 @@
+package com.example.securing_web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Схема только из миграций (отдельная БД), а Hibernate сверяет с ней сущности: validate падает,
+// если сущность изменили без новой миграции
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:fast-start;MODE=PostgreSQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "spring.jpa.hibernate.ddl-auto=validate"})
+@ActiveProfiles("fast-start")
+@AutoConfigureMockMvc
+class FastStartProfileTests {
+
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void schemaComesFromMigrationsAndMatchesEntities() {
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM \"flyway_schema_history\" WHERE \"version\" = '1' AND \"success\"", Integer.class))
+                .isEqualTo(1);
+
+        userService.register("migrated-user", "secret");
+        Post post = postService.createPost(new Post("Миграции", "Текст", null), "migrated-user");
+        postService.likePost(post.getId(), "migrated-user");
+
+        assertThat(jdbcTemplate.queryForObject("SELECT likes FROM post_summary WHERE post_id = ?", Long.class,
+                post.getId())).isNotNull();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM post_vote WHERE post_id = ?", Integer.class,
+                post.getId())).isEqualTo(1);
+    }
+
+    @Test
+    @WithMockUser("reader")
+    void nonCriticalControllersAreCreatedOnFirstRequest() throws Exception {
+        assertThat(context.getBeanFactory().getBeanDefinition("userController").isLazyInit()).isTrue();
+        assertThat(context.getBeanFactory().getBeanDefinition("postController").isLazyInit()).isFalse();
+        assertThat(context.getBeanFactory().containsSingleton("commentController")).isFalse();
+
+        mockMvc.perform(get("/api/comments/post/0")).andExpect(status().isNoContent());
+
+        assertThat(context.getBeanFactory().containsSingleton("commentController")).isTrue();
+    }
+}
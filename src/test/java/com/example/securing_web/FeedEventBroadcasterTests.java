@@ -0,0 +1,163 @@
+package com.example.securing_web;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FeedEventBroadcasterTests {
+
+    @Test
+    void tenThousandSubscribersAndStalledOnesAreEvicted() throws Exception {
+        FeedEventBroadcaster broadcaster = new FeedEventBroadcaster(256, 8, 250);
+        List<CountingSink> live = new ArrayList<>();
+        List<StalledSink> stalled = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            if (i % 100 == 0) {
+                StalledSink sink = new StalledSink();
+                stalled.add(sink);
+                broadcaster.subscribe(sink);
+            } else {
+                CountingSink sink = new CountingSink();
+                live.add(sink);
+                broadcaster.subscribe(sink);
+            }
+        }
+
+        // зависшие подписчики держат потоки отправки, но publish не должен их ждать
+        long started = System.nanoTime();
+        for (int i = 0; i < 200; i++) {
+            if (i % 2 == 0) {
+                broadcaster.publish(FeedEvent.postDeleted((long) i));
+            } else {
+                broadcaster.publishVotes(1L, 1, 0);
+            }
+        }
+        long publishMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        awaitTrue(() -> live.stream().allMatch(sink -> sink.events.get() == 100 && sink.likes.get() == 100));
+        awaitTrue(() -> broadcaster.getEvicted() == stalled.size());
+        assertThat(broadcaster.getSubscriberCount()).isEqualTo(live.size());
+        awaitTrue(() -> stalled.stream().allMatch(sink -> sink.closed.getCount() == 0));
+        // publish, ждущий отправки, простоял бы send-timeout-ms на каждом из 100 зависших - 25 с;
+        // запас до них - на машины с одним ядром, где публикация делит процессор с потоками отправки
+        assertThat(publishMillis).isLessThan(10_000);
+        broadcaster.shutdown();
+    }
+
+    @Test
+    void overflowingSubscriberIsEvictedWithoutBlockingPublisher() throws Exception {
+        FeedEventBroadcaster broadcaster = new FeedEventBroadcaster(16, 1, 60_000);
+        StalledSink stalled = new StalledSink();
+        CountingSink live = new CountingSink();
+        broadcaster.subscribe(stalled);
+
+        for (int i = 0; i < 50; i++) {
+            broadcaster.publish(FeedEvent.postDeleted((long) i));
+        }
+        assertThat(stalled.closed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(broadcaster.getEvicted()).isEqualTo(1);
+
+        // поток отправки освободился - новый подписчик получает события
+        broadcaster.subscribe(live);
+        broadcaster.publish(FeedEvent.postDeleted(100L));
+        awaitTrue(() -> live.events.get() == 1);
+        broadcaster.shutdown();
+    }
+
+    @Test
+    void voteDeltasAreCoalescedWhileSubscriberIsBusy() throws Exception {
+        FeedEventBroadcaster broadcaster = new FeedEventBroadcaster(16, 1, 60_000);
+        CountDownLatch release = new CountDownLatch(1);
+        CountingSink sink = new CountingSink() {
+            @Override
+            public void send(FeedEvent event) throws IOException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                super.send(event);
+            }
+        };
+        broadcaster.subscribe(sink);
+
+        for (int i = 0; i < 1000; i++) {
+            broadcaster.publishVotes(7L, 1, i % 2);
+        }
+        release.countDown();
+
+        awaitTrue(() -> sink.likes.get() == 1000 && sink.dislikes.get() == 500);
+        // первое событие ушло до склейки, остальные 999 приращений - одним событием
+        assertThat(sink.votes.get()).isLessThanOrEqualTo(2);
+        assertThat(broadcaster.getEvicted()).isZero();
+        broadcaster.shutdown();
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("условие не выполнилось за 30 секунд").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static class CountingSink implements FeedEventBroadcaster.Sink {
+        final AtomicInteger events = new AtomicInteger();
+        final AtomicInteger votes = new AtomicInteger();
+        final AtomicLong likes = new AtomicLong();
+        final AtomicLong dislikes = new AtomicLong();
+
+        @Override
+        public void send(FeedEvent event) throws IOException {
+            if (event.getData() instanceof FeedEvent.VoteDelta delta) {
+                votes.incrementAndGet();
+                likes.addAndGet(delta.likes());
+                dislikes.addAndGet(delta.dislikes());
+            } else {
+                events.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void heartbeat() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    // Как браузер, переставший читать: отправка висит, пока соединение не закроют
+    private static class StalledSink implements FeedEventBroadcaster.Sink {
+        final CountDownLatch closed = new CountDownLatch(1);
+
+        @Override
+        public void send(FeedEvent event) throws IOException {
+            try {
+                closed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IOException("соединение закрыто");
+        }
+
+        @Override
+        public void heartbeat() throws IOException {
+            send(null);
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+    }
+}
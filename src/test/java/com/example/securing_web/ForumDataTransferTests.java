@@ -0,0 +1,121 @@
+package com.example.securing_web;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {"forum.transfer.batch-size=3", "forum.transfer.checkpoint-every=2"})
+class ForumDataTransferTests {
+
+    private static final List<String> TABLES = List.of("users", "post", "comment", "post_vote");
+
+    @Autowired
+    private ForumDataTransfer transfer;
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private CommentService commentService;
+
+    @Autowired
+    private VoteAggregator voteAggregator;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seed() {
+        wipe();
+        jdbcTemplate.update("INSERT INTO users (username, password, full_name) VALUES ('anna', '{bcrypt}x', 'Анна')");
+        jdbcTemplate.update("INSERT INTO users (username, password, full_name) VALUES ('boris', '{bcrypt}y', NULL)");
+        for (int i = 0; i < 3; i++) {
+            Long postId = postService.createPost(new Post("Пост " + i, "Текст \"с кавычками\"\nи переносом", null), "anna").getId();
+            commentService.addComment(postId, "boris", "Комментарий " + i);
+            if (i == 0) {
+                commentService.addComment(postId, "anna", "Ещё один");
+                postService.likePost(postId, "boris");
+                postService.dislikePost(postId, "anna");
+            }
+        }
+        voteAggregator.flush();
+    }
+
+    @Test
+    void importRestoresExportAndResumesFromCheckpoint() throws Exception {
+        Map<String, List<Map<String, Object>>> before = snapshot();
+        ByteArrayOutputStream dump = new ByteArrayOutputStream();
+        ForumDataTransfer.Report exported = transfer.export(dump, null, checkpoint -> {
+        });
+        assertThat(exported.getTotalRows()).isEqualTo(11);
+
+        wipe();
+        // первая попытка обрывается после 7 строк
+        String[] lines = dump.toString(StandardCharsets.UTF_8).split("\n");
+        String head = String.join("\n", Arrays.copyOf(lines, 7)) + "\n";
+        List<ForumDataTransfer.Checkpoint> checkpoints = new ArrayList<>();
+        transfer.importData(new ByteArrayInputStream(head.getBytes(StandardCharsets.UTF_8)), 0, checkpoints::add);
+        long resumeAt = checkpoints.get(checkpoints.size() - 1).position();
+        assertThat(resumeAt).isEqualTo(7);
+
+        ForumDataTransfer.Report imported = transfer.importData(
+                new ByteArrayInputStream(dump.toByteArray()), resumeAt, checkpoint -> {
+                });
+        assertThat(imported.getTotalRows()).isEqualTo(4);
+        assertThat(snapshot()).isEqualTo(before);
+
+        // генераторы id сдвинуты: новые записи не конфликтуют с загруженными
+        Long postId = postService.createPost(new Post("Новый", "Текст", null), "boris").getId();
+        Comment comment = commentService.addComment(postId, "anna", "После загрузки");
+        assertThat(comment.getId()).isGreaterThan(maxId(before.get("comment")));
+        assertThat(postService.loadCards(List.of((Long) before.get("post").get(0).get("ID"))).get(0).getCommentCount())
+                .isEqualTo(2);
+    }
+
+    @Test
+    void resumedExportMatchesUninterruptedOne() {
+        ByteArrayOutputStream full = new ByteArrayOutputStream();
+        List<ForumDataTransfer.Checkpoint> checkpoints = new ArrayList<>();
+        transfer.export(full, null, checkpoints::add);
+
+        ForumDataTransfer.Checkpoint middle = checkpoints.stream()
+                .filter(checkpoint -> checkpoint.table().equals("comment")).findFirst().orElseThrow();
+        ByteArrayOutputStream resumed = new ByteArrayOutputStream();
+        resumed.write(full.toByteArray(), 0, (int) middle.position());
+        transfer.export(resumed, middle, checkpoint -> {
+        });
+
+        assertThat(resumed.toString(StandardCharsets.UTF_8)).isEqualTo(full.toString(StandardCharsets.UTF_8));
+    }
+
+    private Map<String, List<Map<String, Object>>> snapshot() {
+        return Map.of(
+                "users", jdbcTemplate.queryForList("SELECT id, username, password, full_name FROM users ORDER BY id"),
+                "post", jdbcTemplate.queryForList("SELECT id, title, content, author, likes, dislikes FROM post ORDER BY id"),
+                "comment", jdbcTemplate.queryForList("SELECT id, post_id, author, content FROM comment ORDER BY id"),
+                "post_vote", jdbcTemplate.queryForList("SELECT id, username, post_id, vote_type FROM post_vote ORDER BY id"));
+    }
+
+    private static long maxId(List<Map<String, Object>> rows) {
+        return rows.stream().mapToLong(row -> ((Number) row.get("ID")).longValue()).max().orElse(0);
+    }
+
+    private void wipe() {
+        jdbcTemplate.update("DELETE FROM post_summary");
+        for (int i = TABLES.size() - 1; i >= 0; i--) {
+            jdbcTemplate.update("DELETE FROM " + TABLES.get(i));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.securing_web;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Медленным считается любой запрос, так что RequestMetricsFilter печатает SQL каждого
+@SpringBootTest(properties = {"forum.metrics.slow-request-ms=0", "forum.votes.storage=compact",
+        "forum.votes.snapshot-path="})
+@AutoConfigureMockMvc
+@ExtendWith(OutputCaptureExtension.class)
+class ForumUserPrincipalTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void authenticatedPageViewsDoNotQueryUsers(CapturedOutput output) throws Exception {
+        userService.register("principal-user", "secret");
+        Long userId = userRepository.findIdByUsername("principal-user").orElseThrow();
+        Long postId = postService.createPost(new Post("Тема", "Текст", null), "author").getId();
+
+        MockHttpSession session = (MockHttpSession) mockMvc.perform(post("/login")
+                        .param("username", "principal-user").param("password", "secret"))
+                .andExpect(status().is3xxRedirection())
+                .andReturn().getRequest().getSession(false);
+        SecurityContext context = (SecurityContext) session.getAttribute(
+                HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY);
+        ForumUserPrincipal principal = (ForumUserPrincipal) context.getAuthentication().getPrincipal();
+        assertThat(principal.getId()).isEqualTo(userId);
+        assertThat(principal.getPassword()).as("хэш не хранится в сессии").isNull();
+
+        int from = output.getOut().length();
+        mockMvc.perform(get("/posts").session(session)).andExpect(status().isOk());
+        mockMvc.perform(get("/posts/create").session(session)).andExpect(status().isOk());
+        mockMvc.perform(get("/profile").session(session))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("principal-user")));
+        mockMvc.perform(post("/posts/" + postId + "/like").session(session)).andExpect(status().is3xxRedirection());
+        String log = output.getOut().substring(from);
+
+        assertThat(log).contains("GET /posts", "GET /profile", "POST /posts/" + postId + "/like")
+                .containsIgnoringCase("from post");
+        assertThat(log).doesNotContainPattern("(?i)\\busers\\b");
+        assertThat(jdbcTemplate.queryForObject("SELECT user_id FROM post_vote WHERE post_id = ?", Long.class, postId))
+                .isEqualTo(userId);
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.securing_web;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class HotRankingTests {
+
+    private static final Instant START = Instant.parse("2026-01-01T00:00:00Z");
+
+    private final MutableClock clock = new MutableClock(START);
+    private final PostRepository postRepository = mock(PostRepository.class);
+    private final HotRanking ranking = new HotRanking(postRepository, clock, Duration.ofHours(1), 3, 1, 1, -1, 2);
+
+    @Test
+    void recentActivityOutranksOlderActivityOfSameWeight() {
+        ranking.voted(1L, VoteType.LIKE);
+        ranking.voted(1L, VoteType.LIKE);
+        ranking.voted(1L, VoteType.LIKE);
+        clock.advance(Duration.ofHours(2));
+        ranking.commented(2L);
+
+        // 3 лайка два периода полураспада назад весят 0.75, свежий комментарий - 2
+        assertThat(ranking.top(0, 10)).containsExactly(2L, 1L);
+        assertThat(ranking.score(1L)).isCloseTo(0.75, within(1e-9));
+
+        ranking.voted(1L, VoteType.LIKE);
+        ranking.voted(1L, VoteType.LIKE);
+        assertThat(ranking.top(0, 10)).containsExactly(1L, 2L);
+        assertThat(ranking.top(1, 10)).containsExactly(2L);
+    }
+
+    @Test
+    void rebaseKeepsOrderAndDropsColdPosts() {
+        ranking.postCreated(1L);
+        clock.advance(Duration.ofHours(1));
+        ranking.postCreated(2L);
+        ranking.voted(3L, VoteType.LIKE);
+        ranking.voted(3L, VoteType.LIKE);
+        clock.advance(Duration.ofHours(9));
+
+        ranking.rebase();
+        assertThat(ranking.top(0, 10)).containsExactly(3L, 2L);
+        assertThat(ranking.score(3L)).isCloseTo(2 / Math.pow(2, 9), within(1e-9));
+
+        ranking.remove(3L);
+        assertThat(ranking.top(0, 10)).containsExactly(2L);
+    }
+
+    @Test
+    void coldestPostsAreEvictedAboveLimit() {
+        ranking.commented(1L);
+        ranking.postCreated(2L);
+        ranking.voted(3L, VoteType.LIKE);
+        ranking.voted(3L, VoteType.LIKE);
+        ranking.voted(3L, VoteType.LIKE);
+        ranking.voted(4L, VoteType.LIKE);
+        ranking.voted(4L, VoteType.LIKE);
+
+        assertThat(ranking.size()).isEqualTo(3);
+        assertThat(ranking.top(0, 10)).containsExactly(3L, 4L, 1L);
+    }
+
+    @Test
+    void rebuildTreatsStoredActivityAsHappeningAtCreation() {
+        when(postRepository.findActivitySince(any(), eq(0L), any())).thenReturn(List.of(
+                new Object[]{1L, START.minus(Duration.ofHours(3)), 10L, 0L, 0L},
+                new Object[]{2L, START.minus(Duration.ofHours(1)), 1L, 0L, 1L}));
+        when(postRepository.findActivitySince(any(), eq(2L), any())).thenReturn(List.of());
+
+        ranking.rebuild();
+
+        // (1 + 10) / 8 против (1 + 1 + 2) / 2
+        assertThat(ranking.top(0, 10)).containsExactly(2L, 1L);
+        assertThat(ranking.score(1L)).isCloseTo(11 / 8.0, within(1e-9));
+    }
+
+    @Test
+    void pageReadDuringRebaseIsNeverShort() throws Exception {
+        HotRanking shared = new HotRanking(postRepository, clock, Duration.ofHours(1), 100, 1, 1, -1, 2);
+        for (long id = 0; id < 20; id++) {
+            shared.postCreated(id);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger shortPages = new AtomicInteger();
+        Future<?> reader = pool.submit(() -> {
+            while (running.get()) {
+                if (shared.top(0, 10).size() < 10) {
+                    shortPages.incrementAndGet();
+                }
+            }
+        });
+        Future<?> rebaser = pool.submit(() -> {
+            for (int i = 0; i < 20_000; i++) {
+                shared.rebase();
+            }
+        });
+        rebaser.get(30, TimeUnit.SECONDS);
+        running.set(false);
+        reader.get(30, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        assertThat(shortPages.get()).isZero();
+    }
+
+    @Test
+    void concurrentEvictionKeepsScoresAndRankingInStep() throws Exception {
+        HotRanking shared = new HotRanking(postRepository, clock, Duration.ofHours(1), 20, 1, 1, -1, 2);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            results.add(pool.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 20_000; i++) {
+                    shared.voted(random.nextLong(100), VoteType.LIKE);
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        // ни поста в scores без записи в ranking, ни наоборот
+        assertThat(shared.top(0, 1000)).hasSize(shared.size()).doesNotHaveDuplicates();
+        assertThat(shared.size()).isLessThanOrEqualTo(20 + 4);
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
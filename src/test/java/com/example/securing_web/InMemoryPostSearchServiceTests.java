@@ -0,0 +1,66 @@
+package com.example.securing_web;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryPostSearchServiceTests {
+
+    // репозиторий нужен только для rebuild
+    private final InMemoryPostSearchService search = new InMemoryPostSearchService(null);
+
+    @Test
+    void tokenizerNormalizesCaseYoAndPunctuation() {
+        assertThat(SearchTokenizer.tokenize("Ёжик, ЁЛКА и Java-17!")).containsExactly("ежик", "елка", "и", "java", "17");
+        assertThat(SearchTokenizer.tokenize("  ...  ")).isEmpty();
+        assertThat(SearchTokenizer.tokenize(null)).isEmpty();
+    }
+
+    @Test
+    void titleMatchRanksAboveContentAndNewerPostWinsTie() {
+        index(1L, "Про погоду", "кошки спят");
+        index(2L, "Кошки", "про погоду");
+        index(3L, "Про погоду", "кошки и снова кошки");
+        index(4L, "Собаки", "без совпадений");
+        index(5L, "Кошки", "ещё пост");
+
+        // заголовок (вес 3) > два упоминания в тексте > одно; при равной оценке выше новый пост
+        assertThat(search.search("кошки", 0, 10)).containsExactly(5L, 2L, 3L, 1L);
+        assertThat(search.search("кошки", 2, 1)).containsExactly(3L);
+    }
+
+    @Test
+    void allTermsMustMatchAndOnlyLastOneIsPrefix() {
+        index(1L, "Java и Spring", "текст");
+        index(2L, "JavaScript", "spring тоже есть");
+        index(3L, "Spring", "без языка");
+
+        assertThat(search.search("java spr", 0, 10)).containsExactlyInAnyOrder(1L);
+        // "jav" не последнее слово - ищется целиком и ничего не находит
+        assertThat(search.search("jav spring", 0, 10)).isEmpty();
+        // префикс "jav" совпадает с java и javascript, оценки не складываются
+        assertThat(search.search("spring jav", 0, 10)).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(search.search("ЁЖИК", 0, 10)).isEmpty();
+    }
+
+    @Test
+    void reindexReplacesOldTermsAndRemoveDropsPost() {
+        index(1L, "Старый заголовок", "текст");
+        index(2L, "Другой пост", "текст");
+
+        index(1L, "Новый заголовок", "текст");
+        assertThat(search.search("старый", 0, 10)).isEmpty();
+        assertThat(search.search("новый", 0, 10)).containsExactly(1L);
+
+        search.remove(1L);
+        assertThat(search.search("заголовок", 0, 10)).isEmpty();
+        assertThat(search.search("текст", 0, 10)).containsExactly(2L);
+        search.remove(1L);
+    }
+
+    private void index(Long id, String title, String content) {
+        Post post = new Post(title, content, "author");
+        post.setId(id);
+        search.index(post);
+    }
+}
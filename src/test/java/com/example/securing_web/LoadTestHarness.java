@@ -0,0 +1,118 @@
+package com.example.securing_web;
+
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Нагрузочный прогон против запущенного приложения: сравнение платформенных и виртуальных потоков.
+// Не JUnit-тест; запускается вручную дважды - на приложении без профиля и с --spring.profiles.active=virtual:
+//
+//   java -cp target/test-classes com.example.securing_web.LoadTestHarness \
+//        http://localhost:8080 user password 200 60 1
+//
+// Аргументы: адрес, логин, пароль, число параллельных клиентов, длительность в секундах, id поста.
+// Печатает по каждому эндпоинту: число запросов, пропускную способность, p50 и p99.
+public class LoadTestHarness {
+
+    private static final String[] ENDPOINTS = {"GET /posts", "POST /posts/{id}/like", "POST /api/comments"};
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        String username = args.length > 1 ? args[1] : "user";
+        String password = args.length > 2 ? args[2] : "password";
+        int clients = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+        int seconds = args.length > 4 ? Integer.parseInt(args[4]) : 30;
+        long postId = args.length > 5 ? Long.parseLong(args[5]) : 1L;
+
+        HttpClient client = HttpClient.newBuilder()
+                .cookieHandler(new CookieManager())
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        login(client, baseUrl, username, password);
+
+        Map<String, List<Long>> latencies = new LinkedHashMap<>();
+        for (String endpoint : ENDPOINTS) {
+            latencies.put(endpoint, Collections.synchronizedList(new ArrayList<>()));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        CountDownLatch done = new CountDownLatch(clients);
+        for (int i = 0; i < clients; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    while (System.nanoTime() < deadline) {
+                        String endpoint = ENDPOINTS[ThreadLocalRandom.current().nextInt(ENDPOINTS.length)];
+                        long started = System.nanoTime();
+                        client.send(request(baseUrl, endpoint, postId), HttpResponse.BodyHandlers.discarding());
+                        latencies.get(endpoint).add(System.nanoTime() - started);
+                    }
+                } catch (Exception e) {
+                    System.err.println("Клиент остановлен: " + e);
+                } finally {
+                    done.countDown();
+                }
+            });
+            worker.setDaemon(true);
+            worker.start();
+        }
+        done.await();
+
+        System.out.printf("%-24s %10s %10s %10s %10s%n", "endpoint", "requests", "req/s", "p50 ms", "p99 ms");
+        latencies.forEach((endpoint, samples) -> {
+            List<Long> sorted = new ArrayList<>(samples);
+            Collections.sort(sorted);
+            System.out.printf("%-24s %10d %10.1f %10.2f %10.2f%n", endpoint, sorted.size(),
+                    sorted.size() / (double) seconds, percentile(sorted, 0.50), percentile(sorted, 0.99));
+        });
+    }
+
+    private static void login(HttpClient client, String baseUrl, String username, String password) throws Exception {
+        String form = "username=" + URLEncoder.encode(username, StandardCharsets.UTF_8)
+                + "&password=" + URLEncoder.encode(password, StandardCharsets.UTF_8);
+        HttpResponse<Void> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/login"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build(), HttpResponse.BodyHandlers.discarding());
+        String location = response.headers().firstValue("Location").orElse("");
+        if (location.contains("error")) {
+            throw new IllegalStateException("Не удалось войти как " + username);
+        }
+    }
+
+    private static HttpRequest request(String baseUrl, String endpoint, long postId) {
+        switch (endpoint) {
+            case "GET /posts":
+                return HttpRequest.newBuilder(URI.create(baseUrl + "/posts")).GET().build();
+            case "POST /posts/{id}/like":
+                return HttpRequest.newBuilder(URI.create(baseUrl + "/posts/" + postId + "/like"))
+                        .POST(HttpRequest.BodyPublishers.noBody()).build();
+            default:
+                String form = "postId=" + postId + "&author=load&content=load-test";
+                return HttpRequest.newBuilder(URI.create(baseUrl + "/api/comments"))
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(HttpRequest.BodyPublishers.ofString(form)).build();
+        }
+    }
+
+    private static double percentile(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.size() - 1, Math.ceil(percentile * sorted.size()) - 1);
+        return sorted.get(Math.max(index, 0)) / 1_000_000.0;
+    }
+}
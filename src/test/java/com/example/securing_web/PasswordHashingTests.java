@@ -0,0 +1,163 @@
+package com.example.securing_web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Пул BCrypt из одного потока с очередью на один пароль: его легко занять целиком
+@SpringBootTest(properties = {
+        "forum.password.threads=1",
+        "forum.password.queue-capacity=1"
+})
+@AutoConfigureMockMvc
+class PasswordHashingTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void fullPoolRejectsRightAwayAndSlowQueueTimesOut() throws Exception {
+        PasswordHashingService service = new PasswordHashingService(4, false, 0, 1, 1, 10_000);
+        BlockingPassword running = new BlockingPassword();
+        BlockingPassword queued = new BlockingPassword();
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> service.encode(running));
+        running.started.await(5, TimeUnit.SECONDS);
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> service.encode(queued));
+        awaitQueueSize(service, 1);
+
+        assertThatThrownBy(() -> service.encode("secret")).isInstanceOf(PasswordHashingBusyException.class);
+        assertThat(service.getRejected()).isEqualTo(1);
+
+        running.release.countDown();
+        queued.release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS)).startsWith("$2a$04$");
+        assertThat(second.get(5, TimeUnit.SECONDS)).startsWith("$2a$04$");
+        service.shutdown();
+
+        // место в очереди есть, но поток занят дольше wait-millis
+        PasswordHashingService impatient = new PasswordHashingService(4, false, 0, 1, 4, 100);
+        BlockingPassword stuck = new BlockingPassword();
+        CompletableFuture.runAsync(() -> impatient.encode(stuck));
+        stuck.started.await(5, TimeUnit.SECONDS);
+        assertThatThrownBy(() -> impatient.matches("secret", "$2a$04$abcdefghijklmnopqrstuu"))
+                .isInstanceOf(PasswordHashingBusyException.class);
+        stuck.release.countDown();
+        impatient.shutdown();
+    }
+
+    @Test
+    void calibrationStaysWithinCostBounds() {
+        // цель меньше любого хэша - нижняя граница, а не меньше
+        assertThat(PasswordHashingService.calibrate(0)).isEqualTo(10);
+        assertThat(PasswordHashingService.calibrate(50)).isBetween(10, 16);
+
+        PasswordHashingService calibrated = new PasswordHashingService(12, true, 0, 1, 1, 10_000);
+        assertThat(calibrated.getStrength()).isEqualTo(10);
+        calibrated.shutdown();
+    }
+
+    @Test
+    void weakerHashNeedsUpgrade() {
+        PasswordHashingService service = new PasswordHashingService(10, false, 0, 1, 1, 10_000);
+        assertThat(service.upgradeEncoding(new BCryptPasswordEncoder(4).encode("secret"))).isTrue();
+        assertThat(service.upgradeEncoding(service.encode("secret"))).isFalse();
+        service.shutdown();
+    }
+
+    @Test
+    void loginRehashesPasswordStoredWithLowerCost() throws Exception {
+        User user = new User();
+        user.setUsername("low-cost");
+        user.setPassword(new BCryptPasswordEncoder(4).encode("secret"));
+        userRepository.save(user);
+
+        mockMvc.perform(post("/login").param("username", "low-cost").param("password", "secret"))
+                .andExpect(status().is3xxRedirection());
+
+        String rehashed = userRepository.findByUsername("low-cost").orElseThrow().getPassword();
+        assertThat(rehashed).startsWith("$2a$" + passwordHashingService.getStrength() + "$");
+        assertThat(passwordHashingService.matches("secret", rehashed)).isTrue();
+    }
+
+    @Test
+    void loginGets503WithRetryAfterWhenPoolIsFull() throws Exception {
+        userService.register("busy-user", "secret");
+        BlockingPassword running = new BlockingPassword();
+        BlockingPassword queued = new BlockingPassword();
+        CompletableFuture.runAsync(() -> passwordHashingService.encode(running));
+        running.started.await(5, TimeUnit.SECONDS);
+        CompletableFuture.runAsync(() -> passwordHashingService.encode(queued));
+        awaitQueueSize(passwordHashingService, 1);
+        try {
+            mockMvc.perform(post("/login").param("username", "busy-user").param("password", "secret"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string("Retry-After", "1"));
+        } finally {
+            running.release.countDown();
+            queued.release.countDown();
+        }
+        awaitQueueSize(passwordHashingService, 0);
+    }
+
+    private static void awaitQueueSize(PasswordHashingService service, int size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (service.getQueueSize() != size) {
+            assertThat(System.nanoTime()).as("очередь BCrypt не дошла до %d", size).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    // Пароль, который держит поток пула, пока его не отпустят: BCrypt читает его через toString
+    private static final class BlockingPassword implements CharSequence {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public String toString() {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "secret";
+        }
+
+        @Override
+        public int length() {
+            return toString().length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return toString().charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.securing_web;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@DataJpaTest
+@Import({PostService.class, InMemoryPostSearchService.class, VoteAggregator.class,
+        CommentIngestionPipeline.class, PostFragmentCache.class, PostSummaryService.class,
+        FeedEventBroadcaster.class, ReadYourWrites.class, PostLookupCache.class,
+        HotRanking.class, PostPurgeJob.class, VoteLedger.class, ConflictRetryExecutor.class})
+class PostFeedTests {
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private HotRanking hotRanking;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void seed() {
+        for (int i = 0; i < 60; i++) {
+            Post post = new Post("title " + i, "content " + i, "author");
+            for (int j = 0; j < 3; j++) {
+                post.addComment(new Comment(post, "commenter", "comment " + j));
+            }
+            postRepository.save(post);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void statementCountDoesNotGrowWithPageSize() {
+        long small = statementsForPage(5);
+        long large = statementsForPage(50);
+
+        assertThat(small).isLessThanOrEqualTo(2);
+        assertThat(large).isEqualTo(small);
+    }
+
+    @Test
+    void cursorWalksWholeFeedWithoutDuplicates() {
+        Set<Long> seen = new HashSet<>();
+        Long cursor = null;
+        do {
+            PostPage page = postService.getFeedPage(cursor, 7);
+            page.getPosts().forEach(post -> assertThat(seen.add(post.getId())).isTrue());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertThat(seen).hasSize(60);
+    }
+
+    @Test
+    void hotRankingIsRebuiltFromRecentPostsOnly() {
+        Post post = new Post("горячий", "текст", "author");
+        post.setCreatedAt(Instant.now());
+        Long hotId = postRepository.save(post).getId();
+        entityManager.createNativeQuery("INSERT INTO post_summary (post_id, comment_count, likes, dislikes, "
+                + "latest_comments) VALUES (?1, 2, 3, 0, '[]')").setParameter(1, hotId).executeUpdate();
+
+        // у засеянных постов нет created_at - они считаются старыми и в рейтинг не попадают
+        hotRanking.rebuild();
+        assertThat(postService.getHotIds(0, 10).getIds()).containsExactly(hotId);
+        // пост + 3 лайка + 2 комментария по 2, только что
+        assertThat(hotRanking.score(hotId)).isCloseTo(8, within(0.01));
+    }
+
+    private long statementsForPage(int size) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        entityManager.clear();
+        statistics.clear();
+
+        PostPage page = postService.getFeedPage(null, size);
+        // то же, что делает postList.html
+        page.getPosts().forEach(post -> post.getComments().forEach(Comment::getContent));
+
+        assertThat(page.getPosts()).hasSize(size);
+        page.getPosts().forEach(post -> assertThat(post.getComments()).hasSize(3));
+        return statistics.getPrepareStatementCount();
+    }
+}
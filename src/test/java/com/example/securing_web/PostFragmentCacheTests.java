@@ -0,0 +1,34 @@
+package com.example.securing_web;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PostFragmentCacheTests {
+
+    @Test
+    void versionMapIsBoundedAndVersionsNeverGoBack() {
+        PostFragmentCache cache = new PostFragmentCache(100, 3);
+        List<Long> ids = List.of(1L, 2L, 3L, 4L, 5L);
+        cache.invalidate(1L);
+        cache.invalidate(2L);
+        cache.invalidate(3L);
+        long[] before = cache.versions(ids);
+        cache.put(1L, before[0], "<div>1</div>", 0);
+        assertThat(cache.get(1L, cache.versions(List.of(1L))[0])).isEqualTo("<div>1</div>");
+
+        // четвёртая запись переполняет карту - она очищается
+        cache.invalidate(4L);
+        assertThat(cache.versionCount()).isLessThanOrEqualTo(3);
+
+        long[] after = cache.versions(ids);
+        for (int i = 0; i < ids.size(); i++) {
+            assertThat(after[i]).as("версия поста %d", ids.get(i)).isGreaterThan(before[i]);
+        }
+        // карточка, закэшированная до очистки, больше не совпадает
+        assertThat(cache.get(1L, after[0])).isNull();
+        assertThat(cache.etag(ids, after, null)).isNotEqualTo(cache.etag(ids, before, null));
+    }
+}
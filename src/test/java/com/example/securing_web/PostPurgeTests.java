@@ -0,0 +1,88 @@
+package com.example.securing_web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {"forum.purge.chunk-size=3", "forum.purge.pause-ms=0"})
+class PostPurgeTests {
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private PostPurgeJob postPurgeJob;
+
+    @Autowired
+    private HotRanking hotRanking;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void deletedPostIsHiddenAtOnceAndPurgedInChunks() throws InterruptedException {
+        Long postId = postService.createPost(new Post("Удаляемый", "Текст", null), "author").getId();
+        for (int i = 0; i < 10; i++) {
+            commentRepository.save(new Comment(postRepository.getReferenceById(postId), "reader" + i, "Комментарий " + i));
+            postService.likePost(postId, "voter" + i);
+        }
+        long commentsBefore = postPurgeJob.getCommentsPurged();
+        long votesBefore = postPurgeJob.getVotesPurged();
+
+        postService.deletePost(postId);
+        // голос со старой страницы: не пишется и не возвращает пост в горячие
+        postService.likePost(postId, "late-voter");
+
+        assertThat(postService.getFeedIds(null, 100).getIds()).doesNotContain(postId);
+        assertThat(postRepository.existsByIdAndDeletedAtIsNull(postId)).isFalse();
+        assertThat(hotRanking.score(postId)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM post_vote WHERE post_id = ? AND username = ?",
+                Long.class, postId, "late-voter")).isZero();
+
+        awaitTrue(() -> !postRepository.existsById(postId));
+        // строки поста уже нет: голос не падает на внешнем ключе
+        postService.likePost(postId, "later-voter");
+        assertThat(count("comment", postId)).isZero();
+        assertThat(count("post_vote", postId)).isZero();
+        assertThat(postPurgeJob.getCommentsPurged() - commentsBefore).isEqualTo(10);
+        assertThat(postPurgeJob.getVotesPurged() - votesBefore).isEqualTo(10);
+    }
+
+    @Test
+    void postMarkedBeforeRestartIsPurgedOnNextPass() throws InterruptedException {
+        Post post = postRepository.save(new Post("Недочищенный", "Текст", "author"));
+        Long postId = post.getId();
+        commentRepository.save(new Comment(post, "reader", "Текст"));
+        // так пост выглядит после остановки посреди очистки: пометка есть, строки ещё нет
+        jdbcTemplate.update("UPDATE post SET deleted_at = CURRENT_TIMESTAMP WHERE id = ?", postId);
+
+        postPurgeJob.wakeUp();
+
+        awaitTrue(() -> !postRepository.existsById(postId));
+        assertThat(count("comment", postId)).isZero();
+    }
+
+    private long count(String table, Long postId) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM " + table + " WHERE post_id = ?", Long.class, postId);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("условие не выполнилось за 30 секунд").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
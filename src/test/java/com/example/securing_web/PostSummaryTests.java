@@ -0,0 +1,135 @@
+package com.example.securing_web;
+
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "forum.summary.latest-comments=2")
+class PostSummaryTests {
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private CommentService commentService;
+
+    @Autowired
+    private PostSummaryService postSummaryService;
+
+    @Autowired
+    private VoteAggregator voteAggregator;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Test
+    void summaryFollowsCommentsVotesAndDeletion() {
+        Long postId = postService.createPost(new Post("Сводка", "Текст", null), "author").getId();
+        Comment first = commentService.addComment(postId, "a", "первый");
+        commentService.addComment(postId, "b", "второй");
+        commentService.addComment(postId, "c", "третий");
+        postService.likePost(postId, "voter");
+        voteAggregator.flush();
+
+        PostCard card = postService.loadCards(List.of(postId)).get(0);
+        assertThat(card.getCommentCount()).isEqualTo(3);
+        assertThat(card.getLikes()).isEqualTo(1);
+        assertThat(card.getLatestComments()).extracting(CommentDto::getContent).containsExactly("второй", "третий");
+        // лента не трогает коллекцию комментариев
+        assertThat(Hibernate.isInitialized(card.getPost().getComments())).isFalse();
+
+        commentService.deleteComment(first.getId(), "a");
+        assertThat(postService.loadCards(List.of(postId)).get(0).getCommentCount()).isEqualTo(2);
+
+        postService.deletePost(postId);
+        assertThat(postSummaryService.findAll(List.of(postId))).isEmpty();
+    }
+
+    @Test
+    void repairRebuildsDriftedAndMissingSummaries() {
+        Long drifted = postService.createPost(new Post("Разъехалась", "Текст", null), "author").getId();
+        commentService.addComment(drifted, "a", "комментарий");
+        jdbcTemplate.update("UPDATE post_summary SET comment_count = 100, latest_comments = '[]' WHERE post_id = ?", drifted);
+
+        // пост, созданный в обход PostService, без сводки
+        jdbcTemplate.update("INSERT INTO post (title, content, author, likes, dislikes) VALUES ('Старый', 'Текст', 'x', 4, 1)");
+        Long legacy = jdbcTemplate.queryForObject("SELECT max(id) FROM post", Long.class);
+
+        assertThat(postSummaryService.repairAll()).isGreaterThanOrEqualTo(2);
+        assertThat(postSummaryService.repairAll()).isZero();
+
+        PostSummary repaired = postSummaryService.findAll(List.of(drifted)).get(drifted);
+        assertThat(repaired.getCommentCount()).isEqualTo(1);
+        assertThat(postSummaryService.parseLatestComments(repaired)).extracting(CommentDto::getContent)
+                .containsExactly("комментарий");
+        PostSummary created = postSummaryService.findAll(List.of(legacy)).get(legacy);
+        assertThat(created.getLikes()).isEqualTo(4);
+        assertThat(created.getDislikes()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentCommentWritesKeepEachOthersLatestComments() throws Exception {
+        Long postId = postService.createPost(new Post("Гонка", "Текст", null), "author").getId();
+        CountDownLatch firstWritten = new CountDownLatch(1);
+        CountDownLatch commitFirst = new CountDownLatch(1);
+
+        // первая транзакция обновила сводку и держит её строку до коммита
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(status -> {
+            saveComment(postId, "первый");
+            postSummaryService.commentsAdded(Map.of(postId, 1));
+            firstWritten.countDown();
+            await(commitFirst);
+        }));
+        assertThat(firstWritten.await(5, TimeUnit.SECONDS)).isTrue();
+        // вторая добавляет свой комментарий, пока первая не закоммичена
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(status -> {
+            saveComment(postId, "второй");
+            postSummaryService.commentsAdded(Map.of(postId, 1));
+        }));
+        Thread.sleep(200);
+        commitFirst.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+
+        PostSummary summary = postSummaryService.findAll(List.of(postId)).get(postId);
+        assertThat(summary.getCommentCount()).isEqualTo(2);
+        assertThat(postSummaryService.parseLatestComments(summary)).extracting(CommentDto::getContent)
+                .containsExactly("первый", "второй");
+    }
+
+    private void saveComment(Long postId, String content) {
+        Comment comment = new Comment();
+        comment.setAuthor("a");
+        comment.setContent(content);
+        comment.setPost(postRepository.getReferenceById(postId));
+        commentRepository.saveAndFlush(comment);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
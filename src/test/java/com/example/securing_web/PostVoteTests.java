@@ -0,0 +1,95 @@
+package com.example.securing_web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class PostVoteTests {
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private PostVoteRepository voteRepository;
+
+    @Autowired
+    private VoteAggregator voteAggregator;
+
+    @Autowired
+    private PostSummaryService postSummaryService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void insertIfAbsentKeepsOneVotePerUserAndPost() {
+        Long postId = postService.createPost(new Post("Повтор", "Текст", null), "author").getId();
+
+        assertThat(voteRepository.insertIfAbsent("repeater", postId, VoteType.LIKE.name())).isEqualTo(1);
+        assertThat(voteRepository.insertIfAbsent("repeater", postId, VoteType.LIKE.name())).isZero();
+        // смена мнения - тоже повтор: голос пользователя за пост один
+        assertThat(voteRepository.insertIfAbsent("repeater", postId, VoteType.DISLIKE.name())).isZero();
+        assertThat(voteRepository.insertIfAbsent("other", postId, VoteType.DISLIKE.name())).isEqualTo(1);
+
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM post_vote WHERE post_id = ?",
+                Long.class, postId)).isEqualTo(2);
+    }
+
+    @Test
+    void repeatedVoteIsCountedOnce() {
+        Long postId = postService.createPost(new Post("Дважды", "Текст", null), "author").getId();
+        long deduplicated = postService.getVotesDeduplicated();
+
+        postService.likePost(postId, "twice");
+        postService.likePost(postId, "twice");
+        postService.dislikePost(postId, "twice");
+        voteAggregator.flush();
+
+        assertThat(likesAndDislikes(postId)).containsExactly(1L, 0L);
+        assertThat(postService.getVotesDeduplicated() - deduplicated).isEqualTo(2);
+    }
+
+    @Test
+    void reconcileRestoresCountersLostBeforeFlush() {
+        Long postId = postService.createPost(new Post("После падения", "Текст", null), "author").getId();
+        postService.likePost(postId, "a");
+        postService.likePost(postId, "b");
+        postService.dislikePost(postId, "c");
+        voteAggregator.flush();
+        // приращения, не дожившие до flush'а: строки post_vote есть, в счётчиках их нет
+        jdbcTemplate.update("UPDATE post SET likes = 0, dislikes = 0 WHERE id = ?", postId);
+        jdbcTemplate.update("UPDATE post_summary SET likes = 0, dislikes = 0 WHERE post_id = ?", postId);
+
+        assertThat(voteAggregator.reconcile()).isGreaterThanOrEqualTo(1);
+
+        assertThat(likesAndDislikes(postId)).containsExactly(2L, 1L);
+        PostSummary summary = postSummaryService.findAll(List.of(postId)).get(postId);
+        assertThat(summary.getLikes()).isEqualTo(2);
+        assertThat(summary.getDislikes()).isEqualTo(1);
+    }
+
+    @Test
+    void reconcileDoesNotCountUnflushedVotesTwice() {
+        Long postId = postService.createPost(new Post("В пути", "Текст", null), "author").getId();
+        postService.likePost(postId, "first");
+        voteAggregator.flush();
+        // голос уже в post_vote, но ещё в памяти: сверка не должна добавлять его в post.likes
+        postService.likePost(postId, "second");
+
+        voteAggregator.reconcile();
+        voteAggregator.flush();
+
+        assertThat(likesAndDislikes(postId)).containsExactly(2L, 0L);
+    }
+
+    private List<Long> likesAndDislikes(Long postId) {
+        return jdbcTemplate.queryForObject("SELECT likes, dislikes FROM post WHERE id = ?",
+                (rs, rowNum) -> List.of(rs.getLong(1), rs.getLong(2)), postId);
+    }
+}
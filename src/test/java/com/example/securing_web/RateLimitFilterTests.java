@@ -0,0 +1,33 @@
+package com.example.securing_web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "forum.rate-limit.enabled=true",
+        "forum.rate-limit.rules=POST /login ip 3/m"
+})
+@AutoConfigureMockMvc
+class RateLimitFilterTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void loginAttemptsOverLimitGet429BeforePasswordCheck() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(post("/login").param("username", "nobody").param("password", "wrong"))
+                    .andExpect(status().is3xxRedirection());
+        }
+        mockMvc.perform(post("/login").param("username", "nobody").param("password", "wrong"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"));
+    }
+}
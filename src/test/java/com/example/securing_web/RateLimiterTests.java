@@ -0,0 +1,91 @@
+package com.example.securing_web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimiterTests {
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+    private final RateLimitRule likes = RateLimitRule.parse(0, "POST /posts/*/like ip 6/m");
+
+    @Test
+    void burstUpToCapacityThenOneTokenPerInterval() {
+        StripedRateLimitStore store = new StripedRateLimitStore(4, 100, now::get);
+
+        for (int i = 0; i < 6; i++) {
+            assertThat(store.tryAcquire("a", likes)).isZero();
+        }
+        long wait = store.tryAcquire("a", likes);
+        assertThat(wait).isEqualTo(TimeUnit.SECONDS.toNanos(10));
+        assertThat(store.tryAcquire("b", likes)).as("другой ключ - своё ведро").isZero();
+
+        now.addAndGet(wait);
+        assertThat(store.tryAcquire("a", likes)).isZero();
+        assertThat(store.tryAcquire("a", likes)).isPositive();
+    }
+
+    @Test
+    void storeIsBoundedAndForgetsOnlyFullBuckets() {
+        StripedRateLimitStore store = new StripedRateLimitStore(4, 64, now::get);
+        for (int i = 0; i < 10_000; i++) {
+            store.tryAcquire("client-" + i, likes);
+        }
+        assertThat(store.size()).isLessThanOrEqualTo(64);
+
+        store.evictIdle();
+        assertThat(store.size()).as("вёдра ещё не наполнились").isPositive();
+
+        now.addAndGet(likes.idleNanos());
+        store.evictIdle();
+        assertThat(store.size()).isZero();
+    }
+
+    @Test
+    void sharedStoreLimitsAcrossNodes() {
+        Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+        SharedRateLimitStore.CounterClient client =
+                (key, ttlMillis) -> counters.computeIfAbsent(key, k -> new AtomicLong()).incrementAndGet();
+        RateLimiter first = new RateLimiter(true, List.of(likes), new SharedRateLimitStore(client, now::get));
+        RateLimiter second = new RateLimiter(true, List.of(likes), new SharedRateLimitStore(client, now::get));
+
+        int allowed = 0;
+        for (int i = 0; i < 10; i++) {
+            RateLimiter node = i % 2 == 0 ? first : second;
+            if (node.acquire(request("POST", "/posts/1/like")) == 0) {
+                allowed++;
+            }
+        }
+        assertThat(allowed).isEqualTo(6);
+
+        now.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        assertThat(first.acquire(request("POST", "/posts/1/like"))).isZero();
+    }
+
+    @Test
+    void onlyMatchingRoutesAreLimited() {
+        RateLimiter limiter = new RateLimiter(true,
+                RateLimitRule.parseAll("POST /login ip 1/m, POST /posts/*/like ip 6/m"),
+                new StripedRateLimitStore(4, 100, now::get));
+
+        assertThat(limiter.acquire(request("POST", "/login"))).isZero();
+        assertThat(limiter.acquire(request("POST", "/login"))).isPositive();
+        assertThat(limiter.acquire(request("GET", "/login"))).isZero();
+        assertThat(limiter.acquire(request("POST", "/posts/1/like"))).isZero();
+        assertThat(limiter.getRejected()).isEqualTo(1);
+        assertThat(limiter.getAllowed()).isEqualTo(2);
+    }
+
+    private static MockHttpServletRequest request(String method, String uri) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.setRemoteAddr("10.0.0.1");
+        return request;
+    }
+}
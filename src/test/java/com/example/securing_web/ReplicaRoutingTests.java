@@ -0,0 +1,157 @@
+package com.example.securing_web;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Основная БД и реплика - две отдельные H2 в памяти; схема реплики копируется с основной,
+// отставание реплика "сообщает" из таблицы replica_lag
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReplicaRoutingTests.PRIMARY_URL,
+        "forum.replicas.enabled=true",
+        "forum.replicas.urls=" + ReplicaRoutingTests.REPLICA_URL,
+        "forum.replicas.lag-query=SELECT lag_ms FROM replica_lag",
+        "forum.replicas.max-lag-ms=1000",
+        "forum.replicas.check-ms=3600000"
+})
+class ReplicaRoutingTests {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing_primary;MODE=PostgreSQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing_replica;MODE=PostgreSQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ReplicaRouter router;
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private CommentService commentService;
+
+    @BeforeEach
+    void mirrorSchemaToReplica() {
+        List<String> ddl = jdbcTemplate.queryForList("SCRIPT NODATA", String.class);
+        replica.execute("DROP ALL OBJECTS");
+        ddl.forEach(replica::execute);
+        replica.execute("CREATE TABLE replica_lag (lag_ms BIGINT)");
+        replica.update("INSERT INTO replica_lag VALUES (0)");
+        router.checkReplicas();
+    }
+
+    @AfterEach
+    void clearUser() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void readOnlyTransactionsGoToReplicaAndWritesToPrimary() {
+        assertThat(databaseIn(true)).isEqualTo("ROUTING_REPLICA");
+        assertThat(databaseIn(false)).isEqualTo("ROUTING_PRIMARY");
+
+        Post post = new Post();
+        post.setTitle("только на основной");
+        post.setContent("реплика ничего не получает");
+        postService.createPost(post, "bob");
+        assertThat(postService.getFeedIds(null, 10).getIds()).as("прочитано с пустой реплики").isEmpty();
+    }
+
+    @Test
+    void commentExportReadsFromReplica() {
+        Post post = new Post();
+        post.setTitle("выгрузка");
+        post.setContent("текст");
+        Long postId = postService.createPost(post, "bob").getId();
+        commentService.addComment(postId, "bob", "только на основной");
+
+        List<CommentDto> exported = new ArrayList<>();
+        commentService.exportComments(postId, 10, exported::addAll);
+        assertThat(exported).as("прочитано с пустой реплики").isEmpty();
+    }
+
+    @Test
+    void routerRejectsPerCallCredentials() {
+        assertThatThrownBy(() -> router.getDataSource().getConnection("sa", ""))
+                .isInstanceOf(SQLFeatureNotSupportedException.class);
+    }
+
+    @Test
+    void userReadsOwnVoteFromPrimary() {
+        Post post = new Post();
+        post.setTitle("пост");
+        post.setContent("текст");
+        Long postId = postService.createPost(post, "bob").getId();
+
+        actAs("alice");
+        postService.likePost(postId, "alice");
+        assertThat(databaseIn(true)).isEqualTo("ROUTING_PRIMARY");
+        assertThat(postService.getFeedIds(null, 10).getIds()).contains(postId);
+
+        actAs("carol");
+        assertThat(databaseIn(true)).isEqualTo("ROUTING_REPLICA");
+    }
+
+    @Test
+    void laggingOrBrokenReplicaIsSkippedUntilItRecovers() {
+        replica.update("UPDATE replica_lag SET lag_ms = 5000");
+        router.checkReplicas();
+        assertThat(databaseIn(true)).isEqualTo("ROUTING_PRIMARY");
+
+        replica.update("UPDATE replica_lag SET lag_ms = 10");
+        router.checkReplicas();
+        assertThat(databaseIn(true)).isEqualTo("ROUTING_REPLICA");
+
+        replica.execute("DROP TABLE replica_lag");
+        router.checkReplicas();
+        assertThat(router.getReplicas().get(0).isHealthy()).isFalse();
+        assertThat(databaseIn(true)).isEqualTo("ROUTING_PRIMARY");
+        assertThat(router.getFailovers()).isEqualTo(2);
+    }
+
+    @Test
+    void stickinessExpires() {
+        AtomicLong now = new AtomicLong();
+        ReadYourWrites readYourWrites = new ReadYourWrites(true, 100, now::get);
+        actAs("alice");
+        readYourWrites.markWrite();
+        assertThat(readYourWrites.mustReadPrimary()).isTrue();
+
+        now.set(100);
+        assertThat(readYourWrites.mustReadPrimary()).isFalse();
+        assertThat(ReadYourWrites.onPrimary(readYourWrites::mustReadPrimary)).isTrue();
+    }
+
+    private String databaseIn(boolean readOnly) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(readOnly);
+        return transaction.execute(status -> jdbcTemplate.queryForObject("SELECT DATABASE()", String.class));
+    }
+
+    private static void actAs(String username) {
+        SecurityContextHolder.getContext().setAuthentication(
+                UsernamePasswordAuthenticationToken.authenticated(username, null, List.of()));
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.securing_web;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"forum.metrics.slow-request-ms=0",
+        "management.endpoints.web.exposure.include=prometheus"})
+@AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false)
+@ExtendWith(OutputCaptureExtension.class)
+@WithMockUser("metrics")
+class RequestMetricsTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PostService postService;
+
+    @Test
+    void recordsSqlPerRequestAndLogsSlowRequestsWithStatements(CapturedOutput output) throws Exception {
+        postService.createPost(new Post("Метрики", "Текст", null), "author");
+
+        mockMvc.perform(get("/posts")).andExpect(status().isOk());
+
+        DistributionSummary statements = meterRegistry.get("forum.http.sql.statements").tag("uri", "/posts").summary();
+        assertThat(statements.count()).isPositive();
+        assertThat(statements.totalAmount()).isPositive();
+        assertThat(output).contains("GET /posts").containsIgnoringCase("from post");
+    }
+
+    @Test
+    void prometheusScrapeContainsServiceCounters() throws Exception {
+        Long postId = postService.createPost(new Post("Голоса", "Текст", null), "author").getId();
+        double duplicatesBefore = meterRegistry.get("forum.votes").tag("result", "duplicate").functionCounter().count();
+        postService.likePost(postId, "voter");
+        postService.likePost(postId, "voter");
+
+        assertThat(meterRegistry.get("forum.votes").tag("result", "duplicate").functionCounter().count())
+                .isEqualTo(duplicatesBefore + 1);
+        // через эндпоинт, а не класс реестра: его пакет зависит от версии Micrometer
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertThat(scrape).contains("forum_votes_total", "forum_cache_hit_ratio", "forum_sql_seconds_count",
+                "forum_register_hash_seconds_count");
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.securing_web;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TinyLfuCacheTests {
+
+    @Test
+    void scanDoesNotFlushFrequentKeys() {
+        TinyLfuCache<Integer, String> cache = new TinyLfuCache<>(100);
+        for (int round = 0; round < 5; round++) {
+            for (int key = 0; key < 50; key++) {
+                cache.get(key, String::valueOf);
+            }
+        }
+        // разовый проход по 10 000 ключей, каждый встречается один раз
+        for (int key = 1000; key < 11_000; key++) {
+            cache.get(key, String::valueOf);
+        }
+
+        int survived = 0;
+        for (int key = 0; key < 50; key++) {
+            if (cache.getIfPresent(key) != null) {
+                survived++;
+            }
+        }
+        assertThat(survived).isGreaterThanOrEqualTo(45);
+        assertThat(cache.size()).isLessThanOrEqualTo(100);
+    }
+
+    @Test
+    void concurrentMissesLoadOnce() throws Exception {
+        TinyLfuCache<Long, String> cache = new TinyLfuCache<>(10);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService readers = Executors.newFixedThreadPool(8);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(readers.submit(() -> cache.get(1L, key -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                await(release);
+                return "post";
+            })));
+        }
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(100);
+        release.countDown();
+        for (Future<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("post");
+        }
+        readers.shutdown();
+
+        assertThat(loads).hasValue(1);
+        assertThat(cache.getLoads()).isEqualTo(1);
+    }
+
+    @Test
+    void loadRacingWithInvalidationIsNotCached() {
+        TinyLfuCache<Long, String> cache = new TinyLfuCache<>(10);
+        assertThat(cache.get(1L, key -> {
+            cache.invalidate(key);
+            return "устаревшее";
+        })).isEqualTo("устаревшее");
+        assertThat(cache.getIfPresent(1L)).isNull();
+
+        cache.put(2L, "a");
+        cache.put(3L, "b");
+        cache.invalidateIf(key -> key == 2L);
+        assertThat(cache.getIfPresent(2L)).isNull();
+        assertThat(cache.getIfPresent(3L)).isEqualTo("b");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.securing_web;
+
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrlPattern;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "forum.auth.mode=token",
+        "forum.auth.token.keys=k2:" + TokenAuthTests.KEY_2 + ",k1:" + TokenAuthTests.KEY_1
+})
+@AutoConfigureMockMvc
+class TokenAuthTests {
+
+    static final String KEY_1 = "MDEyMzQ1Njc4OWFiY2RlZjAxMjM0NTY3ODlhYmNkZWY=";
+    static final String KEY_2 = "ZmVkY2JhOTg3NjU0MzIxMGZlZGNiYTk4NzY1NDMyMTA=";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void loginIssuesTokenThatAuthenticatesWithoutSession() throws Exception {
+        userService.register("token-user", "secret");
+
+        MvcResult login = mockMvc.perform(post("/login").param("username", "token-user").param("password", "secret"))
+                .andExpect(status().is3xxRedirection())
+                .andReturn();
+        assertThat(login.getRequest().getSession(false)).isNull();
+        Cookie token = login.getResponse().getCookie("FORUM_TOKEN");
+        assertThat(token).isNotNull();
+        assertThat(token.isHttpOnly()).isTrue();
+
+        mockMvc.perform(get("/posts").cookie(token)).andExpect(status().isOk());
+
+        Cookie tampered = new Cookie("FORUM_TOKEN",
+                (token.getValue().charAt(0) == 'A' ? "B" : "A") + token.getValue().substring(1));
+        mockMvc.perform(get("/posts").cookie(tampered)).andExpect(redirectedUrlPattern("**/login"));
+
+        mockMvc.perform(post("/logout").cookie(token)).andExpect(status().is3xxRedirection());
+        mockMvc.perform(get("/posts").cookie(token)).andExpect(redirectedUrlPattern("**/login"));
+    }
+
+    @Test
+    void tokensSignedWithPreviousKeyStayValidAfterRotation() {
+        Clock clock = Clock.fixed(Instant.parse("2026-01-01T00:00:00Z"), ZoneOffset.UTC);
+        SignedTokenService before = new SignedTokenService(keys("k1", KEY_1), 3600, clock);
+        String oldToken = before.issue(new ForumUserPrincipal(1L, "alice", null, null, List.of()));
+
+        Map<String, byte[]> rotated = keys("k2", KEY_2);
+        rotated.putAll(keys("k1", KEY_1));
+        SignedTokenService after = new SignedTokenService(rotated, 3600, clock);
+        assertThat(after.verify(oldToken).username()).isEqualTo("alice");
+        assertThat(after.issue(new ForumUserPrincipal(2L, "bob", null, null, List.of()))).contains(".k2.");
+
+        SignedTokenService retired = new SignedTokenService(keys("k2", KEY_2), 3600, clock);
+        assertThat(retired.verify(oldToken)).isNull();
+
+        SignedTokenService later = new SignedTokenService(rotated, 3600,
+                Clock.offset(clock, Duration.ofHours(2)));
+        assertThat(later.verify(oldToken)).as("срок истёк").isNull();
+    }
+
+    @Test
+    void usernameWithSeparatorsCannotForgeClaims() {
+        SignedTokenService service = new SignedTokenService(keys("k1", KEY_1), 3600, Clock.systemUTC());
+        String token = service.issue(new ForumUserPrincipal(7L, "eve\nROLE_ADMIN\nadmin", "Ева\n1\nadmin", null,
+                List.of()));
+        SignedTokenService.Claims claims = service.verify(token);
+        assertThat(claims.username()).isEqualTo("eve\nROLE_ADMIN\nadmin");
+        assertThat(claims.fullName()).isEqualTo("Ева\n1\nadmin");
+        assertThat(claims.userId()).isEqualTo(7L);
+        assertThat(claims.authorities()).isEmpty();
+    }
+
+    private static Map<String, byte[]> keys(String id, String base64) {
+        Map<String, byte[]> keys = new LinkedHashMap<>();
+        keys.put(id, Base64.getDecoder().decode(base64));
+        return keys;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.securing_web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserDetailsCacheTests {
+
+    private final AtomicLong now = new AtomicLong();
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final UserDetailsCache cache = new UserDetailsCache(TimeUnit.SECONDS.toNanos(60), 2, now::get);
+    private final CustomUserDetailsService service = new CustomUserDetailsService(userRepository, cache);
+
+    @Test
+    void repeatedLoadsAreServedFromCache() {
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(new User("alice", "hash-1", null)));
+
+        service.loadUserByUsername("alice");
+        service.loadUserByUsername("alice");
+
+        verify(userRepository, times(1)).findByUsername("alice");
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void principalWithoutPasswordDoesNotAffectCachedInstance() {
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(new User("alice", "hash-1", "Алиса")));
+
+        ForumUserPrincipal loaded = (ForumUserPrincipal) service.loadUserByUsername("alice");
+        ForumUserPrincipal slim = loaded.withoutPassword();
+
+        assertThat(slim.getPassword()).isNull();
+        assertThat(slim.getFullName()).isEqualTo("Алиса");
+        assertThat(service.loadUserByUsername("alice").getPassword()).isEqualTo("hash-1");
+    }
+
+    @Test
+    void passwordChangeIsVisibleImmediatelyAfterInvalidation() {
+        User user = new User("alice", "hash-1", null);
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(user));
+        assertThat(service.loadUserByUsername("alice").getPassword()).isEqualTo("hash-1");
+
+        user.setPassword("hash-2");
+        cache.removeUserFromCache("alice");
+
+        assertThat(service.loadUserByUsername("alice").getPassword()).isEqualTo("hash-2");
+    }
+
+    @Test
+    void loadRacingWithInvalidationDoesNotCacheStaleCredentials() {
+        // пока идёт чтение старой строки из БД, пароль меняется и кэш инвалидируется
+        when(userRepository.findByUsername("alice")).thenAnswer(invocation -> {
+            cache.removeUserFromCache("alice");
+            return Optional.of(new User("alice", "hash-1", null));
+        }).thenReturn(Optional.of(new User("alice", "hash-2", null)));
+
+        assertThat(service.loadUserByUsername("alice").getPassword()).isEqualTo("hash-1");
+        assertThat(service.loadUserByUsername("alice").getPassword()).isEqualTo("hash-2");
+    }
+
+    @Test
+    void expiredAndOverflowingEntriesAreEvicted() {
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(new User("alice", "a", null)));
+        when(userRepository.findByUsername("bob")).thenReturn(Optional.of(new User("bob", "b", null)));
+        when(userRepository.findByUsername("carol")).thenReturn(Optional.of(new User("carol", "c", null)));
+
+        service.loadUserByUsername("alice");
+        service.loadUserByUsername("bob");
+        service.loadUserByUsername("carol");
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getUserFromCache("alice")).isNull();
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(61));
+        UserDetails expired = cache.getUserFromCache("carol");
+        assertThat(expired).isNull();
+        assertThat(cache.getEvictions()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.securing_web;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+class UserDirectoryTests {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final AtomicLong now = new AtomicLong();
+    private UserDirectoryService directory;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.saveAll(List.of(
+                new User("carol", "hash", "Carol Smith"),
+                new User("alice", "hash", "Zoe Alice"),
+                new User("al_x", "hash", null),
+                new User("bob", "hash", "Bob Stone"),
+                new User("alfred", "hash", "Alfred Stone")));
+        directory = new UserDirectoryService(userRepository, jdbcTemplate, 2, 2, 1000, now::get);
+    }
+
+    @Test
+    void pagesAreSortedAndLinked() {
+        UserDirectoryPage first = directory.findPage(null, "username", false, 0);
+        assertThat(usernames(first)).containsExactly("al_x", "alfred");
+        assertThat(first.getNextPage()).isEqualTo(1);
+
+        UserDirectoryPage last = directory.findPage(null, "username", false, 2);
+        assertThat(usernames(last)).containsExactly("carol");
+        assertThat(last.getNextPage()).isNull();
+
+        assertThat(usernames(directory.findPage(null, "name", true, 0))).containsExactly("alice", "carol");
+        // неизвестная сортировка - по логину
+        assertThat(usernames(directory.findPage(null, "password", false, 0))).containsExactly("al_x", "alfred");
+    }
+
+    @Test
+    void prefixSearchTreatsWildcardsLiterally() {
+        assertThat(usernames(directory.findPage("al", "username", false, 0))).containsExactly("al_x", "alfred");
+        assertThat(usernames(directory.findPage("al", "username", false, 1))).containsExactly("alice");
+        assertThat(usernames(directory.findPage("al_", "username", false, 0))).containsExactly("al_x");
+        assertThat(usernames(directory.findPage("%", "username", false, 0))).isEmpty();
+    }
+
+    @Test
+    void firstPagesAreCachedUntilTtl() {
+        directory.findPage(null, "username", false, 0);
+        userRepository.save(new User("aaron", "hash", null));
+
+        assertThat(usernames(directory.findPage(null, "username", false, 0))).containsExactly("al_x", "alfred");
+        assertThat(directory.getCacheHits()).isEqualTo(1);
+
+        now.set(1000);
+        assertThat(usernames(directory.findPage(null, "username", false, 0))).containsExactly("aaron", "al_x");
+        // дальние страницы и поиск не кэшируются
+        directory.findPage(null, "username", false, 2);
+        directory.findPage("a", "username", false, 0);
+        assertThat(directory.getCacheMisses()).isEqualTo(2);
+    }
+
+    private static List<String> usernames(UserDirectoryPage page) {
+        return page.getUsers().stream().map(UserSummary::getUsername).toList();
+    }
+}
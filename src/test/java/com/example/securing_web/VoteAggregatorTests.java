@@ -0,0 +1,83 @@
+package com.example.securing_web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class VoteAggregatorTests {
+
+    private static final long HOT_POST = 42L;
+    private static final int VOTERS = 10_000;
+
+    private final AtomicLong storedLikes = new AtomicLong();
+    private final AtomicLong storedDislikes = new AtomicLong();
+
+    @Test
+    void noVotesAreLostOnHotPostUnderConcurrentFlushes() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.batchUpdate(eq(VoteAggregator.FLUSH_SQL), anyList())).thenAnswer(invocation -> {
+            List<Object[]> rows = invocation.getArgument(1);
+            for (Object[] row : rows) {
+                assertThat(row[2]).isEqualTo(HOT_POST);
+                storedLikes.addAndGet((Long) row[0]);
+                storedDislikes.addAndGet((Long) row[1]);
+            }
+            return new int[rows.size()];
+        });
+        VoteAggregator aggregator = new VoteAggregator(jdbcTemplate,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), new PostFragmentCache(100),
+                new FeedEventBroadcaster(16, 1, 1000), false);
+
+        ExecutorService voters = Executors.newFixedThreadPool(64);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(VOTERS);
+        for (int i = 0; i < VOTERS; i++) {
+            VoteType type = i % 2 == 0 ? VoteType.LIKE : VoteType.DISLIKE;
+            voters.execute(() -> {
+                try {
+                    start.await();
+                    aggregator.record(HOT_POST, type);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        // flush'и идут параллельно с голосованием, в том числе удаляя простаивающий счётчик
+        AtomicBoolean voting = new AtomicBoolean(true);
+        Thread flusher = new Thread(() -> {
+            while (voting.get()) {
+                aggregator.flush();
+            }
+        });
+        flusher.start();
+        start.countDown();
+        assertThat(done.await(30, TimeUnit.SECONDS)).isTrue();
+        voting.set(false);
+        flusher.join();
+        voters.shutdown();
+
+        aggregator.flush();
+        assertThat(storedLikes.get()).isEqualTo(VOTERS / 2);
+        assertThat(storedDislikes.get()).isEqualTo(VOTERS / 2);
+        assertThat(aggregator.pendingLikes(HOT_POST)).isZero();
+        assertThat(aggregator.pendingDislikes(HOT_POST)).isZero();
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.securing_web;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VoteBitmapTests {
+
+    @Test
+    void matchesHashSetAcrossArrayAndBitmapContainers() throws IOException {
+        VoteBitmap bitmap = new VoteBitmap();
+        Set<Integer> expected = new HashSet<>();
+        Random random = new Random(7);
+        // первый контейнер переполняется и становится битовой картой, остальные остаются массивами
+        for (int i = 0; i < 20_000; i++) {
+            int value = i % 3 == 0 ? random.nextInt(1 << 16) : random.nextInt(Integer.MAX_VALUE);
+            assertThat(bitmap.add(value)).isEqualTo(expected.add(value));
+        }
+        for (int edge : new int[]{0, 0xFFFF, 0x10000, 0x1FFFF, Integer.MAX_VALUE}) {
+            assertThat(bitmap.add(edge)).isEqualTo(expected.add(edge));
+        }
+        assertThat(bitmap.cardinality()).isEqualTo(expected.size());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bitmap.writeTo(new DataOutputStream(bytes));
+        VoteBitmap restored = VoteBitmap.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertThat(restored.cardinality()).isEqualTo(expected.size());
+
+        for (int i = 0; i < 100_000; i++) {
+            int value = i < 1 << 16 ? i : random.nextInt(Integer.MAX_VALUE);
+            assertThat(bitmap.contains(value)).isEqualTo(expected.contains(value));
+            assertThat(restored.contains(value)).isEqualTo(expected.contains(value));
+        }
+        for (int value : expected) {
+            assertThat(restored.contains(value)).isTrue();
+        }
+    }
+
+    @Test
+    void copyIsNotAffectedByLaterAdds() {
+        VoteBitmap bitmap = new VoteBitmap();
+        // первый контейнер - битовая карта (5000 значений), второй - массив
+        for (int i = 0; i < 10_000; i += 2) {
+            bitmap.add(i);
+        }
+        bitmap.add(0x20000);
+
+        VoteBitmap copy = bitmap.copy();
+        // в массив, в битовую карту и в новый контейнер
+        bitmap.add(0x20001);
+        bitmap.add(1);
+        bitmap.add(0x50000);
+
+        assertThat(copy.cardinality()).isEqualTo(5001);
+        assertThat(copy.contains(0x20000)).isTrue();
+        assertThat(copy.contains(0x20001)).isFalse();
+        assertThat(copy.contains(1)).isFalse();
+        assertThat(copy.contains(0x50000)).isFalse();
+        assertThat(bitmap.contains(1)).isTrue();
+    }
+
+    @Test
+    void denseIdsTakeAboutOneBitEach() {
+        VoteBitmap bitmap = new VoteBitmap();
+        for (int i = 0; i < 1 << 20; i++) {
+            bitmap.add(i);
+        }
+        // 16 битовых карт по 8 КБ
+        assertThat(bitmap.sizeInBytes()).isLessThan(140_000);
+        assertThat(bitmap.contains(-1)).isFalse();
+    }
+}
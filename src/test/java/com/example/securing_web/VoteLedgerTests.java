@@ -0,0 +1,78 @@
+package com.example.securing_web;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {"forum.votes.storage=compact", "forum.votes.snapshot-path="})
+class VoteLedgerTests {
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    Path snapshots;
+
+    @Test
+    void repeatedVoteIsRejectedWithoutQueries() {
+        User user = userRepository.save(new User("ledger-voter", "secret", null));
+        Long postId = postRepository.save(new Post("Голоса", "Текст", "author")).getId();
+
+        postService.likePost(postId, "ledger-voter");
+        SqlStatementTracker.begin(0);
+        postService.dislikePost(postId, "ledger-voter");
+        postService.likePost(postId, "ledger-voter");
+        int queries = SqlStatementTracker.end().getCount();
+
+        assertThat(queries).isZero();
+        assertThat(jdbcTemplate.queryForList("SELECT username, user_id, vote_type FROM post_vote WHERE post_id = ?",
+                postId)).singleElement().satisfies(row -> {
+            assertThat(row.get("username")).isNull();
+            assertThat(((Number) row.get("user_id")).longValue()).isEqualTo(user.getId());
+            assertThat(row.get("vote_type")).isEqualTo("LIKE");
+        });
+    }
+
+    @Test
+    void restartReadsSnapshotAndReplaysOnlyNewerVotes() {
+        Long first = userRepository.save(new User("ledger-first", "secret", null)).getId();
+        Long second = userRepository.save(new User("ledger-second", "secret", null)).getId();
+        Long postId = postRepository.save(new Post("Снимок", "Текст", "author")).getId();
+        Path file = snapshots.resolve("votes.snapshot");
+
+        postService.likePost(postId, "ledger-first");
+        VoteLedger before = new VoteLedger(jdbcTemplate, userRepository, true, file, 100, System::nanoTime);
+        before.load();
+        // голос, которого нет в БД: после перезапуска он может взяться только из снимка
+        before.record(postId, 424242, VoteType.LIKE, () -> true);
+        before.snapshot();
+        long mark = before.getSnapshotVoteId();
+        // голос после снимка - его новый экземпляр должен догрузить из БД
+        postService.dislikePost(postId, "ledger-second");
+
+        VoteLedger after = new VoteLedger(jdbcTemplate, userRepository, true, file, 100, System::nanoTime);
+        after.load();
+
+        assertThat(mark).isPositive();
+        assertThat(after.getSnapshotVoteId()).isEqualTo(mark);
+        assertThat(after.hasVoted(postId, 424242)).isTrue();
+        assertThat(after.hasVoted(postId, first)).isTrue();
+        assertThat(after.hasVoted(postId, second)).isTrue();
+        assertThat(after.hasVoted(postId, 0)).isFalse();
+    }
+}